@@ -0,0 +1,111 @@
+package gate.virtualcorpus;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mongodb.MongoClient;
+import com.mongodb.ServerAddress;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import gate.FeatureMap;
+
+/**
+ * The backends benchmarked by {@link VirtualCorpusBenchmark}, each creates an
+ * embedded store (temporary files, H2, SQLite by {@link BenchmarkStores} or an
+ * in-process MongoDB server) filled with generated documents.
+ */
+public enum BenchmarkBackend {
+	MAPDB(MapDbCorpus.class) {
+		@Override
+		FeatureMap createStore(Path directory, List<String> contents, boolean compress) throws Exception {
+			return BenchmarkStores.createMapDbStore(directory, contents, compress);
+		}
+	},
+	SERIALIZED_FILES(SerializedFilesCorpus.class) {
+		@Override
+		FeatureMap createStore(Path directory, List<String> contents, boolean compress) throws Exception {
+			return BenchmarkStores.createSerializedFilesStore(directory, contents, compress);
+		}
+	},
+	DIRECTORY(DirectoryCorpus.class) {
+		@Override
+		FeatureMap createStore(Path directory, List<String> contents, boolean compress) throws Exception {
+			return BenchmarkStores.createDirectoryStore(directory, contents);
+		}
+	},
+	JDBC_H2(JdbcCorpus.class) {
+		@Override
+		FeatureMap createStore(Path directory, List<String> contents, boolean compress) throws Exception {
+			return BenchmarkStores.createJdbcStore("org.h2.Driver",
+					"jdbc:h2:" + directory.resolve("h2").toAbsolutePath(), "VARBINARY", contents);
+		}
+	},
+	JDBC_SQLITE(JdbcCorpus.class) {
+		@Override
+		FeatureMap createStore(Path directory, List<String> contents, boolean compress) throws Exception {
+			return BenchmarkStores.createJdbcStore("org.sqlite.JDBC",
+					"jdbc:sqlite:" + directory.resolve("sqlite.db").toAbsolutePath(), "BLOB", contents);
+		}
+	},
+	MONGODB(MongoDbCorpus.class) {
+		private MongoServer server;
+
+		@Override
+		FeatureMap createStore(Path directory, List<String> contents, boolean compress) throws Exception {
+			server = new MongoServer(new MemoryBackend());
+			InetSocketAddress address = server.bind();
+			MongoClient client = new MongoClient(new ServerAddress(address));
+			try {
+				List<org.bson.Document> mongoDbDocuments = new ArrayList<>(contents.size());
+				for (int i = 0; i < contents.size(); i++) {
+					mongoDbDocuments
+							.add(new org.bson.Document("name", BenchmarkStores.documentName(i)).append("content", contents.get(i)));
+				}
+				client.getDatabase("benchmark").getCollection("documents").insertMany(mongoDbDocuments);
+			} finally {
+				client.close();
+			}
+			FeatureMap parameters = BenchmarkStores.textParameters();
+			parameters.put("host", address.getHostString());
+			parameters.put("port", address.getPort());
+			parameters.put("databaseName", "benchmark");
+			parameters.put("collectionName", "documents");
+			parameters.put("nameKeys", "name");
+			parameters.put("contentKeys", "content");
+			return parameters;
+		}
+
+		@Override
+		void closeStore() {
+			if (server != null) {
+				server.shutdownNow();
+				server = null;
+			}
+		}
+	};
+
+	private final Class<? extends VirtualCorpus> corpusClass;
+
+	private BenchmarkBackend(Class<? extends VirtualCorpus> corpusClass) {
+		this.corpusClass = corpusClass;
+	}
+
+	Class<? extends VirtualCorpus> getCorpusClass() {
+		return corpusClass;
+	}
+
+	/**
+	 * creates a store in the directory containing a document for each content
+	 *
+	 * @param compress documents, if supported by the backend
+	 * @return the init parameters of a corpus for the store
+	 */
+	abstract FeatureMap createStore(Path directory, List<String> contents, boolean compress) throws Exception;
+
+	void closeStore() {
+	}
+
+}
@@ -0,0 +1,117 @@
+package gate.virtualcorpus;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+
+/**
+ * Overhead of creating loaded documents by the GATE Factory (creole
+ * registration and events to the listeners of all loaded corpora) compared to
+ * unregistered documents (registerDocuments=false), while streaming small
+ * documents through a read-only corpus.
+ *
+ * Run with: mvn -P benchmark verify -Djmh.args="DocumentConstructionBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DocumentConstructionBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class CorpusState {
+		@Param({ "DIRECTORY", "MAPDB" })
+		BenchmarkBackend backend;
+
+		@Param({ "true", "false" })
+		boolean registerDocuments;
+
+		/**
+		 * other corpora loaded on the same store, each one listens to creole events
+		 */
+		@Param({ "0", "10" })
+		int loadedCorpora;
+
+		@Param({ "1000" })
+		int corpusSize;
+
+		/**
+		 * characters of each document
+		 */
+		@Param({ "100" })
+		int documentSize;
+
+		Path directory;
+		VirtualCorpus corpus;
+		List<VirtualCorpus> otherCorpora = new ArrayList<>();
+		int nextIndex = 0;
+
+		@Setup
+		public void setup() throws Exception {
+			VirtualCorpusBenchmark.initGate();
+			List<String> contents = new ArrayList<>(corpusSize);
+			for (int i = 0; i < corpusSize; i++) {
+				contents.add(VirtualCorpusBenchmark.generateContent(i, documentSize));
+			}
+			directory = Files.createTempDirectory("virtualcorpus-benchmark");
+			FeatureMap parameters = backend.createStore(directory, contents, false);
+			parameters.put("cacheDocumentNames", 0);
+			parameters.put("readonlyDocuments", true);
+			for (int i = 0; i < loadedCorpora; i++) {
+				otherCorpora.add((VirtualCorpus) Factory.createResource(backend.getCorpusClass().getName(),
+						parameters));
+			}
+			parameters.put("registerDocuments", registerDocuments);
+			corpus = (VirtualCorpus) Factory.createResource(backend.getCorpusClass().getName(), parameters);
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			if (corpus != null) {
+				Factory.deleteResource(corpus);
+			}
+			for (VirtualCorpus otherCorpus : otherCorpora) {
+				Factory.deleteResource(otherCorpus);
+			}
+			otherCorpora.clear();
+			backend.closeStore();
+			VirtualCorpusBenchmark.deleteDirectory(directory);
+		}
+
+		int nextSequentialIndex() {
+			int index = nextIndex;
+			nextIndex = (nextIndex + 1) % corpusSize;
+			return index;
+		}
+	}
+
+	@Benchmark
+	public void sequentialGet(CorpusState state, Blackhole blackhole) {
+		Document document = state.corpus.get(state.nextSequentialIndex());
+		blackhole.consume(document.getContent());
+		state.corpus.releaseDocument(document);
+	}
+
+}
@@ -0,0 +1,206 @@
+package gate.virtualcorpus;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link DocumentNameCache} with the former name cache (TreeMap and
+ * LinkedHashSet as LRU) under mixed access: a GUI repeatedly showing a small
+ * set of documents while a pipeline scans all document names sequentially.
+ * The hit rate of the GUI accesses is guiHits / guiRequests of the mixedAccess
+ * counters. The memory per cached name is gc.alloc.rate.norm of fill (with
+ * <code>-prof gc</code>) divided by the capacity, names are shared and not
+ * counted.
+ *
+ * Run with: mvn -P benchmark verify -Djmh.args="DocumentNameCacheBenchmark
+ * -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DocumentNameCacheBenchmark {
+
+	/**
+	 * GUI accesses of a round, followed by a scan of all document names
+	 */
+	private static final int HOT_DOCUMENTS = 5000;
+	private static final int HOT_ACCESSES = 20 * HOT_DOCUMENTS;
+
+	interface NameCache {
+		String get(int index);
+
+		void put(int index, String name);
+	}
+
+	public enum CacheType {
+		LRU {
+			@Override
+			NameCache create(int capacity) {
+				return new LruNameCache(capacity);
+			}
+		},
+		CLOCK_TINYLFU {
+			@Override
+			NameCache create(int capacity) {
+				DocumentNameCache cache = new DocumentNameCache(capacity);
+				return new NameCache() {
+					@Override
+					public String get(int index) {
+						return cache.get(index);
+					}
+
+					@Override
+					public void put(int index, String name) {
+						cache.put(index, name);
+					}
+				};
+			}
+		};
+
+		abstract NameCache create(int capacity);
+	}
+
+	private static class LruNameCache implements NameCache {
+		private final int capacity;
+		private final Map<Integer, String> names = new TreeMap<>();
+		private final Set<Integer> lruIndexes = new LinkedHashSet<>();
+
+		LruNameCache(int capacity) {
+			this.capacity = capacity;
+		}
+
+		@Override
+		public String get(int index) {
+			String name = names.get(index);
+			if (name != null) {
+				updateLru(index);
+			}
+			return name;
+		}
+
+		@Override
+		public void put(int index, String name) {
+			names.put(index, name);
+			updateLru(index);
+		}
+
+		private void updateLru(Integer index) {
+			lruIndexes.remove(index);
+			if (lruIndexes.size() >= capacity) {
+				Iterator<Integer> iterator = lruIndexes.iterator();
+				if (iterator.hasNext()) {
+					Integer leastUsedIndex = iterator.next();
+					iterator.remove();
+					names.remove(leastUsedIndex);
+				}
+			}
+			lruIndexes.add(index);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class CacheState {
+		@Param({ "LRU", "CLOCK_TINYLFU" })
+		CacheType cacheType;
+
+		@Param({ "100000" })
+		int capacity;
+
+		@Param({ "1000000" })
+		int corpusSize;
+
+		String[] names;
+		int[] hotIndexes;
+		NameCache cache;
+		Random random = new Random(42);
+		int position = 0;
+
+		@Setup
+		public void setup() {
+			names = new String[corpusSize];
+			for (int i = 0; i < corpusSize; i++) {
+				names[i] = "document " + i;
+			}
+			hotIndexes = new int[HOT_DOCUMENTS];
+			for (int i = 0; i < HOT_DOCUMENTS; i++) {
+				hotIndexes[i] = random.nextInt(corpusSize);
+			}
+			cache = cacheType.create(capacity);
+		}
+
+		/**
+		 * @return the next index of a round, negative (-index - 1) for GUI
+		 *         accesses (skewed to few hot documents)
+		 */
+		int nextAccess() {
+			int access;
+			if (position < HOT_ACCESSES) {
+				int hotIndex = hotIndexes[(int) (Math.abs(random.nextGaussian()) * HOT_DOCUMENTS / 3) % HOT_DOCUMENTS];
+				access = -hotIndex - 1;
+			} else {
+				access = position - HOT_ACCESSES;
+			}
+			position = (position + 1) % (HOT_ACCESSES + corpusSize);
+			return access;
+		}
+	}
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class HitCounters {
+		public long guiHits;
+		public long guiRequests;
+	}
+
+	@Benchmark
+	public String mixedAccess(CacheState state, HitCounters counters) {
+		int access = state.nextAccess();
+		boolean gui = access < 0;
+		int index = gui ? -access - 1 : access;
+		String name = state.cache.get(index);
+		if (gui) {
+			counters.guiRequests++;
+			if (name != null) {
+				counters.guiHits++;
+			}
+		}
+		if (name == null) {
+			name = state.names[index];
+			state.cache.put(index, name);
+		}
+		return name;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 3)
+	@Measurement(iterations = 5)
+	public NameCache fill(CacheState state) {
+		NameCache cache = state.cacheType.create(state.capacity);
+		for (int i = 0; i < state.capacity; i++) {
+			cache.put(i, state.names[i]);
+		}
+		return cache;
+	}
+
+}
@@ -0,0 +1,190 @@
+package gate.virtualcorpus;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.test.GATEPluginTestCase;
+
+/**
+ * Throughput of sequential iteration, random access, listing document names
+ * and saving changed documents for each backend on an embedded store.
+ *
+ * Each trial creates a new store with generated documents. Document names are
+ * not cached by the corpus, so getDocumentNames measures the backend. Only
+ * MapDB and serialized files compress documents, run other backends with
+ * <code>-p compress=false</code> to skip duplicate trials.
+ *
+ * Run with: mvn -P benchmark verify -Djmh.args="VirtualCorpusBenchmark -p
+ * backend=MAPDB,JDBC_H2 -p corpusSize=1000"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class VirtualCorpusBenchmark {
+
+	private static final String[] WORDS = { "the", "corpus", "document", "annotation", "of", "a", "virtual",
+			"backend", "and", "is", "pipeline", "to", "gate", "processing", "language", "in" };
+
+	@State(Scope.Benchmark)
+	public static class CorpusState {
+		@Param({ "MAPDB", "SERIALIZED_FILES", "DIRECTORY", "JDBC_H2", "JDBC_SQLITE", "MONGODB" })
+		BenchmarkBackend backend;
+
+		@Param({ "1000", "10000" })
+		int corpusSize;
+
+		/**
+		 * characters of each document
+		 */
+		@Param({ "1000", "100000" })
+		int documentSize;
+
+		@Param({ "false", "true" })
+		boolean compress;
+
+		Path directory;
+		VirtualCorpus corpus;
+		Random random = new Random(0);
+		int nextIndex = 0;
+		int changeCount = 0;
+
+		@Setup
+		public void setup(BenchmarkParams benchmarkParams) throws Exception {
+			initGate();
+			List<String> contents = new ArrayList<>(corpusSize);
+			for (int i = 0; i < corpusSize; i++) {
+				contents.add(generateContent(i, documentSize));
+			}
+			directory = Files.createTempDirectory("virtualcorpus-benchmark");
+			FeatureMap parameters = backend.createStore(directory, contents, compress);
+			parameters.put("cacheDocumentNames", 0);
+			parameters.put("readonlyDocuments", !benchmarkParams.getBenchmark().endsWith("writeBack"));
+			corpus = (VirtualCorpus) Factory.createResource(backend.getCorpusClass().getName(), parameters);
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			if (corpus != null) {
+				Factory.deleteResource(corpus);
+			}
+			backend.closeStore();
+			deleteDirectory(directory);
+		}
+
+		int nextSequentialIndex() {
+			int index = nextIndex;
+			nextIndex = (nextIndex + 1) % corpusSize;
+			return index;
+		}
+
+		int nextRandomIndex() {
+			return random.nextInt(corpusSize);
+		}
+	}
+
+	@Benchmark
+	public void sequentialGet(CorpusState state, Blackhole blackhole) {
+		Document document = state.corpus.get(state.nextSequentialIndex());
+		blackhole.consume(document.getContent());
+		state.corpus.releaseDocument(document);
+	}
+
+	@Benchmark
+	public void randomGet(CorpusState state, Blackhole blackhole) {
+		Document document = state.corpus.get(state.nextRandomIndex());
+		blackhole.consume(document.getContent());
+		state.corpus.releaseDocument(document);
+	}
+
+	/**
+	 * names are loaded lazily, so all of them are consumed
+	 */
+	@Benchmark
+	public void getDocumentNames(CorpusState state, Blackhole blackhole) {
+		for (String documentName : state.corpus.getDocumentNames()) {
+			blackhole.consume(documentName);
+		}
+	}
+
+	/**
+	 * changes a feature of each document, which is saved when released
+	 */
+	@Benchmark
+	public void writeBack(CorpusState state) {
+		Document document = state.corpus.get(state.nextSequentialIndex());
+		document.getFeatures().put("benchmark", state.changeCount++);
+		state.corpus.releaseDocument(document);
+	}
+
+	/**
+	 * loads the plugin under test like the unit tests (component plugins of the
+	 * backends would all be equal in GATE 8.6, only the first one registered)
+	 */
+	static synchronized void initGate() throws Exception {
+		PluginLoader.load();
+	}
+
+	private static class PluginLoader extends GATEPluginTestCase {
+		static void load() throws Exception {
+			loadPlugin();
+		}
+	}
+
+	static String generateContent(int index, int length) {
+		Random random = new Random(index);
+		StringBuilder content = new StringBuilder(length + 16);
+		while (content.length() < length) {
+			content.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(10) == 0 ? ".\n" : " ");
+		}
+		content.setLength(length);
+		return content.toString();
+	}
+
+	static void deleteDirectory(Path directory) throws IOException {
+		if (directory == null || !Files.exists(directory)) {
+			return;
+		}
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+				Files.delete(directory);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+}
@@ -0,0 +1,183 @@
+package gate.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import gate.Annotation;
+import gate.AnnotationSet;
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.corpora.DocumentImpl;
+import gate.relations.Relation;
+import gate.util.InvalidOffsetException;
+
+/**
+ * Changed features and annotation sets of a document, which are stored
+ * separately from the serialized document and applied after reading it.
+ * 
+ * Annotations are written field by field, since a serialized annotation set
+ * references its whole document. Relations are not supported, annotation sets
+ * with relations must be saved with the whole document. The default annotation
+ * set has the name "" (or null).
+ */
+public class DocumentDelta implements Serializable {
+	private static final long serialVersionUID = 6172531585437383530L;
+
+	private FeatureMap features;
+	private final Map<String, byte[]> annotationSets = new HashMap<>();
+	private final Set<String> removedAnnotationSets = new HashSet<>();
+
+	public void setFeatures(FeatureMap features) {
+		this.features = Factory.newFeatureMap();
+		this.features.putAll(features);
+	}
+
+	public void setAnnotationSet(String name, AnnotationSet annotationSet) throws IOException {
+		if (!annotationSet.getRelations().isEmpty()) {
+			throw new IllegalArgumentException("annotation set " + name + " contains relations");
+		}
+		removedAnnotationSets.remove(name(name));
+		annotationSets.put(name(name), writeAnnotations(annotationSet));
+	}
+
+	public void removeAnnotationSet(String name) {
+		annotationSets.remove(name(name));
+		removedAnnotationSets.add(name(name));
+	}
+
+	public boolean isEmpty() {
+		return features == null && annotationSets.isEmpty() && removedAnnotationSets.isEmpty();
+	}
+
+	/**
+	 * adds the changes of a later delta, which replace changes of this delta
+	 */
+	public void merge(DocumentDelta laterDelta) {
+		if (laterDelta.features != null) {
+			features = laterDelta.features;
+		}
+		for (String name : laterDelta.removedAnnotationSets) {
+			removeAnnotationSet(name);
+		}
+		for (Entry<String, byte[]> entry : laterDelta.annotationSets.entrySet()) {
+			removedAnnotationSets.remove(entry.getKey());
+			annotationSets.put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	public void applyTo(Document document) throws IOException, InvalidOffsetException {
+		if (features != null) {
+			document.getFeatures().clear();
+			document.getFeatures().putAll(features);
+		}
+		for (String name : removedAnnotationSets) {
+			if (name.isEmpty()) {
+				clearAnnotationSet(document.getAnnotations());
+			} else {
+				document.removeAnnotationSet(name);
+			}
+		}
+		int nextAnnotationId = 0;
+		for (Entry<String, byte[]> entry : annotationSets.entrySet()) {
+			AnnotationSet annotationSet = entry.getKey().isEmpty() ? document.getAnnotations()
+					: document.getAnnotations(entry.getKey());
+			clearAnnotationSet(annotationSet);
+			nextAnnotationId = Math.max(nextAnnotationId, readAnnotations(entry.getValue(), annotationSet));
+		}
+		if (document instanceof DocumentImpl) {
+			DocumentImpl documentImpl = (DocumentImpl) document;
+			if (nextAnnotationId > documentImpl.peakAtNextAnnotationId()) {
+				documentImpl.setNextAnnotationId(nextAnnotationId);
+			}
+		}
+	}
+
+	public byte[] toBytes(boolean compress) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		OutputStream os = baos;
+		if (compress) {
+			os = new DeflaterOutputStream(os, true);
+		}
+		try (ObjectOutputStream oos = new ObjectOutputStream(os)) {
+			oos.writeObject(this);
+		}
+		return baos.toByteArray();
+	}
+
+	public static DocumentDelta fromBytes(byte[] bytes, boolean compressed) throws IOException {
+		InputStream is = new ByteArrayInputStream(bytes);
+		if (compressed) {
+			is = new InflaterInputStream(is);
+		}
+		try (ObjectInputStream ois = new GateObjectInputStream(is)) {
+			return (DocumentDelta) ois.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static String name(String name) {
+		return name == null ? "" : name;
+	}
+
+	private static void clearAnnotationSet(AnnotationSet annotationSet) {
+		for (Relation relation : new ArrayList<>(annotationSet.getRelations())) {
+			annotationSet.getRelations().deleteRelation(relation);
+		}
+		annotationSet.clear();
+	}
+
+	private static byte[] writeAnnotations(AnnotationSet annotationSet) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+			oos.writeInt(annotationSet.size());
+			for (Annotation annotation : annotationSet) {
+				oos.writeInt(annotation.getId());
+				oos.writeUTF(annotation.getType());
+				oos.writeLong(annotation.getStartNode().getOffset());
+				oos.writeLong(annotation.getEndNode().getOffset());
+				oos.writeObject(annotation.getFeatures());
+			}
+		}
+		return baos.toByteArray();
+	}
+
+	/**
+	 * @return the next free annotation id
+	 */
+	private static int readAnnotations(byte[] bytes, AnnotationSet annotationSet)
+			throws IOException, InvalidOffsetException {
+		int nextAnnotationId = 0;
+		try (ObjectInputStream ois = new GateObjectInputStream(new ByteArrayInputStream(bytes))) {
+			int size = ois.readInt();
+			for (int i = 0; i < size; i++) {
+				int id = ois.readInt();
+				String type = ois.readUTF();
+				long start = ois.readLong();
+				long end = ois.readLong();
+				FeatureMap features = (FeatureMap) ois.readObject();
+				annotationSet.add(id, start, end, type, features);
+				nextAnnotationId = Math.max(nextAnnotationId, id + 1);
+			}
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+		return nextAnnotationId;
+	}
+
+}
@@ -12,14 +12,21 @@ import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
 
 import gate.Annotation;
+import gate.AnnotationSet;
 import gate.Document;
 import gate.Factory;
+import gate.FeatureMap;
+import gate.Gate;
 import gate.GateConstants;
 import gate.corpora.DocumentContentImpl;
 import gate.corpora.DocumentImpl;
 import gate.creole.AbstractResource;
+import gate.creole.ParameterException;
+import gate.creole.ResourceData;
+import gate.creole.ResourceInstantiationException;
 import gate.util.DocumentFormatException;
 import gate.util.GateException;
+import gate.util.InvalidOffsetException;
 
 public class DocumentUtil {
 
@@ -62,6 +69,54 @@ public class DocumentUtil {
 		return document;
 	}
 
+	/**
+	 * like {@link #readDocument(InputStream, boolean)}, but the document is not
+	 * registered by the {@link Factory}, see
+	 * {@link #createUnregisteredDocument(String, FeatureMap, FeatureMap, String)}
+	 */
+	public static Document readUnregisteredDocument(InputStream in, boolean compressed)
+			throws IOException, GateException {
+		Document readDocument = readRawDocument(in, compressed);
+
+		String documentName = readDocument.getName();
+		Document document = createUnregisteredDocument(readDocument.getClass().getCanonicalName(),
+				AbstractResource.getInitParameterValues(readDocument), readDocument.getFeatures(), documentName);
+
+		applyDocumentValues(readDocument, document);
+
+		return document;
+	}
+
+	/**
+	 * creates and initializes a document like
+	 * {@link Factory#createResource(String, FeatureMap, FeatureMap, String)}, but
+	 * without registering it in the creole register, so no creole events are
+	 * fired and {@link Factory#deleteResource(gate.Resource)} has no effect (call
+	 * {@link Document#cleanup()} instead)
+	 */
+	public static Document createUnregisteredDocument(String className, FeatureMap parameters,
+			FeatureMap features, String name) throws ResourceInstantiationException {
+		ResourceData resourceData = Gate.getCreoleRegister().get(className);
+		if (resourceData == null) {
+			throw new ResourceInstantiationException("no resource data for " + className);
+		}
+		Document document;
+		FeatureMap parameterValues;
+		try {
+			document = (Document) resourceData.getResourceClass().getConstructor().newInstance();
+			parameterValues = resourceData.getParameterList().getInitimeDefaults();
+		} catch (ReflectiveOperationException | ParameterException e) {
+			throw new ResourceInstantiationException("cannot create " + className, e);
+		}
+		if (parameters != null) {
+			parameterValues.putAll(parameters);
+		}
+		AbstractResource.setParameterValues(document, parameterValues);
+		document.setName(name);
+		document.setFeatures(features != null ? features : Factory.newFeatureMap());
+		return (Document) document.init();
+	}
+
 	public static void applyDocumentValues(InputStream in, boolean compressed, Document toDocument)
 			throws IOException, DocumentFormatException {
 		Document readDocument = readRawDocument(in, compressed);
@@ -69,9 +124,25 @@ public class DocumentUtil {
 		applyDocumentValues(readDocument, toDocument);
 	}
 
+	/**
+	 * copies the values of a read document to an empty document, the original
+	 * markups of the read document replace the original markups created when
+	 * the document was initialized
+	 */
 	public static void applyDocumentValues(Document fromDocument, Document toDocument) throws DocumentFormatException {
 		DocumentUtil.validateEmptyDocument(toDocument);
 		DocumentUtil.copyDocumentValues(fromDocument, toDocument);
+		if (fromDocument.getAnnotationSetNames().contains(GateConstants.ORIGINAL_MARKUPS_ANNOT_SET_NAME)) {
+			toDocument.removeAnnotationSet(GateConstants.ORIGINAL_MARKUPS_ANNOT_SET_NAME);
+			AnnotationSet originalMarkups = fromDocument.getAnnotations(GateConstants.ORIGINAL_MARKUPS_ANNOT_SET_NAME);
+			AnnotationSet toOriginalMarkups = toDocument.getAnnotations(GateConstants.ORIGINAL_MARKUPS_ANNOT_SET_NAME);
+			for (Annotation annotation : originalMarkups) {
+				toOriginalMarkups.add(annotation);
+			}
+			if (!originalMarkups.getRelations().isEmpty()) {
+				toOriginalMarkups.getRelations().addAll(originalMarkups.getRelations());
+			}
+		}
 	}
 
 	public static Document readRawDocument(InputStream in, boolean compressed) throws IOException {
@@ -93,6 +164,64 @@ public class DocumentUtil {
 		}
 	}
 
+	/**
+	 * creates an initialized copy of a document including all annotation sets
+	 * (also the original markups), which is not registered by the
+	 * {@link Factory}, so it stays unchanged after the document was changed or
+	 * deleted. Annotations are copied, feature values and relations are shared
+	 * with the document. The snapshot is initialized from the current content
+	 * without reading the source of the document, afterwards it gets the init
+	 * parameters of the document, so it is serialized like the document.
+	 */
+	public static Document snapshotDocument(Document document) throws GateException {
+		FeatureMap initParameters = AbstractResource.getInitParameterValues(document);
+		FeatureMap snapshotParameters = Factory.newFeatureMap();
+		snapshotParameters.putAll(initParameters);
+		snapshotParameters.put(Document.DOCUMENT_URL_PARAMETER_NAME, null);
+		snapshotParameters.put(Document.DOCUMENT_START_OFFSET_PARAMETER_NAME, null);
+		snapshotParameters.put(Document.DOCUMENT_END_OFFSET_PARAMETER_NAME, null);
+		snapshotParameters.put(Document.DOCUMENT_STRING_CONTENT_PARAMETER_NAME, document.getContent().toString());
+		snapshotParameters.put(Document.DOCUMENT_MARKUP_AWARE_PARAMETER_NAME, false);
+		snapshotParameters.put(Document.DOCUMENT_PRESERVE_CONTENT_PARAMETER_NAME, false);
+		Document snapshot = createUnregisteredDocument(document.getClass().getName(), snapshotParameters,
+				Factory.newFeatureMap(), document.getName());
+		AbstractResource.setParameterValues(snapshot, initParameters);
+
+		snapshot.getFeatures().clear();
+		snapshot.getFeatures().putAll(document.getFeatures());
+		copyAnnotationSet(document.getAnnotations(), snapshot.getAnnotations());
+		for (String annotationSetName : new ArrayList<>(snapshot.getAnnotationSetNames())) {
+			if (!document.getAnnotationSetNames().contains(annotationSetName)) {
+				snapshot.removeAnnotationSet(annotationSetName);
+			}
+		}
+		for (String annotationSetName : document.getAnnotationSetNames()) {
+			copyAnnotationSet(document.getAnnotations(annotationSetName), snapshot.getAnnotations(annotationSetName));
+		}
+		if (snapshot instanceof DocumentImpl && document instanceof DocumentImpl) {
+			((DocumentImpl) snapshot).setNextAnnotationId(((DocumentImpl) document).peakAtNextAnnotationId());
+		}
+		return snapshot;
+	}
+
+	/**
+	 * copies annotations with the same ids and copied feature maps into an
+	 * empty annotation set, relations are shared
+	 */
+	private static void copyAnnotationSet(AnnotationSet fromAnnotationSet, AnnotationSet toAnnotationSet)
+			throws InvalidOffsetException {
+		toAnnotationSet.clear();
+		for (Annotation annotation : fromAnnotationSet) {
+			FeatureMap features = Factory.newFeatureMap();
+			features.putAll(annotation.getFeatures());
+			toAnnotationSet.add(annotation.getId(), annotation.getStartNode().getOffset(),
+					annotation.getEndNode().getOffset(), annotation.getType(), features);
+		}
+		if (!fromAnnotationSet.getRelations().isEmpty()) {
+			toAnnotationSet.getRelations().addAll(fromAnnotationSet.getRelations());
+		}
+	}
+
 	public static void validateEmptyDocument(Document document) throws DocumentFormatException {
 		if (!document.getAnnotations().isEmpty()) {
 			throw new DocumentFormatException("document has already annotations in default annotation set");
@@ -0,0 +1,30 @@
+package gate.virtualcorpus;
+
+/**
+ * How a {@link VirtualCorpus} detects changed documents, which are saved when
+ * unloaded. Readonly documents are never tracked.
+ */
+public enum ChangeTracking {
+	/**
+	 * documents are never saved (a warning is logged, if documents are not
+	 * readonly)
+	 */
+	NONE,
+	/**
+	 * listeners on the document, its features, annotation sets and relation
+	 * sets (detects added and removed annotations and relations, but no changes
+	 * of their features)
+	 */
+	ANNOTATION_SETS,
+	/**
+	 * listeners on all annotations, relations and feature maps (detects all
+	 * changes, registering is linear in the count of annotations)
+	 */
+	ANNOTATIONS,
+	/**
+	 * a fingerprint of content, features, annotations and relations when loaded
+	 * is compared with the fingerprint when unloaded (no listeners, but hashes
+	 * the document twice)
+	 */
+	FINGERPRINT
+}
@@ -0,0 +1,89 @@
+package gate.virtualcorpus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gate.Corpus;
+import gate.Document;
+import gate.event.CorpusEvent;
+
+/**
+ * A corpus event for a range of documents added or removed by one operation
+ * (e.g. addAll, removeAll or clear), delivered to
+ * {@link RangeCorpusListener}s. The document and index of the inherited
+ * {@link CorpusEvent} are those of the first document of the range.
+ */
+public class CorpusRangeEvent extends CorpusEvent {
+	private static final long serialVersionUID = -2216093406541373416L;
+
+	private final int fromIndex;
+	private final int toIndex;
+	private final List<Document> documents;
+
+	/**
+	 * @param fromIndex of the first document (inclusive)
+	 * @param toIndex   of the last document (exclusive)
+	 * @param documents of the range (toIndex - fromIndex elements), null for
+	 *                  documents which are not loaded
+	 * @param type      {@link CorpusEvent#DOCUMENT_ADDED} or
+	 *                  {@link CorpusEvent#DOCUMENT_REMOVED}
+	 */
+	public CorpusRangeEvent(Corpus source, int fromIndex, int toIndex, List<Document> documents, int type) {
+		super(source, documents.isEmpty() ? null : documents.get(0), fromIndex, type);
+		if (documents.size() != toIndex - fromIndex) {
+			throw new IllegalArgumentException(
+					documents.size() + " documents for range " + fromIndex + " to " + toIndex);
+		}
+		this.fromIndex = fromIndex;
+		this.toIndex = toIndex;
+		this.documents = documents;
+	}
+
+	public int getFromIndex() {
+		return fromIndex;
+	}
+
+	public int getToIndex() {
+		return toIndex;
+	}
+
+	public int size() {
+		return toIndex - fromIndex;
+	}
+
+	/**
+	 * @return the document at a corpus index of the range, or null if it is not
+	 *         loaded
+	 */
+	public Document getDocument(int index) {
+		if (index < fromIndex || index >= toIndex) {
+			throw new IndexOutOfBoundsException("index " + index + " not in range " + fromIndex + " to " + toIndex);
+		}
+		return documents.get(index - fromIndex);
+	}
+
+	/**
+	 * splits the range into an event per document for listeners, which expect
+	 * per-document events. Removed documents are ordered from the last to the
+	 * first index, so each index is still valid when its event is handled.
+	 */
+	public List<CorpusEvent> toDocumentEvents() {
+		List<CorpusEvent> events = new ArrayList<>(size());
+		if (getType() == DOCUMENT_REMOVED) {
+			for (int index = toIndex - 1; index >= fromIndex; index--) {
+				events.add(new CorpusEvent((Corpus) getSource(), getDocument(index), index, getType()));
+			}
+		} else {
+			for (int index = fromIndex; index < toIndex; index++) {
+				events.add(new CorpusEvent((Corpus) getSource(), getDocument(index), index, getType()));
+			}
+		}
+		return events;
+	}
+
+	@Override
+	public String toString() {
+		return "CorpusRangeEvent [type=" + getType() + ", fromIndex=" + fromIndex + ", toIndex=" + toIndex + "]";
+	}
+
+}
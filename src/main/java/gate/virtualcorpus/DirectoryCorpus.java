@@ -22,7 +22,6 @@ import gate.Factory;
 import gate.FeatureMap;
 import gate.Gate;
 import gate.Resource;
-import gate.corpora.DocumentImpl;
 import gate.creole.ResourceInstantiationException;
 import gate.creole.metadata.CreoleParameter;
 import gate.creole.metadata.CreoleResource;
@@ -202,6 +201,11 @@ public class DirectoryCorpus extends VirtualCorpus {
 		throw new GateRuntimeException("renaming document is not supported");
 	}
 
+	@Override
+	protected boolean supportsConcurrentAccess() {
+		return true;
+	}
+
 	@Override
 	protected int loadSize() throws Exception {
 		return files.size();
@@ -216,14 +220,15 @@ public class DirectoryCorpus extends VirtualCorpus {
 	protected Document loadDocument(int index) throws Exception {
 		File file = files.get(index);
 		String content = FileUtils.readFileToString(file);
+		documentBytesRead(file.length());
 
 		FeatureMap features = Factory.newFeatureMap();
 		FeatureMap params = Factory.newFeatureMap();
 		params.put(Document.DOCUMENT_STRING_CONTENT_PARAMETER_NAME, content);
 		params.put(Document.DOCUMENT_ENCODING_PARAMETER_NAME, encoding);
 		params.put(Document.DOCUMENT_MIME_TYPE_PARAMETER_NAME, mimeType);
-		String documentName = getDocumentName(index);
-		return (Document) Factory.createResource(DocumentImpl.class.getName(), params, features, documentName);
+		String documentName = loadDocumentName(index);
+		return createDocument(params, features, documentName);
 	}
 
 	@Override
@@ -255,6 +260,7 @@ public class DirectoryCorpus extends VirtualCorpus {
 				export(outputStream, document);
 			}
 		}
+		documentBytesWritten(file.length());
 	}
 
 	@Override
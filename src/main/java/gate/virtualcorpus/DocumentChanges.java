@@ -0,0 +1,95 @@
+package gate.virtualcorpus;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import gate.AnnotationSet;
+
+/**
+ * The parts of a document changed since it was loaded, passed to
+ * {@link VirtualCorpus#setDocumentChanges(int, gate.Document, DocumentChanges)}, so
+ * backends storing parts separately can write only the changed parts.
+ */
+public final class DocumentChanges {
+	/**
+	 * the name used for the default annotation set
+	 */
+	public static final String DEFAULT_ANNOTATION_SET_NAME = "";
+
+	static final DocumentChanges NONE = new DocumentChanges(false, false, Collections.emptySet(),
+			Collections.emptySet());
+
+	private final boolean contentChanged;
+	private final boolean featuresChanged;
+	private final Set<String> changedAnnotationSets;
+	private final Set<String> removedAnnotationSets;
+
+	DocumentChanges(boolean contentChanged, boolean featuresChanged, Set<String> changedAnnotationSets,
+			Set<String> removedAnnotationSets) {
+		this.contentChanged = contentChanged;
+		this.featuresChanged = featuresChanged;
+		this.changedAnnotationSets = Collections.unmodifiableSet(changedAnnotationSets);
+		this.removedAnnotationSets = Collections.unmodifiableSet(removedAnnotationSets);
+	}
+
+	public boolean isContentChanged() {
+		return contentChanged;
+	}
+
+	public boolean isFeaturesChanged() {
+		return featuresChanged;
+	}
+
+	/**
+	 * @return names of changed or added annotation sets
+	 *         ({@link #DEFAULT_ANNOTATION_SET_NAME} for the default annotation
+	 *         set)
+	 */
+	public Set<String> getChangedAnnotationSets() {
+		return changedAnnotationSets;
+	}
+
+	/**
+	 * @return names of removed annotation sets
+	 */
+	public Set<String> getRemovedAnnotationSets() {
+		return removedAnnotationSets;
+	}
+
+	public boolean isEmpty() {
+		return !contentChanged && !featuresChanged && changedAnnotationSets.isEmpty()
+				&& removedAnnotationSets.isEmpty();
+	}
+
+	/**
+	 * @return the changes of this and later changes, e.g. if a document is saved
+	 *         again before the previous changes were written
+	 */
+	DocumentChanges merge(DocumentChanges laterChanges) {
+		Set<String> changed = new HashSet<>(changedAnnotationSets);
+		changed.removeAll(laterChanges.removedAnnotationSets);
+		changed.addAll(laterChanges.changedAnnotationSets);
+		Set<String> removed = new HashSet<>(removedAnnotationSets);
+		removed.removeAll(laterChanges.changedAnnotationSets);
+		removed.addAll(laterChanges.removedAnnotationSets);
+		return new DocumentChanges(contentChanged || laterChanges.contentChanged,
+				featuresChanged || laterChanges.featuresChanged, changed, removed);
+	}
+
+	static String annotationSetName(AnnotationSet annotationSet) {
+		return annotationSetName(annotationSet.getName());
+	}
+
+	static String annotationSetName(String name) {
+		return name == null ? DEFAULT_ANNOTATION_SET_NAME : name;
+	}
+
+	@Override
+	public String toString() {
+		return "DocumentChanges [contentChanged=" + contentChanged + ", featuresChanged=" + featuresChanged
+				+ ", changedAnnotationSets=" + changedAnnotationSets + ", removedAnnotationSets="
+				+ removedAnnotationSets + "]";
+	}
+
+}
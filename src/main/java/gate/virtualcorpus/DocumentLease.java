@@ -0,0 +1,54 @@
+package gate.virtualcorpus;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import gate.Document;
+
+/**
+ * A document of a {@link VirtualCorpus} pinned while it is in use, see
+ * {@link VirtualCorpus#lease(int)}. Pinned documents are never evicted by the
+ * document cache or on memory pressure. Leases of the same document are
+ * counted, closing the last one saves (if changed) and unloads the document.
+ *
+ * <pre>
+ * try (DocumentLease lease = corpus.lease(index)) {
+ * 	process(lease.getDocument());
+ * }
+ * </pre>
+ */
+public final class DocumentLease implements AutoCloseable {
+	private final VirtualCorpus corpus;
+	private final Document document;
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	DocumentLease(VirtualCorpus corpus, Document document) {
+		this.corpus = corpus;
+		this.document = document;
+	}
+
+	/**
+	 * @return the leased document, null if the backend has no document at the
+	 *         index (like {@link VirtualCorpus#get(int)})
+	 */
+	public Document getDocument() {
+		if (closed.get()) {
+			throw new IllegalStateException("lease is closed");
+		}
+		return document;
+	}
+
+	public boolean isClosed() {
+		return closed.get();
+	}
+
+	/**
+	 * releases the lease, closing a lease more than once has no effect
+	 */
+	@Override
+	public void close() {
+		if (closed.compareAndSet(false, true) && document != null) {
+			corpus.closeLease(document);
+		}
+	}
+
+}
@@ -0,0 +1,308 @@
+package gate.virtualcorpus;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * A cache for document names keyed by primitive document indexes.
+ *
+ * Entries are stored in parallel arrays and found by an open addressing hash
+ * table (linear probing), so no boxed Integers or map entries are allocated.
+ * Victims are chosen by CLOCK (second chance) and a new name is only admitted,
+ * if it was used at least as frequently as the victim (TinyLFU admission with
+ * a count-min sketch). Sequential scans over all document names therefore do
+ * not flush frequently used names.
+ *
+ * The cache is not thread-safe.
+ */
+class DocumentNameCache {
+
+	private final int capacity;
+	private final int[] keys;
+	private final String[] values;
+	private final boolean[] referenced;
+	private final int[] table;
+	private final int mask;
+	private final FrequencySketch sketch;
+
+	private int size = 0;
+	private int hand = 0;
+
+	/**
+	 * @param capacity maximum count of names, 0 to disable the cache
+	 */
+	DocumentNameCache(int capacity) {
+		this.capacity = Math.max(capacity, 0);
+		this.keys = new int[this.capacity];
+		this.values = new String[this.capacity];
+		this.referenced = new boolean[this.capacity];
+		this.table = new int[this.capacity > 0 ? tableSizeFor(this.capacity * 2) : 1];
+		this.mask = table.length - 1;
+		this.sketch = this.capacity > 0 ? new FrequencySketch(this.capacity) : null;
+	}
+
+	int capacity() {
+		return capacity;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	boolean containsKey(int key) {
+		return find(key) >= 0;
+	}
+
+	/**
+	 * @return the cached name without recording an access, or null
+	 */
+	String peek(int key) {
+		int position = find(key);
+		return position >= 0 ? values[table[position] - 1] : null;
+	}
+
+	/**
+	 * @return the cached name and records an access, or null
+	 */
+	String get(int key) {
+		int position = find(key);
+		if (position < 0) {
+			return null;
+		}
+		int slot = table[position] - 1;
+		sketch.increment(key);
+		referenced[slot] = true;
+		return values[slot];
+	}
+
+	/**
+	 * records an access and caches the name, if there is free space or it is
+	 * used at least as frequently as the victim chosen by CLOCK
+	 */
+	void put(int key, String value) {
+		if (capacity == 0) {
+			return;
+		}
+		sketch.increment(key);
+		int position = find(key);
+		if (position >= 0) {
+			int slot = table[position] - 1;
+			values[slot] = value;
+			referenced[slot] = true;
+			return;
+		}
+		if (size < capacity) {
+			int slot = size++;
+			keys[slot] = key;
+			values[slot] = value;
+			referenced[slot] = false;
+			insert(slot);
+			return;
+		}
+		while (referenced[hand]) {
+			referenced[hand] = false;
+			hand = (hand + 1) % size;
+		}
+		int victim = hand;
+		if (sketch.frequency(key) < sketch.frequency(keys[victim])) {
+			return;
+		}
+		delete(find(keys[victim]));
+		keys[victim] = key;
+		values[victim] = value;
+		insert(victim);
+		hand = (hand + 1) % size;
+	}
+
+	void remove(int key) {
+		int position = find(key);
+		if (position < 0) {
+			return;
+		}
+		int slot = table[position] - 1;
+		delete(position);
+		int last = --size;
+		if (slot != last) {
+			delete(find(keys[last]));
+			keys[slot] = keys[last];
+			values[slot] = values[last];
+			referenced[slot] = referenced[last];
+			insert(slot);
+		}
+		values[last] = null;
+		if (hand >= size) {
+			hand = 0;
+		}
+	}
+
+	void clear() {
+		Arrays.fill(table, 0);
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+		hand = 0;
+	}
+
+	/**
+	 * shifts all keys greater or equal than fromKey (e.g. documents inserted
+	 * before them)
+	 */
+	void shift(int fromKey, int shift) {
+		for (int slot = 0; slot < size; slot++) {
+			if (keys[slot] >= fromKey) {
+				keys[slot] += shift;
+			}
+		}
+		rebuild();
+	}
+
+	/**
+	 * removes the keys and shifts all following keys down (e.g. documents
+	 * removed before them)
+	 */
+	void removeAndShift(Set<Integer> removedKeys) {
+		int[] sortedRemovedKeys = removedKeys.stream().mapToInt(Integer::intValue).sorted().toArray();
+		int newSize = 0;
+		for (int slot = 0; slot < size; slot++) {
+			int key = keys[slot];
+			int position = Arrays.binarySearch(sortedRemovedKeys, key);
+			if (position < 0) {
+				keys[newSize] = key - (-position - 1);
+				values[newSize] = values[slot];
+				referenced[newSize] = referenced[slot];
+				newSize++;
+			}
+		}
+		Arrays.fill(values, newSize, size, null);
+		size = newSize;
+		hand = 0;
+		rebuild();
+	}
+
+	private void rebuild() {
+		Arrays.fill(table, 0);
+		for (int slot = 0; slot < size; slot++) {
+			insert(slot);
+		}
+	}
+
+	private int find(int key) {
+		if (size == 0) {
+			return -1;
+		}
+		int position = hash(key) & mask;
+		while (table[position] != 0) {
+			if (keys[table[position] - 1] == key) {
+				return position;
+			}
+			position = (position + 1) & mask;
+		}
+		return -1;
+	}
+
+	private void insert(int slot) {
+		int position = hash(keys[slot]) & mask;
+		while (table[position] != 0) {
+			position = (position + 1) & mask;
+		}
+		table[position] = slot + 1;
+	}
+
+	/**
+	 * deletes a table position by shifting back following entries of the probe
+	 * sequence
+	 */
+	private void delete(int position) {
+		int next = position;
+		while (true) {
+			next = (next + 1) & mask;
+			if (table[next] == 0) {
+				break;
+			}
+			int home = hash(keys[table[next] - 1]) & mask;
+			boolean between = position <= next ? position < home && home <= next : position < home || home <= next;
+			if (!between) {
+				table[position] = table[next];
+				position = next;
+			}
+		}
+		table[position] = 0;
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static int tableSizeFor(int size) {
+		int tableSize = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+		return tableSize > 0 ? tableSize : 1 << 30;
+	}
+
+	/**
+	 * count-min sketch with 4 rows of counters up to 15, which are halved
+	 * periodically, so frequencies of old accesses fade out
+	 */
+	private static class FrequencySketch {
+		private static final int[] SEEDS = { 0x97CB3127, 0xC2B2AE35, 0x85EBCA6B, 0x27D4EB2F };
+		private static final int MAX_FREQUENCY = 15;
+
+		private final byte[][] counters = new byte[SEEDS.length][];
+		private final int rowMask;
+		private final int sampleSize;
+		private int additions = 0;
+
+		FrequencySketch(int capacity) {
+			int rowSize = tableSizeFor(Math.max(capacity, 16));
+			for (int row = 0; row < SEEDS.length; row++) {
+				counters[row] = new byte[rowSize];
+			}
+			rowMask = rowSize - 1;
+			sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+		}
+
+		int frequency(int key) {
+			int frequency = MAX_FREQUENCY;
+			for (int row = 0; row < SEEDS.length; row++) {
+				frequency = Math.min(frequency, counters[row][index(key, row)]);
+			}
+			return frequency;
+		}
+
+		void increment(int key) {
+			int frequency = frequency(key);
+			if (frequency >= MAX_FREQUENCY) {
+				return;
+			}
+			for (int row = 0; row < SEEDS.length; row++) {
+				int index = index(key, row);
+				if (counters[row][index] == frequency) {
+					counters[row][index]++;
+				}
+			}
+			if (++additions >= sampleSize) {
+				reset();
+			}
+		}
+
+		private void reset() {
+			for (byte[] row : counters) {
+				for (int i = 0; i < row.length; i++) {
+					row[i] >>>= 1;
+				}
+			}
+			additions /= 2;
+		}
+
+		private int index(int key, int row) {
+			int h = (key ^ SEEDS[row]) * 0x9E3779B9;
+			h ^= h >>> 15;
+			h *= SEEDS[row] | 1;
+			return (h ^ (h >>> 13)) & rowMask;
+		}
+	}
+
+}
@@ -0,0 +1,177 @@
+package gate.virtualcorpus;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+
+/**
+ * Persistent index from document names to indexes in a sidecar MapDB B-tree,
+ * each name maps to the ascending indexes of all documents with this name. The
+ * index stores the fingerprint of the corpus it was built for and the count of
+ * indexed documents, {@link VirtualCorpus} rebuilds it if the fingerprint
+ * differs and appends names of followed corpora.
+ *
+ * Modifications of the corpus invalidate the stored fingerprint immediately,
+ * so a restarted corpus rebuilds the index even if it was not closed. The
+ * index never calls the corpus, it may be invalidated while the state lock of
+ * the corpus is held.
+ */
+final class DocumentNameIndex implements Closeable {
+	private static final int COMMIT_INTERVAL = 100000;
+	private static final String INVALID_FINGERPRINT = "";
+
+	static final String NAMES_MAPNAME = "names";
+	static final String FINGERPRINT_NAME = "fingerprint";
+	static final String INDEXEDSIZE_NAME = "indexedSize";
+
+	private final DB mapDb;
+	private final BTreeMap<String, int[]> names;
+	private final org.mapdb.Atomic.Var<String> fingerprint;
+	private final org.mapdb.Atomic.Integer indexedSize;
+	private int generation = 0;
+
+	DocumentNameIndex(File file) {
+		mapDb = DBMaker.fileDB(file).transactionEnable().make();
+		names = mapDb.treeMap(NAMES_MAPNAME, Serializer.STRING, Serializer.INT_ARRAY).createOrOpen();
+		fingerprint = mapDb.atomicVar(FINGERPRINT_NAME, Serializer.STRING).createOrOpen();
+		indexedSize = mapDb.atomicInteger(INDEXEDSIZE_NAME).createOrOpen();
+	}
+
+	/**
+	 * @return true, if the index was completely built for the fingerprint and
+	 *         not invalidated since
+	 */
+	synchronized boolean isValid(String corpusFingerprint) {
+		String indexFingerprint = fingerprint.get();
+		return indexFingerprint != null && !INVALID_FINGERPRINT.equals(indexFingerprint)
+				&& indexFingerprint.equals(corpusFingerprint);
+	}
+
+	synchronized void invalidate() {
+		generation++;
+		if (!INVALID_FINGERPRINT.equals(fingerprint.get())) {
+			fingerprint.set(INVALID_FINGERPRINT);
+			mapDb.commit();
+		}
+	}
+
+	/**
+	 * @return count of invalidations since the index was opened
+	 */
+	synchronized int getGeneration() {
+		return generation;
+	}
+
+	synchronized int getIndexedSize() {
+		return indexedSize.get();
+	}
+
+	/**
+	 * starts a new build, the index stays invalid until {@link #complete(String, int)}
+	 */
+	synchronized void clear() {
+		fingerprint.set(INVALID_FINGERPRINT);
+		names.clear();
+		indexedSize.set(0);
+		mapDb.commit();
+	}
+
+	/**
+	 * indexes the names of the documents from the indexed size on
+	 */
+	synchronized void append(List<String> documentNames) {
+		int index = indexedSize.get();
+		for (String documentName : documentNames) {
+			if (documentName != null) {
+				int[] indexes = names.get(documentName);
+				if (indexes == null) {
+					indexes = new int[] { index };
+				} else {
+					indexes = Arrays.copyOf(indexes, indexes.length + 1);
+					indexes[indexes.length - 1] = index;
+				}
+				names.put(documentName, indexes);
+			}
+			index++;
+			if (index % COMMIT_INTERVAL == 0) {
+				indexedSize.set(index);
+				mapDb.commit();
+			}
+		}
+		indexedSize.set(index);
+	}
+
+	/**
+	 * stores the fingerprint, unless the index was invalidated since the build
+	 * started
+	 *
+	 * @return false, if the index was invalidated
+	 */
+	synchronized boolean complete(String corpusFingerprint, int buildGeneration) {
+		if (generation != buildGeneration) {
+			return false;
+		}
+		fingerprint.set(corpusFingerprint);
+		mapDb.commit();
+		return true;
+	}
+
+	/**
+	 * @return the first index of a document with the name, -1 if there is none
+	 */
+	synchronized int indexOf(String documentName) {
+		int[] indexes = names.get(documentName);
+		return indexes != null ? indexes[0] : -1;
+	}
+
+	/**
+	 * @return the indexes of all documents whose names start with the prefix,
+	 *         ordered by name and index
+	 */
+	synchronized List<Integer> indexesOfPrefix(String prefix) {
+		List<Integer> prefixIndexes = new ArrayList<>();
+		for (int[] indexes : prefixMap(prefix).values()) {
+			for (int index : indexes) {
+				prefixIndexes.add(index);
+			}
+		}
+		return prefixIndexes;
+	}
+
+	private NavigableMap<String, int[]> prefixMap(String prefix) {
+		String end = prefixEnd(prefix);
+		return end != null ? names.subMap(prefix, true, end, false) : names.tailMap(prefix, true);
+	}
+
+	/**
+	 * @return the smallest string greater than all strings starting with the
+	 *         prefix, null if there is none
+	 */
+	static String prefixEnd(String prefix) {
+		char[] chars = prefix.toCharArray();
+		for (int i = chars.length - 1; i >= 0; i--) {
+			if (chars[i] != Character.MAX_VALUE) {
+				chars[i]++;
+				return new String(chars, 0, i + 1);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (!mapDb.isClosed()) {
+			mapDb.commit();
+			mapDb.close();
+		}
+	}
+
+}
@@ -0,0 +1,177 @@
+package gate.virtualcorpus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+import gate.Document;
+import gate.util.GateRuntimeException;
+
+/**
+ * Loads the next documents of a {@link VirtualCorpus} in background threads,
+ * while the current document is processed.
+ *
+ * Prefetched documents are neither registered as loaded documents of the
+ * corpus nor observed for changes, until they are taken by
+ * {@link VirtualCorpus#get(int)}. The background threads never call the corpus
+ * except for loading, documents loaded after a discard are deleted by the next
+ * thread using the prefetcher (deleting fires events, which are handled by the
+ * corpus).
+ */
+class DocumentPrefetcher {
+	private static Logger logger = Logger.getLogger(DocumentPrefetcher.class);
+
+	private final VirtualCorpus corpus;
+	private final ExecutorService executor;
+
+	private final Map<Integer, PrefetchTask> prefetchTasks = new HashMap<>();
+	private final Map<Integer, Document> prefetchedDocuments = new HashMap<>();
+	private final List<Document> discardedDocuments = new ArrayList<>();
+	private int generation = 0;
+
+	/**
+	 * @param threads count of background threads (more than one is only useful,
+	 *                if the backend supports concurrent access)
+	 */
+	DocumentPrefetcher(VirtualCorpus corpus, int threads) {
+		this.corpus = corpus;
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "prefetch " + corpus.getName());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * prefetches all documents in the range, which are neither loaded nor already
+	 * prefetched
+	 */
+	void prefetch(int fromIndex, int toIndex) {
+		deleteDiscardedDocuments();
+		for (int index = fromIndex; index < toIndex; index++) {
+			if (!corpus.isDocumentLoadedOrLoading(index)) {
+				synchronized (this) {
+					if (!prefetchTasks.containsKey(index)) {
+						prefetchTasks.put(index, submit(index));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * a queued or running prefetch, which is claimed either by a background
+	 * thread when started or by {@link DocumentPrefetcher#take(int)} before
+	 */
+	private static class PrefetchTask {
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		private Future<?> future;
+	}
+
+	private PrefetchTask submit(int index) {
+		int taskGeneration = generation;
+		PrefetchTask prefetchTask = new PrefetchTask();
+		prefetchTask.future = executor.submit(() -> {
+			if (!prefetchTask.claimed.compareAndSet(false, true)) {
+				return null;
+			}
+			Document document = corpus.lockedLoadDocument(index);
+			if (document == null) {
+				return null;
+			}
+			synchronized (this) {
+				if (taskGeneration == generation) {
+					prefetchedDocuments.put(index, document);
+					return null;
+				} else if (!executor.isShutdown()) {
+					discardedDocuments.add(document);
+					return null;
+				}
+			}
+			corpus.deleteDocument(document);
+			return null;
+		});
+		return prefetchTask;
+	}
+
+	/**
+	 * waits for a prefetched document
+	 *
+	 * @return the prefetched document or null, if the index was not prefetched
+	 *         or its prefetch was not started yet (the caller loads it faster
+	 *         than waiting for queued prefetches)
+	 */
+	Document take(int index) throws Exception {
+		deleteDiscardedDocuments();
+		PrefetchTask prefetchTask;
+		synchronized (this) {
+			prefetchTask = prefetchTasks.remove(index);
+		}
+		if (prefetchTask == null || prefetchTask.claimed.compareAndSet(false, true)) {
+			return null;
+		}
+		try {
+			prefetchTask.future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw new GateRuntimeException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GateRuntimeException("interrupted while prefetching document " + index, e);
+		}
+		synchronized (this) {
+			return prefetchedDocuments.remove(index);
+		}
+	}
+
+	/**
+	 * discards all prefetched documents, e.g. if indexes of the corpus changed
+	 */
+	void discard() {
+		synchronized (this) {
+			for (PrefetchTask prefetchTask : prefetchTasks.values()) {
+				prefetchTask.future.cancel(false);
+			}
+			prefetchTasks.clear();
+			generation++;
+			if (logger.isDebugEnabled() && !prefetchedDocuments.isEmpty()) {
+				logger.debug("discarded " + prefetchedDocuments.size() + " prefetched documents");
+			}
+			discardedDocuments.addAll(prefetchedDocuments.values());
+			prefetchedDocuments.clear();
+		}
+		deleteDiscardedDocuments();
+	}
+
+	private void deleteDiscardedDocuments() {
+		List<Document> documents;
+		synchronized (this) {
+			if (discardedDocuments.isEmpty()) {
+				return;
+			}
+			documents = new ArrayList<>(discardedDocuments);
+			discardedDocuments.clear();
+		}
+		for (Document document : documents) {
+			corpus.deleteDocument(document);
+		}
+	}
+
+	void shutdown() {
+		synchronized (this) {
+			executor.shutdown();
+		}
+		discard();
+	}
+
+}
@@ -0,0 +1,203 @@
+package gate.virtualcorpus;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import org.apache.log4j.Logger;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import gate.Document;
+
+/**
+ * Publishes the documents of a {@link VirtualCorpus} in index order, see
+ * {@link VirtualCorpus#publisher()}. Each subscription loads documents ahead
+ * by {@link VirtualCorpus#loadAsync(int...)}, but never more than requested
+ * by the subscriber and not yet delivered (up to maxLoadAhead), so a slow
+ * subscriber does not buffer documents. Missing documents (null) are skipped.
+ *
+ * A document is acknowledged when onNext returns, then it is released (saved
+ * if changed and unloaded) if releaseDocuments is set. Subscribers processing
+ * documents asynchronously release them by
+ * {@link VirtualCorpus#releaseDocument(Document)} themselves.
+ */
+final class DocumentPublisher implements Publisher<Document> {
+	private static Logger logger = Logger.getLogger(DocumentPublisher.class);
+
+	private final VirtualCorpus corpus;
+	private final int maxLoadAhead;
+	private final boolean releaseDocuments;
+
+	DocumentPublisher(VirtualCorpus corpus, int maxLoadAhead, boolean releaseDocuments) {
+		this.corpus = corpus;
+		this.maxLoadAhead = maxLoadAhead;
+		this.releaseDocuments = releaseDocuments;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super Document> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber must not be null");
+		}
+		DocumentSubscription subscription = new DocumentSubscription(subscriber, corpus.size());
+		subscriber.onSubscribe(subscription);
+		subscription.drain();
+	}
+
+	/**
+	 * delivers documents serially, the thread entering {@link #drain()} first
+	 * (a requesting thread or a load thread completing a document) delivers
+	 * until there is no more work, other threads only signal it
+	 */
+	private final class DocumentSubscription implements Subscription {
+		private final Subscriber<? super Document> subscriber;
+		private final int toIndex;
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger work = new AtomicInteger();
+		private final Deque<CompletableFuture<Document>> loading = new ArrayDeque<>();
+		private volatile boolean cancelled = false;
+		private volatile Throwable invalidRequest;
+		private int loadIndex = 0;
+		private boolean done = false;
+
+		DocumentSubscription(Subscriber<? super Document> subscriber, int toIndex) {
+			this.subscriber = subscriber;
+			this.toIndex = toIndex;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				invalidRequest = new IllegalArgumentException("requested " + n + " documents, must be positive");
+			} else {
+				requested.accumulateAndGet(n, (current, added) -> {
+					long sum = current + added;
+					return sum < 0 ? Long.MAX_VALUE : sum;
+				});
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			drain();
+		}
+
+		private void drain() {
+			if (work.getAndIncrement() != 0) {
+				return;
+			}
+			int missed = 1;
+			do {
+				if (!done) {
+					deliver();
+				}
+				missed = work.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void deliver() {
+			while (true) {
+				if (cancelled || invalidRequest != null) {
+					terminate(invalidRequest);
+					return;
+				}
+				try {
+					loadAhead();
+				} catch (RuntimeException e) {
+					terminate(e);
+					return;
+				}
+				CompletableFuture<Document> next = loading.peek();
+				if (next == null) {
+					if (loadIndex >= toIndex) {
+						terminate(null);
+					}
+					return;
+				}
+				if (!next.isDone() || requested.get() == 0) {
+					return;
+				}
+				loading.poll();
+				Document document;
+				try {
+					document = next.join();
+				} catch (CompletionException e) {
+					terminate(e.getCause() != null ? e.getCause() : e);
+					return;
+				}
+				if (document == null) {
+					continue;
+				}
+				if (requested.get() != Long.MAX_VALUE) {
+					requested.decrementAndGet();
+				}
+				corpus.documentReturned(document);
+				try {
+					subscriber.onNext(document);
+				} catch (RuntimeException e) {
+					logger.error("subscriber failed on document " + document.getName() + ", subscription cancelled",
+							e);
+					cancelled = true;
+				}
+				if (releaseDocuments) {
+					corpus.releaseDocument(document);
+				}
+			}
+		}
+
+		/**
+		 * loads documents until as many are loading as requested (at most
+		 * maxLoadAhead)
+		 */
+		private void loadAhead() {
+			long ahead = Math.min(requested.get(), maxLoadAhead) - loading.size();
+			if (ahead <= 0 || loadIndex >= toIndex) {
+				return;
+			}
+			int count = (int) Math.min(ahead, toIndex - loadIndex);
+			List<CompletableFuture<Document>> futures = corpus
+					.loadAsync(IntStream.range(loadIndex, loadIndex + count).toArray());
+			loadIndex += count;
+			for (CompletableFuture<Document> future : futures) {
+				loading.add(future);
+				future.whenComplete((document, e) -> drain());
+			}
+		}
+
+		/**
+		 * signals completion (or an error) unless cancelled, documents still
+		 * loading are released when loaded
+		 */
+		private void terminate(Throwable error) {
+			done = true;
+			if (releaseDocuments) {
+				for (CompletableFuture<Document> future : loading) {
+					future.thenAccept(document -> {
+						if (document != null) {
+							corpus.releaseDocument(document);
+						}
+					});
+				}
+			}
+			loading.clear();
+			if (cancelled) {
+				return;
+			}
+			if (error != null) {
+				subscriber.onError(error);
+			} else {
+				subscriber.onComplete();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,177 @@
+package gate.virtualcorpus;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
+
+import gate.Document;
+import gate.util.GateRuntimeException;
+
+/**
+ * Saves changed documents of a {@link VirtualCorpus} in a background thread
+ * (write behind), so unloading documents does not wait for exporting and
+ * writing them.
+ *
+ * Queued documents are snapshots, which stay valid after the unloaded
+ * documents are deleted. A document queued again for the same index replaces
+ * the queued one, if it was not written yet. All queued documents are written
+ * with one batch. Adding documents waits, while the queue is full. The
+ * background thread never calls the corpus except for saving.
+ */
+class DocumentWriter {
+	private static Logger logger = Logger.getLogger(DocumentWriter.class);
+
+	private final VirtualCorpus corpus;
+	private final int capacity;
+	private final ExecutorService executor;
+
+	private final Map<Integer, Document> queuedDocuments = new LinkedHashMap<>();
+	private final Map<Integer, DocumentChanges> queuedChanges = new HashMap<>();
+	private final Set<Integer> writingIndexes = new HashSet<>();
+	private Exception failure;
+
+	/**
+	 * @param capacity maximum count of queued and writing documents
+	 */
+	DocumentWriter(VirtualCorpus corpus, int capacity) {
+		this.corpus = corpus;
+		this.capacity = capacity;
+		this.executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "write " + corpus.getName());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * queues a document to be saved at an index, waits while the queue is full
+	 */
+	synchronized void write(int index, Document document, DocumentChanges changes) {
+		checkFailure();
+		if (queuedDocuments.containsKey(index)) {
+			queuedDocuments.put(index, document);
+			queuedChanges.put(index, queuedChanges.get(index).merge(changes));
+			return;
+		}
+		while (queuedDocuments.size() + writingIndexes.size() >= capacity) {
+			await();
+			checkFailure();
+		}
+		queuedDocuments.put(index, document);
+		queuedChanges.put(index, changes);
+		executor.execute(this::writeNext);
+	}
+
+	/**
+	 * writes all queued documents with one batch
+	 */
+	private void writeNext() {
+		Map<Integer, Document> documents;
+		Map<Integer, DocumentChanges> changes;
+		synchronized (this) {
+			if (queuedDocuments.isEmpty()) {
+				return;
+			}
+			documents = new TreeMap<>(queuedDocuments);
+			changes = new HashMap<>(queuedChanges);
+			queuedDocuments.clear();
+			queuedChanges.clear();
+			writingIndexes.addAll(documents.keySet());
+		}
+		try {
+			corpus.lockedSetDocuments(documents, changes);
+			corpus.documentsWritten(documents.keySet(), true);
+		} catch (Exception e) {
+			corpus.documentsWritten(documents.keySet(), false);
+			logger.error("cannot write documents " + documents.keySet(), e);
+			synchronized (this) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		} finally {
+			synchronized (this) {
+				writingIndexes.removeAll(documents.keySet());
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * waits until a queued document of the index is written (writes it in the
+	 * calling thread, if the background thread did not start it yet), e.g.
+	 * before loading the index again
+	 */
+	void awaitWritten(int index) throws Exception {
+		Document document;
+		DocumentChanges changes;
+		synchronized (this) {
+			while (writingIndexes.contains(index)) {
+				await();
+			}
+			document = queuedDocuments.remove(index);
+			changes = queuedChanges.remove(index);
+			if (document == null) {
+				return;
+			}
+			writingIndexes.add(index);
+		}
+		try {
+			corpus.lockedSetDocument(index, document, changes);
+			corpus.documentsWritten(Collections.singleton(index), true);
+		} catch (Exception e) {
+			corpus.documentsWritten(Collections.singleton(index), false);
+			throw e;
+		} finally {
+			synchronized (this) {
+				writingIndexes.remove(index);
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * waits until all queued documents are written, e.g. before indexes of the
+	 * backend change
+	 */
+	synchronized void flush() {
+		while (!queuedDocuments.isEmpty() || !writingIndexes.isEmpty()) {
+			await();
+		}
+		checkFailure();
+	}
+
+	void shutdown() {
+		try {
+			flush();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private void await() {
+		try {
+			wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GateRuntimeException("interrupted while writing documents", e);
+		}
+	}
+
+	private void checkFailure() {
+		if (failure != null) {
+			Exception e = failure;
+			failure = null;
+			throw new GateRuntimeException("cannot write documents in background", e);
+		}
+	}
+
+}
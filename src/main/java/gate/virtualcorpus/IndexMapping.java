@@ -0,0 +1,406 @@
+package gate.virtualcorpus;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Maps the indexes of a corpus to stable physical ids of backend records, so
+ * documents can be inserted or removed in O(log n) without renumbering the
+ * records after them. The mapping is an implicit treap (a randomized binary
+ * tree ordered by index, each node knows the size of its subtree), stored in
+ * int arrays to keep millions of documents cheap. An identity mapping (of a
+ * backend, which stored records by index so far) needs no arrays until it is
+ * modified first.
+ *
+ * Modifications are appended to a {@link Journal} before they are applied, a
+ * backend persists a snapshot ({@link #toArray()}) only from time to time and
+ * applies the journal again with {@link #replay(int[])} when it is opened.
+ *
+ * The mapping is not thread safe, backends access it under the backend lock of
+ * {@link VirtualCorpus} (loads in parallel, modifications exclusively).
+ */
+public final class IndexMapping {
+	static final int INSERT = 1;
+	static final int REMOVE = 2;
+	static final int CLEAR = 3;
+
+	private static final int NIL = 0;
+
+	/**
+	 * persists operations: {INSERT, index, ids...}, {REMOVE, indexes...} (from
+	 * last to first) or {CLEAR}
+	 */
+	public interface Journal {
+		void append(int[] operation) throws IOException;
+	}
+
+	private int[] left;
+	private int[] right;
+	private int[] sizes;
+	private int[] priorities;
+	private int[] ids;
+	/**
+	 * size of the identity mapping, -1 once the treap is built
+	 */
+	private int identitySize = -1;
+	private int root = NIL;
+	private int nodeCount = 1;
+	private int freeNodes = NIL;
+	private int nextId = 0;
+	private int seed = 0x2545F491;
+	private Journal journal;
+
+	private int splitLeft;
+	private int splitRight;
+
+	public IndexMapping() {
+		this(new int[0]);
+	}
+
+	/**
+	 * @param physicalIds in index order, e.g. a snapshot of {@link #toArray()}
+	 */
+	public IndexMapping(int[] physicalIds) {
+		initTreap(physicalIds);
+	}
+
+	private IndexMapping(int identitySize) {
+		this.identitySize = identitySize;
+		this.nextId = identitySize;
+	}
+
+	/**
+	 * mapping of a backend, which stored records by index so far, the treap is
+	 * built on the first insert or remove
+	 */
+	public static IndexMapping identity(int size) {
+		return new IndexMapping(size);
+	}
+
+	/**
+	 * @return true, if the mapping was not modified since it was created by
+	 *         {@link #identity(int)}
+	 */
+	public boolean isIdentity() {
+		return identitySize >= 0;
+	}
+
+	public void setJournal(Journal journal) {
+		this.journal = journal;
+	}
+
+	public int size() {
+		return isIdentity() ? identitySize : sizes[root];
+	}
+
+	/**
+	 * @return the physical id of the document at an index
+	 */
+	public int get(int index) {
+		checkIndex(index, size());
+		if (isIdentity()) {
+			return index;
+		}
+		int node = root;
+		while (true) {
+			int leftSize = sizes[left[node]];
+			if (index < leftSize) {
+				node = left[node];
+			} else if (index == leftSize) {
+				return ids[node];
+			} else {
+				index -= leftSize + 1;
+				node = right[node];
+			}
+		}
+	}
+
+	/**
+	 * @return new physical ids, which are not used by the mapping (records can
+	 *         be written before they are inserted)
+	 */
+	public int[] allocate(int count) {
+		int[] physicalIds = new int[count];
+		for (int i = 0; i < count; i++) {
+			physicalIds[i] = nextId++;
+		}
+		return physicalIds;
+	}
+
+	public void insert(int index, int[] physicalIds) throws IOException {
+		checkIndex(index, size() + 1);
+		if (physicalIds.length == 0) {
+			return;
+		}
+		if (journal != null) {
+			int[] operation = new int[physicalIds.length + 2];
+			operation[0] = INSERT;
+			operation[1] = index;
+			System.arraycopy(physicalIds, 0, operation, 2, physicalIds.length);
+			journal.append(operation);
+		}
+		applyInsert(index, physicalIds);
+	}
+
+	/**
+	 * @return the physical ids of the removed indexes (in ascending index order)
+	 */
+	public int[] remove(Set<Integer> indexes) throws IOException {
+		int[] sortedIndexes = indexes.stream().mapToInt(Integer::intValue).sorted().toArray();
+		if (sortedIndexes.length == 0) {
+			return sortedIndexes;
+		}
+		checkIndex(sortedIndexes[0], size());
+		checkIndex(sortedIndexes[sortedIndexes.length - 1], size());
+		if (journal != null) {
+			int[] operation = new int[sortedIndexes.length + 1];
+			operation[0] = REMOVE;
+			for (int i = 0; i < sortedIndexes.length; i++) {
+				operation[i + 1] = sortedIndexes[sortedIndexes.length - 1 - i];
+			}
+			journal.append(operation);
+		}
+		int[] physicalIds = new int[sortedIndexes.length];
+		for (int i = sortedIndexes.length - 1; i >= 0; i--) {
+			physicalIds[i] = applyRemove(sortedIndexes[i]);
+		}
+		return physicalIds;
+	}
+
+	public void clear() throws IOException {
+		if (journal != null) {
+			journal.append(new int[] { CLEAR });
+		}
+		applyClear();
+	}
+
+	/**
+	 * applies a journaled operation again, without appending it to the journal
+	 */
+	public void replay(int[] operation) {
+		switch (operation[0]) {
+		case INSERT:
+			applyInsert(operation[1], Arrays.copyOfRange(operation, 2, operation.length));
+			break;
+		case REMOVE:
+			for (int i = 1; i < operation.length; i++) {
+				applyRemove(operation[i]);
+			}
+			break;
+		case CLEAR:
+			applyClear();
+			break;
+		default:
+			throw new IllegalArgumentException("unknown operation " + operation[0]);
+		}
+	}
+
+	/**
+	 * @return the physical ids in index order
+	 */
+	public int[] toArray() {
+		int[] physicalIds = new int[size()];
+		if (isIdentity()) {
+			for (int i = 0; i < physicalIds.length; i++) {
+				physicalIds[i] = i;
+			}
+			return physicalIds;
+		}
+		int[] stack = new int[64];
+		int top = 0;
+		int position = 0;
+		int node = root;
+		while (node != NIL || top > 0) {
+			while (node != NIL) {
+				if (top == stack.length) {
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				}
+				stack[top++] = node;
+				node = left[node];
+			}
+			node = stack[--top];
+			physicalIds[position++] = ids[node];
+			node = right[node];
+		}
+		return physicalIds;
+	}
+
+	private void applyInsert(int index, int[] physicalIds) {
+		buildIdentity();
+		int inserted = build(physicalIds);
+		split(root, index);
+		int after = splitRight;
+		root = merge(merge(splitLeft, inserted), after);
+	}
+
+	private int applyRemove(int index) {
+		buildIdentity();
+		split(root, index);
+		int before = splitLeft;
+		split(splitRight, 1);
+		int removed = splitLeft;
+		root = merge(before, splitRight);
+		int physicalId = ids[removed];
+		left[removed] = freeNodes;
+		freeNodes = removed;
+		return physicalId;
+	}
+
+	/**
+	 * builds the treap of an identity mapping before it is modified first
+	 */
+	private void buildIdentity() {
+		if (!isIdentity()) {
+			return;
+		}
+		int[] physicalIds = toArray();
+		identitySize = -1;
+		initTreap(physicalIds);
+	}
+
+	private void initTreap(int[] physicalIds) {
+		int capacity = Math.max(16, physicalIds.length + 1);
+		left = new int[capacity];
+		right = new int[capacity];
+		sizes = new int[capacity];
+		priorities = new int[capacity];
+		ids = new int[capacity];
+		root = build(physicalIds);
+	}
+
+	private void applyClear() {
+		if (isIdentity()) {
+			identitySize = 0;
+			return;
+		}
+		root = NIL;
+		nodeCount = 1;
+		freeNodes = NIL;
+	}
+
+	/**
+	 * builds a treap of the ids in linear time, nodes are pushed on a stack
+	 * while priorities decrease (the right spine), a node of higher priority
+	 * adopts the popped nodes as its left subtree
+	 */
+	private int build(int[] physicalIds) {
+		ensureCapacity(physicalIds.length);
+		int[] stack = new int[64];
+		int top = 0;
+		for (int physicalId : physicalIds) {
+			int node = newNode(physicalId);
+			int last = NIL;
+			while (top > 0 && priorities[stack[top - 1]] < priorities[node]) {
+				last = stack[--top];
+				update(last);
+			}
+			left[node] = last;
+			if (top > 0) {
+				right[stack[top - 1]] = node;
+			}
+			if (top == stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			stack[top++] = node;
+			nextId = Math.max(nextId, physicalId + 1);
+		}
+		while (top > 1) {
+			update(stack[--top]);
+		}
+		if (top == 0) {
+			return NIL;
+		}
+		update(stack[0]);
+		return stack[0];
+	}
+
+	/**
+	 * splits a subtree into the first count nodes (splitLeft) and the rest
+	 * (splitRight)
+	 */
+	private void split(int node, int count) {
+		if (node == NIL) {
+			splitLeft = NIL;
+			splitRight = NIL;
+		} else if (sizes[left[node]] < count) {
+			split(right[node], count - sizes[left[node]] - 1);
+			right[node] = splitLeft;
+			update(node);
+			splitLeft = node;
+		} else {
+			split(left[node], count);
+			left[node] = splitRight;
+			update(node);
+			splitRight = node;
+		}
+	}
+
+	private int merge(int first, int second) {
+		if (first == NIL) {
+			return second;
+		}
+		if (second == NIL) {
+			return first;
+		}
+		if (priorities[first] > priorities[second]) {
+			right[first] = merge(right[first], second);
+			update(first);
+			return first;
+		} else {
+			left[second] = merge(first, left[second]);
+			update(second);
+			return second;
+		}
+	}
+
+	private void update(int node) {
+		sizes[node] = sizes[left[node]] + sizes[right[node]] + 1;
+	}
+
+	private int newNode(int physicalId) {
+		int node;
+		if (freeNodes != NIL) {
+			node = freeNodes;
+			freeNodes = left[node];
+		} else {
+			node = nodeCount++;
+		}
+		left[node] = NIL;
+		right[node] = NIL;
+		sizes[node] = 1;
+		priorities[node] = nextPriority();
+		ids[node] = physicalId;
+		return node;
+	}
+
+	/**
+	 * xorshift priorities, cheap and without a shared random generator
+	 */
+	private int nextPriority() {
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		return seed;
+	}
+
+	private void ensureCapacity(int additionalNodes) {
+		int required = nodeCount + additionalNodes;
+		if (required <= ids.length) {
+			return;
+		}
+		int capacity = Math.max(required, ids.length + (ids.length >> 1));
+		left = Arrays.copyOf(left, capacity);
+		right = Arrays.copyOf(right, capacity);
+		sizes = Arrays.copyOf(sizes, capacity);
+		priorities = Arrays.copyOf(priorities, capacity);
+		ids = Arrays.copyOf(ids, capacity);
+	}
+
+	private static void checkIndex(int index, int size) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + " size " + size);
+		}
+	}
+
+}
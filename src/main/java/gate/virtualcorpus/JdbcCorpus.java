@@ -8,15 +8,19 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 import org.apache.log4j.Logger;
 
@@ -26,7 +30,6 @@ import gate.Factory;
 import gate.FeatureMap;
 import gate.GateConstants;
 import gate.Resource;
-import gate.corpora.DocumentImpl;
 import gate.creole.ResourceInstantiationException;
 import gate.creole.metadata.CreoleParameter;
 import gate.creole.metadata.CreoleResource;
@@ -54,6 +57,9 @@ public class JdbcCorpus extends VirtualCorpus {
 
 	private static final String COUNT_ID_SQL = "SELECT COUNT(${idColumn}) FROM ${tableName}";
 	private static final String SELECT_ID_SQL = "SELECT ${idColumn} FROM ${tableName} ORDER BY ${idColumn} ASC";
+	private static final String SELECT_NAMES_SQL = "SELECT ${idColumn}, ${nameColumns} FROM ${tableName} ORDER BY ${idColumn} ASC";
+	private static final String SELECT_ID_AFTER_SQL = "SELECT ${idColumn} FROM ${tableName} WHERE ${idColumn} > ? ORDER BY ${idColumn} ASC";
+	private static final String SELECT_NAMES_AFTER_SQL = "SELECT ${idColumn}, ${nameColumns} FROM ${tableName} WHERE ${idColumn} > ? ORDER BY ${idColumn} ASC";
 	private static final String SELECT_VALUES_SQL = "SELECT ${idColumn}, ${columns} FROM ${tableName} ORDER BY ${idColumn} ASC";
 	private static final String UPDATE_VALUES_SQL = "UPDATE ${tableName} SET ${column} = ? WHERE ${idColumn} = ?";
 
@@ -95,6 +101,10 @@ public class JdbcCorpus extends VirtualCorpus {
 	private transient Connection connection;
 	private transient PreparedStatement idStatement;
 	private transient ResultSet idResultSet;
+	private transient PreparedStatement namesStatement;
+	private transient PreparedStatement namesAfterStatement;
+	private transient int lastNamesRow = 0;
+	private transient Object lastNamesId;
 	private transient PreparedStatement valuesStatement;
 	private transient ResultSet valuesResultSet;
 	private transient Map<String, PreparedStatement> updateStatements;
@@ -484,6 +494,12 @@ public class JdbcCorpus extends VirtualCorpus {
 					ResultSet.CONCUR_READ_ONLY);
 			valuesStatement = connection.prepareStatement(prepareQuery(SELECT_VALUES_SQL), resultSetType,
 					resultSetConcurrency);
+			namesStatement = connection.prepareStatement(
+					prepareQuery(nameColumns.isEmpty() ? SELECT_ID_SQL : SELECT_NAMES_SQL), resultSetType,
+					ResultSet.CONCUR_READ_ONLY);
+			namesAfterStatement = connection.prepareStatement(
+					prepareQuery(nameColumns.isEmpty() ? SELECT_ID_AFTER_SQL : SELECT_NAMES_AFTER_SQL),
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
 			if (!getReadonlyDocuments() && valuesStatement.getResultSetConcurrency() != ResultSet.CONCUR_UPDATABLE) {
 				if (hasValue(exportColumnSuffix)) {
 					updateStatements = prepareStatements(UPDATE_VALUES_SQL, contentColumns, exportColumnSuffix);
@@ -494,10 +510,16 @@ public class JdbcCorpus extends VirtualCorpus {
 					updateStatements.putAll(prepareStatements(UPDATE_VALUES_SQL, featureColumns));
 				}
 			}
-			idStatement.setFetchDirection(fetchDirection);
+			// forward is the default, SQLite rejects setting it before a query
+			if (fetchDirection != ResultSet.FETCH_FORWARD) {
+				idStatement.setFetchDirection(fetchDirection);
+				valuesStatement.setFetchDirection(fetchDirection);
+				namesStatement.setFetchDirection(fetchDirection);
+			}
 			idStatement.setFetchSize(fetchIds);
-			valuesStatement.setFetchDirection(fetchDirection);
 			valuesStatement.setFetchSize(fetchRows);
+			namesStatement.setFetchSize(fetchIds);
+			namesAfterStatement.setFetchSize(fetchIds);
 			idResultSet = idStatement.executeQuery();
 			valuesResultSet = valuesStatement.executeQuery();
 		} catch (SQLException e) {
@@ -511,8 +533,10 @@ public class JdbcCorpus extends VirtualCorpus {
 
 	@Override
 	public void cleanup() {
+		super.cleanup();
 		try {
-			if (!getReadonlyDocuments() && valuesResultSet.getConcurrency() == ResultSet.CONCUR_UPDATABLE) {
+			if (!getReadonlyDocuments() && !valuesResultSet.isClosed()
+					&& valuesResultSet.getConcurrency() == ResultSet.CONCUR_UPDATABLE) {
 				valuesResultSet.updateRow();
 			}
 			if (connection != null && !connection.isClosed()) {
@@ -553,6 +577,55 @@ public class JdbcCorpus extends VirtualCorpus {
 
 	}
 
+	@Override
+	protected List<String> loadDocumentNames(int fromIndex, int toIndex) throws Exception {
+		return loadDocumentNames(IntStream.range(fromIndex, toIndex).toArray());
+	}
+
+	/**
+	 * reads the rows from the first to the last index with one query, names are
+	 * only built for the indexes. The query starts after the id of the previous
+	 * row (known after loading the names before, so listing all names reads each
+	 * row once) and is limited to the rows of the range.
+	 */
+	@Override
+	protected List<String> loadDocumentNames(int[] indexes) throws Exception {
+		List<String> documentNames = new ArrayList<>(indexes.length);
+		if (indexes.length == 0) {
+			return documentNames;
+		}
+		int firstRow = row(indexes[0]);
+		int lastRow = row(indexes[indexes.length - 1]);
+		PreparedStatement statement;
+		if (firstRow == 1) {
+			statement = namesStatement;
+		} else {
+			statement = namesAfterStatement;
+			statement.setObject(1, firstRow - 1 == lastNamesRow ? lastNamesId : getId(firstRow - 1));
+		}
+		statement.setMaxRows(lastRow - firstRow + 1);
+		try (ResultSet resultSet = statement.executeQuery()) {
+			int row = firstRow - 1;
+			for (int index : indexes) {
+				while (row < row(index)) {
+					if (!resultSet.next()) {
+						throw new SQLException("row " + (row + 1) + " of table " + tableName
+								+ " is missing, rows were removed while loading document names");
+					}
+					row++;
+					lastNamesRow = row;
+					lastNamesId = resultSet.getObject(idColumn);
+				}
+				if (nameColumnList.isEmpty()) {
+					documentNames.add(buildDocumentName(column(index), lastNamesId.toString()));
+				} else {
+					documentNames.add(buildDocumentName(column(index), getStringValues(resultSet, nameColumnList)));
+				}
+			}
+		}
+		return documentNames;
+	}
+
 	@Override
 	protected Document loadDocument(int index) throws Exception {
 		Integer row = row(index);
@@ -580,9 +653,11 @@ public class JdbcCorpus extends VirtualCorpus {
 		if (content == null) {
 			content = "";
 		} else if (content instanceof byte[]) {
+			documentBytesRead(((byte[]) content).length);
 			content = new String((byte[]) content, encoding);
-		} else if (!(content instanceof String)) {
+		} else {
 			content = content.toString();
+			documentBytesRead(((String) content).length());
 		}
 		FeatureMap features = Factory.newFeatureMap();
 		features.put(GateConstants.THROWEX_FORMAT_PROPERTY_NAME, true);
@@ -606,7 +681,25 @@ public class JdbcCorpus extends VirtualCorpus {
 		} else {
 			documentName = buildDocumentName(contentColumn, getStringValues(valuesResultSet, nameColumnList));
 		}
-		return (Document) Factory.createResource(DocumentImpl.class.getName(), params, features, documentName);
+		return createDocument(params, features, documentName);
+	}
+
+	/**
+	 * loads the documents in row order, so the values result set only moves
+	 * forward (a forward only result set is executed again to move back)
+	 */
+	@Override
+	protected List<Document> loadDocuments(int[] indexes) throws Exception {
+		Integer[] positions = new Integer[indexes.length];
+		for (int i = 0; i < indexes.length; i++) {
+			positions[i] = i;
+		}
+		Arrays.sort(positions, Comparator.comparingInt(position -> row(indexes[position])));
+		Document[] documents = new Document[indexes.length];
+		for (int position : positions) {
+			documents[position] = loadDocument(indexes[position]);
+		}
+		return Arrays.asList(documents);
 	}
 
 	@Override
@@ -617,31 +710,10 @@ public class JdbcCorpus extends VirtualCorpus {
 	@Override
 	protected void setDocument(int index, Document document) throws Exception {
 		Integer row = row(index);
-		String column = column(index);
+		String column = exportColumn(index);
+		byte[] bytes = exportBytes(document);
 
-		if (hasValue(exportColumnSuffix)) {
-			column = exportColumnMapping.get(column);
-		}
-
-		DocumentExporter exporter = null;
-		if (hasValue(exporterClassName)) {
-			exporter = getExporterForClassName(exporterClassName);
-		}
-		if (exporter == null && hasValue(mimeType)) {
-			exporter = getExporterForMimeType(mimeType);
-		}
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-		if (exporter != null) {
-			export(outputStream, document, exporter);
-		} else if (hasValue(encoding)) {
-			export(outputStream, document, encoding);
-		} else {
-			export(outputStream, document);
-		}
-
-		byte[] bytes = outputStream.toByteArray();
-
-		if (valuesResultSet.getConcurrency() == ResultSet.CONCUR_UPDATABLE) {
+		if (valuesStatement.getResultSetConcurrency() == ResultSet.CONCUR_UPDATABLE) {
 			valuesResultSet = moveResultSetToRow(valuesStatement, valuesResultSet, row);
 			valuesResultSet.updateBytes(column, bytes);
 			if (!connection.getMetaData().ownUpdatesAreVisible(valuesResultSet.getType())) {
@@ -668,6 +740,68 @@ public class JdbcCorpus extends VirtualCorpus {
 		commitConnection();
 	}
 
+	@Override
+	protected void setDocuments(Map<Integer, Document> documents) throws Exception {
+		if (valuesStatement.getResultSetConcurrency() == ResultSet.CONCUR_UPDATABLE) {
+			super.setDocuments(documents);
+			return;
+		}
+
+		Set<PreparedStatement> batchStatements = new HashSet<>();
+		for (Entry<Integer, Document> entry : documents.entrySet()) {
+			Integer index = entry.getKey();
+			byte[] bytes = exportBytes(entry.getValue());
+			Object id = getId(row(index));
+			PreparedStatement updateStatement = updateStatements.get(exportColumn(index));
+			updateStatement.setBytes(1, bytes);
+			updateStatement.setObject(2, id);
+			updateStatement.addBatch();
+			batchStatements.add(updateStatement);
+		}
+		for (PreparedStatement updateStatement : batchStatements) {
+			updateStatement.executeBatch();
+		}
+		if (maxUpdates != null) {
+			updateCount += documents.size();
+		}
+
+		if (!connection.getMetaData().othersUpdatesAreVisible(idStatement.getResultSetType())) {
+			idResultSet.close();
+		}
+		if (!connection.getMetaData().othersUpdatesAreVisible(valuesStatement.getResultSetType())) {
+			valuesResultSet.close();
+		}
+		commitConnection();
+	}
+
+	private String exportColumn(int index) {
+		String column = column(index);
+		if (hasValue(exportColumnSuffix)) {
+			column = exportColumnMapping.get(column);
+		}
+		return column;
+	}
+
+	private byte[] exportBytes(Document document) throws Exception {
+		DocumentExporter exporter = null;
+		if (hasValue(exporterClassName)) {
+			exporter = getExporterForClassName(exporterClassName);
+		}
+		if (exporter == null && hasValue(mimeType)) {
+			exporter = getExporterForMimeType(mimeType);
+		}
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		if (exporter != null) {
+			export(outputStream, document, exporter);
+		} else if (hasValue(encoding)) {
+			export(outputStream, document, encoding);
+		} else {
+			export(outputStream, document);
+		}
+		documentBytesWritten(outputStream.size());
+		return outputStream.toByteArray();
+	}
+
 	@Override
 	protected void deleteDocuments(Set<Integer> indexes) throws Exception {
 		throw new UnsupportedOperationException();
@@ -683,6 +817,29 @@ public class JdbcCorpus extends VirtualCorpus {
 		throw new GateRuntimeException("renaming document is not supported");
 	}
 
+	/**
+	 * result sets opened before may not contain appended rows, they are reopened
+	 * when used next
+	 */
+	@Override
+	protected void backendSizeGrown(int previousSize, int size) throws Exception {
+		closeResultSet(idResultSet);
+		closeResultSet(valuesResultSet);
+	}
+
+	private void closeResultSet(ResultSet resultSet) throws SQLException {
+		if (resultSet.isClosed()) {
+			return;
+		}
+		if (resultSet.getConcurrency() == ResultSet.CONCUR_UPDATABLE && resultSet.getRow() > 0) {
+			resultSet.updateRow();
+		}
+		resultSet.close();
+		if (maxRowsSelected != null) {
+			rowsSelectCounts.remove(resultSet);
+		}
+	}
+
 	@Override
 	protected void documentUnloaded(int index, Document document) {
 		if (contentColumnList.size() > 1) {
@@ -690,7 +847,8 @@ public class JdbcCorpus extends VirtualCorpus {
 			int endIndex = startIndex + contentColumnList.size();
 
 			for (Integer i = startIndex; i < endIndex; i++) {
-				if (i != index && isDocumentLoaded(i)) {
+				int corpusIndex = corpusIndex(i);
+				if (i != index && corpusIndex >= 0 && isDocumentLoaded(corpusIndex)) {
 					return;
 				}
 			}
@@ -741,6 +899,7 @@ public class JdbcCorpus extends VirtualCorpus {
 		query = query.replaceAll(Pattern.quote("${tableName}"), tableName);
 		query = query.replaceAll(Pattern.quote("${idColumn}"), idColumn);
 		query = query.replaceAll(Pattern.quote("${columns}"), String.join(",", this.columns));
+		query = query.replaceAll(Pattern.quote("${nameColumns}"), String.join(",", this.nameColumnList));
 		return query;
 	}
 
@@ -814,7 +973,13 @@ public class JdbcCorpus extends VirtualCorpus {
 				}
 				rowsSelectCounts.put(resultSet, rowsSelectCount + 1);
 			}
-			resultSet.absolute(row);
+			if (resultSet.getType() == ResultSet.TYPE_FORWARD_ONLY) {
+				// drivers may reject absolute on forward only result sets (e.g. SQLite)
+				while (resultSet.getRow() < row && resultSet.next()) {
+				}
+			} else {
+				resultSet.absolute(row);
+			}
 		}
 		return resultSet;
 	}
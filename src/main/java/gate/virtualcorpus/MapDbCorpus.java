@@ -8,8 +8,12 @@ import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -18,12 +22,14 @@ import org.mapdb.DBMaker;
 import org.mapdb.DBMaker.Maker;
 import org.mapdb.Serializer;
 
+import gate.AnnotationSet;
 import gate.Document;
 import gate.Resource;
 import gate.creole.ResourceInstantiationException;
 import gate.creole.metadata.CreoleParameter;
 import gate.creole.metadata.CreoleResource;
 import gate.creole.metadata.Optional;
+import gate.serialization.DocumentDelta;
 import gate.serialization.DocumentUtil;
 
 @CreoleResource(name = "MapDbCorpus", interfaceName = "gate.Corpus", icon = "corpus", comment = "A corpus backed by serialized GATE documents in a MapDB")
@@ -34,6 +40,18 @@ public class MapDbCorpus extends VirtualCorpus {
 	protected static final String DOCUMENTSSIZE_MAPNAME = "documentsSize";
 	protected static final String DOCUMENTNAMES_MAPNAME = "documentNames";
 	protected static final String DOCUMENTBYTES_MAPNAME = "documentBytes";
+	protected static final String DOCUMENTDELTAS_MAPNAME = "documentDeltas";
+	protected static final String INDEXMAPPING_NAME = "indexMapping";
+	protected static final String INDEXMAPPINGJOURNAL_NAME = "indexMappingJournal";
+	protected static final String NAMESGENERATION_NAME = "namesGeneration";
+	protected static final String FORMATVERSION_NAME = "formatVersion";
+
+	/**
+	 * version of the stored records, files without version were written before
+	 * documents had deltas (version 1), version 2 stores deltas of documents,
+	 * version 3 stores documents by physical id of the index mapping
+	 */
+	protected static final int FORMAT_VERSION = 3;
 
 	private URL mapDbFile;
 	private Boolean compressDocuments;
@@ -42,6 +60,12 @@ public class MapDbCorpus extends VirtualCorpus {
 	private transient org.mapdb.Atomic.Integer size;
 	private transient Map<Integer, byte[]> documentBytes;
 	private transient Map<Integer, String> documentNames;
+	private transient Map<Integer, byte[]> documentDeltas;
+	private transient org.mapdb.Atomic.Var<int[]> indexMappingSnapshot;
+	private transient List<int[]> indexMappingJournal;
+	private transient IndexMapping indexMapping;
+	private transient boolean indexMappingSaved;
+	private transient org.mapdb.Atomic.Long namesGeneration;
 
 	@Override
 	@Optional
@@ -109,18 +133,93 @@ public class MapDbCorpus extends VirtualCorpus {
 		}
 		mapDb = maker.fileMmapEnableIfSupported().fileMmapPreclearDisable().cleanerHackEnable().fileChannelEnable()
 				.make();
+		checkFormatVersion();
 		size = mapDb.atomicInteger(DOCUMENTSSIZE_MAPNAME).createOrOpen();
 		documentNames = mapDb.hashMap(DOCUMENTNAMES_MAPNAME, Serializer.INTEGER, Serializer.STRING).createOrOpen();
 		documentBytes = mapDb.hashMap(DOCUMENTBYTES_MAPNAME, Serializer.INTEGER, Serializer.BYTE_ARRAY).createOrOpen();
+		documentDeltas = mapDb.hashMap(DOCUMENTDELTAS_MAPNAME, Serializer.INTEGER, Serializer.BYTE_ARRAY).createOrOpen();
+		namesGeneration = mapDb.atomicLong(NAMESGENERATION_NAME).createOrOpen();
+		initIndexMapping();
+	}
+
+	/**
+	 * files of older versions are upgraded to the current version, files of
+	 * newer plugin versions are refused
+	 */
+	private void checkFormatVersion() throws ResourceInstantiationException {
+		org.mapdb.Atomic.Integer formatVersion = mapDb.atomicInteger(FORMATVERSION_NAME).createOrOpen();
+		if (formatVersion.get() > FORMAT_VERSION) {
+			int version = formatVersion.get();
+			mapDb.close();
+			mapDb = null;
+			throw new ResourceInstantiationException("MapDB file " + mapDbFile + " has format version " + version
+					+ ", this plugin reads versions up to " + FORMAT_VERSION);
+		}
+		formatVersion.set(FORMAT_VERSION);
+	}
+
+	/**
+	 * documents are stored by physical id, the mapping from index to physical id
+	 * is loaded from its snapshot and journal. Stores without a snapshot stored
+	 * documents by index, their mapping is the identity, kept in memory without
+	 * arrays until the first insert, remove or clear.
+	 */
+	private void initIndexMapping() {
+		indexMappingSnapshot = mapDb.atomicVar(INDEXMAPPING_NAME, Serializer.INT_ARRAY).createOrOpen();
+		indexMappingJournal = mapDb.indexTreeList(INDEXMAPPINGJOURNAL_NAME, Serializer.INT_ARRAY).createOrOpen();
+		int[] snapshot = indexMappingSnapshot.get();
+		indexMappingSaved = snapshot != null;
+		if (snapshot == null) {
+			indexMapping = IndexMapping.identity(size.get());
+		} else {
+			indexMapping = new IndexMapping(snapshot);
+			if (!indexMappingJournal.isEmpty()) {
+				for (int[] operation : indexMappingJournal) {
+					indexMapping.replay(operation);
+				}
+				saveIndexMapping();
+			}
+		}
+		indexMapping.setJournal(this::appendIndexMappingJournal);
+	}
+
+	/**
+	 * replaces the journal by a snapshot of the mapping
+	 */
+	private void saveIndexMapping() {
+		indexMappingSnapshot.set(indexMapping.toArray());
+		indexMappingJournal.clear();
+		size.set(indexMapping.size());
+		indexMappingSaved = true;
+	}
+
+	/**
+	 * called before an operation is applied, the first operation of a mapping
+	 * without snapshot saves the unmodified mapping first
+	 */
+	private void appendIndexMappingJournal(int[] operation) {
+		if (!indexMappingSaved) {
+			saveIndexMapping();
+		}
+		indexMappingJournal.add(operation);
 	}
 
 	@Override
 	public void cleanup() {
+		super.cleanup();
 		if (mapDb != null) {
+			if (indexMapping != null && !indexMappingJournal.isEmpty()) {
+				saveIndexMapping();
+			}
 			mapDb.close();
 		}
 	}
 
+	@Override
+	protected boolean supportsConcurrentAccess() {
+		return true;
+	}
+
 	@Override
 	protected int loadSize() throws Exception {
 		return size.get();
@@ -128,66 +227,190 @@ public class MapDbCorpus extends VirtualCorpus {
 
 	@Override
 	protected String loadDocumentName(int index) throws Exception {
-		return documentNames.get(index);
+		return documentNames.get(indexMapping.get(index));
 	}
 
 	@Override
 	protected Document loadDocument(int index) throws Exception {
-		if (documentBytes.containsKey(index)) {
-			try (InputStream in = new ByteArrayInputStream(documentBytes.get(index))) {
-				return DocumentUtil.readDocument(in, compressDocuments);
+		int id = indexMapping.get(index);
+		byte[] bytes = documentBytes.get(id);
+		if (bytes != null) {
+			Document document;
+			documentBytesRead(bytes.length);
+			try (InputStream in = new ByteArrayInputStream(bytes)) {
+				document = readDocument(in, compressDocuments);
+			}
+			byte[] deltaBytes = documentDeltas.get(id);
+			if (deltaBytes != null) {
+				documentBytesRead(deltaBytes.length);
+				DocumentDelta.fromBytes(deltaBytes, compressDocuments).applyTo(document);
 			}
+			return document;
 		}
 		return null;
 	}
 
+	/**
+	 * stores the documents by new physical ids, existing documents are not
+	 * touched
+	 */
 	@Override
 	protected void addDocuments(int index, Collection<? extends Document> documents) throws Exception {
-		if (index < size()) {
-			shiftIndexMap(documentNames, index, size(), documents.size());
-			shiftIndexMap(documentBytes, index, size(), documents.size());
-		}
-
-		int i = index;
+		int[] ids = indexMapping.allocate(documents.size());
+		int i = 0;
 		Iterator<? extends Document> iterator = documents.iterator();
 		while (iterator.hasNext()) {
 			Document document = iterator.next();
-			documentNames.put(i, document.getName());
-			documentBytes.put(i, buildBytes(document));
+			documentNames.put(ids[i], document.getName());
+			documentBytes.put(ids[i], buildBytes(document));
+			documentDeltas.remove(ids[i]);
 			i++;
 		}
+		indexMapping.insert(index, ids);
 		size.addAndGet(documents.size());
+		namesGeneration.incrementAndGet();
 	}
 
 	@Override
 	protected void setDocument(int index, Document document) throws Exception {
-		documentNames.put(index, document.getName());
-		documentBytes.put(index, buildBytes(document));
+		int id = indexMapping.get(index);
+		String previousName = documentNames.put(id, document.getName());
+		documentBytes.put(id, buildBytes(document));
+		documentDeltas.remove(id);
+		if (!Objects.equals(previousName, document.getName())) {
+			namesGeneration.incrementAndGet();
+		}
+	}
+
+	@Override
+	protected void setDocuments(Map<Integer, Document> documents) throws Exception {
+		Map<Integer, String> names = new HashMap<>();
+		Map<Integer, byte[]> bytes = new HashMap<>();
+		boolean namesChanged = false;
+		for (Entry<Integer, Document> entry : documents.entrySet()) {
+			int id = indexMapping.get(entry.getKey());
+			names.put(id, entry.getValue().getName());
+			bytes.put(id, buildBytes(entry.getValue()));
+			namesChanged |= !Objects.equals(documentNames.get(id), entry.getValue().getName());
+		}
+		documentNames.putAll(names);
+		documentBytes.putAll(bytes);
+		for (Integer id : names.keySet()) {
+			documentDeltas.remove(id);
+		}
+		if (namesChanged) {
+			namesGeneration.incrementAndGet();
+		}
+	}
+
+	@Override
+	protected boolean supportsDocumentChanges() {
+		return true;
+	}
+
+	/**
+	 * the whole document is saved if its content changed, it is not stored yet
+	 * or changed annotation sets contain relations
+	 */
+	@Override
+	protected boolean requiresWholeDocument(int index, Document document, DocumentChanges changes) throws Exception {
+		return changes.isContentChanged() || !documentNames.containsKey(indexMapping.get(index))
+				|| containsRelations(document, changes.getChangedAnnotationSets());
 	}
 
+	/**
+	 * stores changed features and annotation sets as delta of the document
+	 */
+	@Override
+	protected void setDocumentChanges(int index, Document document, DocumentChanges changes) throws Exception {
+		if (requiresWholeDocument(index, document, changes)) {
+			setDocument(index, document);
+			return;
+		}
+		int id = indexMapping.get(index);
+		DocumentDelta delta = new DocumentDelta();
+		if (changes.isFeaturesChanged()) {
+			delta.setFeatures(document.getFeatures());
+		}
+		for (String name : changes.getRemovedAnnotationSets()) {
+			delta.removeAnnotationSet(name);
+		}
+		for (String name : changes.getChangedAnnotationSets()) {
+			delta.setAnnotationSet(name, annotationSet(document, name));
+		}
+		byte[] previousDeltaBytes = documentDeltas.get(id);
+		if (previousDeltaBytes != null) {
+			DocumentDelta previousDelta = DocumentDelta.fromBytes(previousDeltaBytes, compressDocuments);
+			previousDelta.merge(delta);
+			delta = previousDelta;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("save delta of document " + index + ": " + changes);
+		}
+		byte[] deltaBytes = delta.toBytes(compressDocuments);
+		documentBytesWritten(deltaBytes.length);
+		documentDeltas.put(id, deltaBytes);
+	}
+
+	private static boolean containsRelations(Document document, Set<String> annotationSetNames) {
+		for (String name : annotationSetNames) {
+			if (!annotationSet(document, name).getRelations().isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static AnnotationSet annotationSet(Document document, String name) {
+		return DocumentChanges.DEFAULT_ANNOTATION_SET_NAME.equals(name) ? document.getAnnotations()
+				: document.getAnnotations(name);
+	}
+
+	/**
+	 * removes the indexes from the mapping and deletes only the removed
+	 * documents
+	 */
 	@Override
 	protected void deleteDocuments(Set<Integer> indexes) throws Exception {
-		Integer firstIndex = indexes.stream().min(Integer::compareTo).get();
-		removeFromIndexMap(documentNames, firstIndex, size(), indexes);
-		removeFromIndexMap(documentBytes, firstIndex, size(), indexes);
+		for (int id : indexMapping.remove(indexes)) {
+			documentNames.remove(id);
+			documentBytes.remove(id);
+			documentDeltas.remove(id);
+		}
 		size.addAndGet(-indexes.size());
+		namesGeneration.incrementAndGet();
 	}
 
 	@Override
 	protected void deleteAllDocuments() throws Exception {
 		documentNames.clear();
 		documentBytes.clear();
-		size.set(0);
+		documentDeltas.clear();
+		indexMapping.clear();
+		saveIndexMapping();
+		namesGeneration.incrementAndGet();
 	}
 
 	@Override
 	protected void renameDocument(Document document, String oldName, String newName) throws Exception {
-		documentNames.put(indexOf(document), newName);
+		documentNames.put(indexMapping.get(backendIndexOf(document)), newName);
+		namesGeneration.incrementAndGet();
+	}
+
+	/**
+	 * the generation of document names, incremented when documents are added,
+	 * deleted or renamed (saving a document increments it only if its name
+	 * changed)
+	 */
+	@Override
+	protected String loadFingerprint() throws Exception {
+		return String.valueOf(namesGeneration.get());
 	}
 
 	private byte[] buildBytes(Document document) throws IOException {
 		try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
 			DocumentUtil.writeDocument(document, baos, compressDocuments);
+			documentBytesWritten(baos.size());
 			return baos.toByteArray();
 		}
 	}
@@ -0,0 +1,148 @@
+package gate.virtualcorpus;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.Collectors;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Notifies virtual corpora with an unloadMemoryThreshold, when a heap memory
+ * pool exceeds their threshold (as fraction of the maximum pool size). One
+ * monitor per JVM sets the threshold of all heap pools supporting it to the
+ * lowest threshold of the registered corpora, preferring the collection usage
+ * threshold (usage after garbage collection, so garbage does not trigger
+ * unloading).
+ */
+final class MemoryPressureMonitor implements NotificationListener {
+	private static Logger logger = Logger.getLogger(MemoryPressureMonitor.class);
+
+	private static final MemoryPressureMonitor instance = new MemoryPressureMonitor();
+
+	private final Map<VirtualCorpus, Double> corpora = new IdentityHashMap<>();
+	private boolean listening = false;
+
+	private MemoryPressureMonitor() {
+	}
+
+	static void register(VirtualCorpus corpus, double threshold) {
+		instance.add(corpus, threshold);
+	}
+
+	static void unregister(VirtualCorpus corpus) {
+		instance.remove(corpus);
+	}
+
+	private synchronized void add(VirtualCorpus corpus, double threshold) {
+		corpora.put(corpus, threshold);
+		if (!listening) {
+			NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+			emitter.addNotificationListener(this, null, null);
+			listening = true;
+		}
+		updateThresholds();
+	}
+
+	private synchronized void remove(VirtualCorpus corpus) {
+		if (corpora.remove(corpus) == null) {
+			return;
+		}
+		if (corpora.isEmpty() && listening) {
+			NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+			try {
+				emitter.removeNotificationListener(this);
+			} catch (ListenerNotFoundException e) {
+				logger.warn("memory listener already removed", e);
+			}
+			listening = false;
+		}
+		updateThresholds();
+	}
+
+	/**
+	 * sets the lowest threshold of the registered corpora, or disables the
+	 * thresholds (0) without corpora
+	 */
+	private void updateThresholds() {
+		double threshold = corpora.values().stream().mapToDouble(Double::doubleValue).min().orElse(0);
+		for (MemoryPoolMXBean pool : heapPools()) {
+			long max = pool.getUsage().getMax();
+			if (max <= 0) {
+				continue;
+			}
+			long bytes = (long) (max * threshold);
+			if (pool.isCollectionUsageThresholdSupported()) {
+				pool.setCollectionUsageThreshold(bytes);
+			} else {
+				pool.setUsageThreshold(bytes);
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("memory threshold of pool " + pool.getName() + " set to " + bytes + " of " + max
+						+ " bytes");
+			}
+		}
+	}
+
+	private static List<MemoryPoolMXBean> heapPools() {
+		return ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(pool -> pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported())
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		String type = notification.getType();
+		if (!MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type)
+				&& !MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+			return;
+		}
+		MemoryNotificationInfo info = MemoryNotificationInfo.from((CompositeData) notification.getUserData());
+		MemoryUsage usage = info.getUsage();
+		if (usage.getMax() <= 0) {
+			return;
+		}
+		thresholdExceeded(info.getPoolName(), usage);
+	}
+
+	/**
+	 * notifies the registered corpora, whose threshold is exceeded by the usage
+	 * of a heap pool
+	 */
+	static void thresholdExceeded(String poolName, MemoryUsage usage) {
+		instance.notifyCorpora(poolName, usage);
+	}
+
+	private void notifyCorpora(String poolName, MemoryUsage usage) {
+		double fraction = (double) usage.getUsed() / usage.getMax();
+		List<VirtualCorpus> exceededCorpora = new ArrayList<>();
+		synchronized (this) {
+			for (Entry<VirtualCorpus, Double> entry : corpora.entrySet()) {
+				if (fraction >= entry.getValue()) {
+					exceededCorpora.add(entry.getKey());
+				}
+			}
+		}
+		for (VirtualCorpus corpus : exceededCorpora) {
+			try {
+				corpus.unloadOnMemoryPressure(poolName, usage);
+			} catch (RuntimeException e) {
+				logger.error("cannot unload documents of corpus " + corpus.getName(), e);
+			}
+		}
+	}
+
+}
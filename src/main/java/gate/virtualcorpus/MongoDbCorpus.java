@@ -5,9 +5,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.stream.IntStream;
 
 import org.apache.log4j.Logger;
 import org.bson.types.ObjectId;
@@ -23,10 +26,13 @@ import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 
 import gate.Document;
 import gate.DocumentExporter;
@@ -34,7 +40,6 @@ import gate.Factory;
 import gate.FeatureMap;
 import gate.GateConstants;
 import gate.Resource;
-import gate.corpora.DocumentImpl;
 import gate.creole.ResourceInstantiationException;
 import gate.creole.metadata.CreoleParameter;
 import gate.creole.metadata.CreoleResource;
@@ -325,6 +330,7 @@ public class MongoDbCorpus extends VirtualCorpus {
 
 	@Override
 	public void cleanup() {
+		super.cleanup();
 		if (iterator != null) {
 			iterator.close();
 		}
@@ -341,6 +347,18 @@ public class MongoDbCorpus extends VirtualCorpus {
 		throw new GateRuntimeException("renaming document is not supported");
 	}
 
+	/**
+	 * an exhausted id cursor does not return appended documents, it is reopened
+	 * at its position
+	 */
+	@Override
+	protected void backendSizeGrown(int previousSize, int size) throws Exception {
+		if (iterator != null) {
+			iterator.close();
+			iterator = cursor.skip(iteratorPosition).iterator();
+		}
+	}
+
 	@Override
 	protected int loadSize() throws Exception {
 		long countDocuments = collection.countDocuments();
@@ -365,11 +383,107 @@ public class MongoDbCorpus extends VirtualCorpus {
 
 	}
 
+	@Override
+	protected List<String> loadDocumentNames(int fromIndex, int toIndex) throws Exception {
+		return loadDocumentNames(IntStream.range(fromIndex, toIndex).toArray());
+	}
+
+	/**
+	 * iterates over the documents from the first to the last index once, names
+	 * are only built for the indexes
+	 */
+	@Override
+	protected List<String> loadDocumentNames(int[] indexes) throws Exception {
+		List<String> documentNames = new ArrayList<>(indexes.length);
+		if (indexes.length == 0) {
+			return documentNames;
+		}
+		int firstDocumentIndex = documentIndex(indexes[0]);
+		int lastDocumentIndex = documentIndex(indexes[indexes.length - 1]);
+		List<String> includeKeys = nameKeyList.isEmpty() ? Collections.singletonList(ID_KEY_NAME) : nameKeyList;
+		FindIterable<org.bson.Document> namesCursor = collection.find().sort(Sorts.ascending(ID_KEY_NAME))
+				.projection(Projections.include(includeKeys)).skip(firstDocumentIndex)
+				.limit(lastDocumentIndex - firstDocumentIndex + 1);
+		if (batchSize != null) {
+			namesCursor = namesCursor.batchSize(batchSize);
+		}
+
+		try (MongoCursor<org.bson.Document> cursor = namesCursor.iterator()) {
+			int cursorIndex = firstDocumentIndex - 1;
+			org.bson.Document mongoDbDocument = null;
+			for (int index : indexes) {
+				int documentIndex = documentIndex(index);
+				while (cursorIndex < documentIndex && cursor.hasNext()) {
+					mongoDbDocument = cursor.next();
+					cursorIndex++;
+				}
+				if (cursorIndex < documentIndex) {
+					documentNames.add(null);
+					continue;
+				}
+				String contentKey = contentKey(index);
+				if (nameKeyList.isEmpty()) {
+					String id = getId(mongoDbDocument);
+					if (cacheIds) {
+						idCache.putIfAbsent(documentIndex, id);
+					}
+					documentNames.add(buildDocumentName(contentKey, id));
+				} else {
+					documentNames.add(buildDocumentName(contentKey, getStringValues(mongoDbDocument, nameKeyList)));
+				}
+			}
+		}
+		return documentNames;
+	}
+
 	@Override
 	protected Document loadDocument(int index) throws Exception {
 		Integer documentIndex = documentIndex(index);
-		String contentKey = contentKey(index);
+		org.bson.Document mongoDbDocument = getDocument(documentIndex, includeKeys(contentKey(index)));
+		return buildDocument(index, mongoDbDocument);
+	}
 
+	/**
+	 * loads the documents with one query for the range of their MongoDB
+	 * documents, if the range is dense (at most twice as many MongoDB documents
+	 * as requested)
+	 */
+	@Override
+	protected List<Document> loadDocuments(int[] indexes) throws Exception {
+		if (indexes.length < 2) {
+			return super.loadDocuments(indexes);
+		}
+		int firstDocumentIndex = Integer.MAX_VALUE;
+		int lastDocumentIndex = -1;
+		Set<String> includeKeys = new LinkedHashSet<>();
+		for (int index : indexes) {
+			firstDocumentIndex = Math.min(firstDocumentIndex, documentIndex(index));
+			lastDocumentIndex = Math.max(lastDocumentIndex, documentIndex(index));
+			includeKeys.addAll(includeKeys(contentKey(index)));
+		}
+		if (lastDocumentIndex - firstDocumentIndex + 1 > 2 * indexes.length) {
+			return super.loadDocuments(indexes);
+		}
+		FindIterable<org.bson.Document> documentsCursor = collection.find().sort(Sorts.ascending(ID_KEY_NAME))
+				.projection(Projections.include(new ArrayList<>(includeKeys))).skip(firstDocumentIndex)
+				.limit(lastDocumentIndex - firstDocumentIndex + 1);
+		if (batchSize != null) {
+			documentsCursor = documentsCursor.batchSize(batchSize);
+		}
+		List<org.bson.Document> mongoDbDocuments = documentsCursor.into(new ArrayList<>());
+		List<Document> documents = new ArrayList<>(indexes.length);
+		for (int index : indexes) {
+			int documentIndex = documentIndex(index);
+			if (documentIndex - firstDocumentIndex >= mongoDbDocuments.size()) {
+				documents.add(null);
+			} else {
+				documents.add(buildDocument(index, mongoDbDocuments.get(documentIndex - firstDocumentIndex)));
+			}
+		}
+		return documents;
+	}
+
+	private List<String> includeKeys(String contentKey) {
 		List<String> includeKeys = new ArrayList<>();
 		includeKeys.addAll(nameKeyList);
 		includeKeys.add(contentKey);
@@ -378,7 +492,11 @@ public class MongoDbCorpus extends VirtualCorpus {
 			String exportKey = exportKeyMapping.get(contentKey);
 			includeKeys.add(exportKey);
 		}
-		org.bson.Document mongoDbDocument = getDocument(documentIndex, includeKeys);
+		return includeKeys;
+	}
+
+	private Document buildDocument(int index, org.bson.Document mongoDbDocument) throws Exception {
+		String contentKey = contentKey(index);
 		String id = getId(mongoDbDocument);
 
 		Object content = null;
@@ -398,9 +516,12 @@ public class MongoDbCorpus extends VirtualCorpus {
 		if (content == null) {
 			content = "";
 		} else if (content instanceof org.bson.types.Binary) {
-			content = new String(((org.bson.types.Binary) content).getData(), encoding);
-		} else if (!(content instanceof String)) {
+			byte[] bytes = ((org.bson.types.Binary) content).getData();
+			documentBytesRead(bytes.length);
+			content = new String(bytes, encoding);
+		} else {
 			content = content.toString();
+			documentBytesRead(((String) content).length());
 		}
 		FeatureMap features = Factory.newFeatureMap();
 		features.put(GateConstants.THROWEX_FORMAT_PROPERTY_NAME, true);
@@ -425,7 +546,7 @@ public class MongoDbCorpus extends VirtualCorpus {
 		} else {
 			documentName = buildDocumentName(contentKey, getStringValues(mongoDbDocument, nameKeyList));
 		}
-		return (Document) Factory.createResource(DocumentImpl.class.getName(), params, features, documentName);
+		return createDocument(params, features, documentName);
 	}
 
 	@Override
@@ -435,13 +556,35 @@ public class MongoDbCorpus extends VirtualCorpus {
 
 	@Override
 	protected void setDocument(int index, Document document) throws Exception {
-		Integer documentIndex = documentIndex(index);
-		String contentKey = contentKey(index);
+		String id = getId(documentIndex(index));
 
+		collection.updateOne(Filters.eq(ID_KEY_NAME, new ObjectId(id)),
+				Updates.set(exportContentKey(index), exportBytes(document)));
+	}
+
+	@Override
+	protected void setDocuments(Map<Integer, Document> documents) throws Exception {
+		List<WriteModel<org.bson.Document>> updates = new ArrayList<>(documents.size());
+		for (Entry<Integer, Document> entry : documents.entrySet()) {
+			Integer index = entry.getKey();
+			String id = getId(documentIndex(index));
+			updates.add(new UpdateOneModel<>(Filters.eq(ID_KEY_NAME, new ObjectId(id)),
+					Updates.set(exportContentKey(index), exportBytes(entry.getValue()))));
+		}
+		if (!updates.isEmpty()) {
+			collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+		}
+	}
+
+	private String exportContentKey(int index) {
+		String contentKey = contentKey(index);
 		if (hasValue(exportKeySuffix)) {
 			contentKey = exportKeyMapping.get(contentKey);
 		}
+		return contentKey;
+	}
 
+	private byte[] exportBytes(Document document) throws Exception {
 		DocumentExporter exporter = null;
 		if (hasValue(exporterClassName)) {
 			exporter = getExporterForClassName(exporterClassName);
@@ -457,12 +600,8 @@ public class MongoDbCorpus extends VirtualCorpus {
 		} else {
 			export(outputStream, document);
 		}
-
-		byte[] bytes = outputStream.toByteArray();
-
-		String id = getId(documentIndex);
-
-		collection.updateOne(Filters.eq(ID_KEY_NAME, new ObjectId(id)), Updates.set(contentKey, bytes));
+		documentBytesWritten(outputStream.size());
+		return outputStream.toByteArray();
 	}
 
 	@Override
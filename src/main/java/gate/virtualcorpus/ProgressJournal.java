@@ -0,0 +1,125 @@
+package gate.virtualcorpus;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+
+/**
+ * Progress of a long run over a corpus in a sidecar MapDB file: bitmaps of
+ * completed and failed document indexes (64 indexes per word) and the
+ * committed index, before which all documents are completed. Updates are
+ * committed at most every {@value #COMMIT_INTERVAL_MILLIS} ms and when the
+ * journal is closed, so a crashed run processes the documents of the last
+ * interval again.
+ */
+final class ProgressJournal implements Closeable {
+	private static final long COMMIT_INTERVAL_MILLIS = 1000;
+
+	static final String COMPLETED_MAPNAME = "completed";
+	static final String FAILED_MAPNAME = "failed";
+	static final String COMMITTEDINDEX_NAME = "committedIndex";
+
+	private final DB mapDb;
+	private final Map<Integer, Long> completed;
+	private final Map<Integer, Long> failed;
+	private final org.mapdb.Atomic.Integer committedIndex;
+	private long committedNanos = System.nanoTime();
+
+	ProgressJournal(File file) {
+		mapDb = DBMaker.fileDB(file).transactionEnable().make();
+		completed = mapDb.hashMap(COMPLETED_MAPNAME, Serializer.INTEGER, Serializer.LONG).createOrOpen();
+		failed = mapDb.hashMap(FAILED_MAPNAME, Serializer.INTEGER, Serializer.LONG).createOrOpen();
+		committedIndex = mapDb.atomicInteger(COMMITTEDINDEX_NAME).createOrOpen();
+	}
+
+	synchronized void markCompleted(int index) {
+		setBit(completed, index, true);
+		setBit(failed, index, false);
+		int nextIndex = committedIndex.get();
+		while (getBit(completed, nextIndex)) {
+			nextIndex++;
+		}
+		committedIndex.set(nextIndex);
+		updated();
+	}
+
+	synchronized void markFailed(int index) {
+		setBit(failed, index, true);
+		setBit(completed, index, false);
+		if (index < committedIndex.get()) {
+			committedIndex.set(index);
+		}
+		updated();
+	}
+
+	synchronized boolean isCompleted(int index) {
+		return getBit(completed, index);
+	}
+
+	synchronized boolean isFailed(int index) {
+		return getBit(failed, index);
+	}
+
+	/**
+	 * @return all documents before this index are completed
+	 */
+	synchronized int getCommittedIndex() {
+		return committedIndex.get();
+	}
+
+	/**
+	 * @return the first index from fromIndex, which is not completed (toIndex if
+	 *         all are completed)
+	 */
+	synchronized int nextUncompletedIndex(int fromIndex, int toIndex) {
+		int index = Math.max(fromIndex, committedIndex.get());
+		while (index < toIndex) {
+			long word = ~wordOf(completed, index) & (-1L << (index & 63));
+			if (word != 0) {
+				return Math.min((index & ~63) + Long.numberOfTrailingZeros(word), toIndex);
+			}
+			index = (index & ~63) + 64;
+		}
+		return toIndex;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (!mapDb.isClosed()) {
+			mapDb.commit();
+			mapDb.close();
+		}
+	}
+
+	private void updated() {
+		long now = System.nanoTime();
+		if (now - committedNanos >= TimeUnit.MILLISECONDS.toNanos(COMMIT_INTERVAL_MILLIS)) {
+			mapDb.commit();
+			committedNanos = now;
+		}
+	}
+
+	private static long wordOf(Map<Integer, Long> bitmap, int index) {
+		Long word = bitmap.get(index >>> 6);
+		return word != null ? word : 0;
+	}
+
+	private static boolean getBit(Map<Integer, Long> bitmap, int index) {
+		return (wordOf(bitmap, index) & (1L << (index & 63))) != 0;
+	}
+
+	private static void setBit(Map<Integer, Long> bitmap, int index, boolean value) {
+		long word = wordOf(bitmap, index);
+		long bit = 1L << (index & 63);
+		long newWord = value ? word | bit : word & ~bit;
+		if (newWord != word) {
+			bitmap.put(index >>> 6, newWord);
+		}
+	}
+
+}
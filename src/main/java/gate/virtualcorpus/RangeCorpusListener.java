@@ -0,0 +1,35 @@
+package gate.virtualcorpus;
+
+import gate.event.CorpusEvent;
+import gate.event.CorpusListener;
+
+/**
+ * A corpus listener receiving one {@link CorpusRangeEvent} per contiguous range
+ * of documents added or removed by a bulk operation of a
+ * {@link VirtualCorpus}, instead of an event per document.
+ *
+ * Other {@link CorpusListener}s still receive an event per document (see
+ * {@link CorpusRangeEvent#toDocumentEvents()}).
+ */
+public interface RangeCorpusListener extends CorpusListener {
+
+	void documentsAdded(CorpusRangeEvent event);
+
+	/**
+	 * ranges removed by one operation are delivered from the last to the first
+	 * range, indexes of an event are those before the removal
+	 */
+	void documentsRemoved(CorpusRangeEvent event);
+
+	/**
+	 * per-document events are not sent to range listeners
+	 */
+	@Override
+	default void documentAdded(CorpusEvent event) {
+	}
+
+	@Override
+	default void documentRemoved(CorpusEvent event) {
+	}
+
+}
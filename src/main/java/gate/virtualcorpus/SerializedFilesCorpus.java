@@ -1,10 +1,17 @@
 package gate.virtualcorpus;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -19,12 +26,12 @@ import gate.Factory;
 import gate.FeatureMap;
 import gate.GateConstants;
 import gate.Resource;
-import gate.corpora.DocumentImpl;
 import gate.creole.ResourceInstantiationException;
 import gate.creole.metadata.CreoleParameter;
 import gate.creole.metadata.CreoleResource;
 import gate.creole.metadata.Optional;
 import gate.serialization.DocumentUtil;
+import gate.util.GateRuntimeException;
 
 @CreoleResource(name = "SerializedFilesCorpus", interfaceName = "gate.Corpus", icon = "corpus", comment = "A corpus backed by GATE documents serialized in files in a single directory")
 public class SerializedFilesCorpus extends VirtualCorpus {
@@ -33,6 +40,8 @@ public class SerializedFilesCorpus extends VirtualCorpus {
 
 	public static final String SERIALIZED_FILE_EXTENSION = ".ser";
 	public static final String COMPRESSED_FILE_EXTENSION = ".zz";
+	public static final String INDEX_MAPPING_FILENAME = ".index";
+	public static final String INDEX_MAPPING_JOURNAL_FILENAME = ".index-journal";
 
 	protected URL directoryURL;
 	protected Boolean compressFiles;
@@ -43,6 +52,9 @@ public class SerializedFilesCorpus extends VirtualCorpus {
 	private transient Integer size;
 	private transient boolean regularFiles;
 	private transient List<Path> paths;
+	private transient IndexMapping indexMapping;
+	private transient boolean indexMappingSaved;
+	private transient boolean indexMappingChanged;
 
 	@CreoleParameter(comment = "The directory URL where files will be read from", defaultValue = "")
 	public void setDirectoryURL(URL directoryURL) {
@@ -138,6 +150,9 @@ public class SerializedFilesCorpus extends VirtualCorpus {
 			Iterator<Path> iterator = Files.list(directory).iterator();
 			while (iterator.hasNext()) {
 				Path path = iterator.next();
+				if (isIndexMappingFile(path)) {
+					continue;
+				}
 				int index = getIndex(path);
 				if (index < 0) {
 					regularFiles = true;
@@ -149,12 +164,13 @@ public class SerializedFilesCorpus extends VirtualCorpus {
 
 			if (regularFiles) {
 				try (Stream<Path> stream = Files.list(directory)) {
-					paths = stream.collect(Collectors.toList());
+					paths = stream.filter(path -> !isIndexMappingFile(path)).collect(Collectors.toList());
 				}
 				paths.removeAll(paths.stream().map(path -> writePath(path)).collect(Collectors.toSet()));
 				size = paths.size();
 			} else {
-				size = maxIndex + 1;
+				initIndexMapping(maxIndex + 1);
+				size = indexMapping.size();
 			}
 
 		} catch (IOException e) {
@@ -166,9 +182,128 @@ public class SerializedFilesCorpus extends VirtualCorpus {
 		return this;
 	}
 
+	/**
+	 * files of indexed documents are named by physical id, the mapping from
+	 * index to physical id is loaded from its snapshot and journal (replayed in
+	 * memory, the snapshot is written again when the corpus is closed after
+	 * modifications). Directories without a snapshot named files by index, their
+	 * mapping is the identity, kept in memory until the first insert or remove
+	 * (opening a corpus never writes to the directory).
+	 */
+	private void initIndexMapping(int indexedFiles) throws IOException {
+		Path snapshotPath = directory.resolve(INDEX_MAPPING_FILENAME);
+		Path journalPath = directory.resolve(INDEX_MAPPING_JOURNAL_FILENAME);
+		indexMappingChanged = false;
+		indexMappingSaved = Files.exists(snapshotPath);
+		if (!indexMappingSaved) {
+			indexMapping = IndexMapping.identity(indexedFiles);
+		} else {
+			try (DataInputStream in = new DataInputStream(
+					new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+				indexMapping = new IndexMapping(readInts(in));
+			}
+			if (Files.exists(journalPath)) {
+				try (DataInputStream in = new DataInputStream(
+						new BufferedInputStream(Files.newInputStream(journalPath)))) {
+					for (int[] operation = readInts(in); operation != null; operation = readInts(in)) {
+						indexMapping.replay(operation);
+					}
+				}
+			}
+		}
+		indexMapping.setJournal(this::appendIndexMappingJournal);
+	}
+
+	/**
+	 * replaces the journal by a snapshot of the mapping
+	 */
+	private void saveIndexMapping() throws IOException {
+		Path snapshotPath = directory.resolve(INDEX_MAPPING_FILENAME);
+		Path tempPath = directory.resolve(INDEX_MAPPING_FILENAME + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+			writeInts(out, indexMapping.toArray());
+		}
+		Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		Files.deleteIfExists(directory.resolve(INDEX_MAPPING_JOURNAL_FILENAME));
+		indexMappingSaved = true;
+	}
+
+	/**
+	 * called before an operation is applied, the first operation of a mapping
+	 * without snapshot saves the unmodified mapping first
+	 */
+	private void appendIndexMappingJournal(int[] operation) throws IOException {
+		if (!indexMappingSaved) {
+			saveIndexMapping();
+		}
+		indexMappingChanged = true;
+		Path journalPath = directory.resolve(INDEX_MAPPING_JOURNAL_FILENAME);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(journalPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+			writeInts(out, operation);
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	/**
+	 * @return null at the end of the file, or for a truncated last operation
+	 */
+	private static int[] readInts(DataInputStream in) throws IOException {
+		try {
+			int[] values = new int[in.readInt()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = in.readInt();
+			}
+			return values;
+		} catch (EOFException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public void cleanup() {
+		super.cleanup();
+		if (indexMapping != null && indexMappingChanged) {
+			try {
+				saveIndexMapping();
+			} catch (IOException e) {
+				throw new GateRuntimeException(e);
+			}
+		}
+	}
+
+	@Override
+	protected boolean supportsConcurrentAccess() {
+		return true;
+	}
+
 	@Override
 	protected int loadSize() throws Exception {
-		return size;
+		return indexMapping != null ? indexMapping.size() : size;
+	}
+
+	/**
+	 * modification times of the directory (files added or removed) and of the
+	 * index mapping files (documents inserted or removed), documents renamed by
+	 * other processes are not detected
+	 */
+	@Override
+	protected String loadFingerprint() throws Exception {
+		StringBuilder fingerprint = new StringBuilder();
+		fingerprint.append(Files.getLastModifiedTime(directory).toMillis());
+		for (String filename : new String[] { INDEX_MAPPING_FILENAME, INDEX_MAPPING_JOURNAL_FILENAME }) {
+			Path path = directory.resolve(filename);
+			if (Files.exists(path)) {
+				fingerprint.append(' ').append(Files.getLastModifiedTime(path).toMillis());
+			}
+		}
+		return fingerprint.toString();
 	}
 
 	@Override
@@ -177,7 +312,7 @@ public class SerializedFilesCorpus extends VirtualCorpus {
 			Path path = paths.get(index);
 			return path.getFileName().toString();
 		} else {
-			Path path = indexedPath(index);
+			Path path = idPath(indexMapping.get(index));
 			if (!Files.exists(path)) {
 				return null;
 			}
@@ -193,17 +328,19 @@ public class SerializedFilesCorpus extends VirtualCorpus {
 			if (Files.exists(writePath)) {
 				return loadDocument(writePath);
 			}
-			String documentName = getDocumentName(index);
-			String content = new String(Files.readAllBytes(path));
+			String documentName = loadDocumentName(index);
+			byte[] bytes = Files.readAllBytes(path);
+			documentBytesRead(bytes.length);
+			String content = new String(bytes);
 			FeatureMap features = Factory.newFeatureMap();
 			features.put(GateConstants.THROWEX_FORMAT_PROPERTY_NAME, true);
 			FeatureMap params = Factory.newFeatureMap();
 			params.put(Document.DOCUMENT_STRING_CONTENT_PARAMETER_NAME, content);
 			params.put(Document.DOCUMENT_ENCODING_PARAMETER_NAME, encoding);
 			params.put(Document.DOCUMENT_MIME_TYPE_PARAMETER_NAME, mimeType);
-			return (Document) Factory.createResource(DocumentImpl.class.getName(), params, features, documentName);
+			return createDocument(params, features, documentName);
 		} else {
-			Path path = indexedPath(index);
+			Path path = idPath(indexMapping.get(index));
 			if (!Files.exists(path)) {
 				return null;
 			}
@@ -212,21 +349,21 @@ public class SerializedFilesCorpus extends VirtualCorpus {
 
 	}
 
+	/**
+	 * writes the documents to files of new physical ids, existing files are not
+	 * renamed
+	 */
 	@Override
 	protected void addDocuments(int index, Collection<? extends Document> documents) throws Exception {
 		if (regularFiles) {
 			throw new UnsupportedOperationException();
 		}
-		int insertCount = documents.size();
-		for (int i = size() - 1; i >= index; i--) {
-			Path oldPath = indexedPath(i);
-			Path newPath = indexedPath(i + insertCount);
-			Files.move(oldPath, newPath);
-		}
+		int[] ids = indexMapping.allocate(documents.size());
 		Iterator<? extends Document> iterator = documents.iterator();
-		for (int i = index; i < index + insertCount; i++) {
-			setDocument(i, iterator.next());
+		for (int id : ids) {
+			writeDocument(idPath(id), iterator.next());
 		}
+		indexMapping.insert(index, ids);
 	}
 
 	@Override
@@ -235,24 +372,27 @@ public class SerializedFilesCorpus extends VirtualCorpus {
 		if (regularFiles) {
 			path = writePath(paths.get(index));
 		} else {
-			path = indexedPath(index);
+			path = idPath(indexMapping.get(index));
 		}
+		writeDocument(path, document);
+	}
+
+	private void writeDocument(Path path, Document document) throws IOException {
 		DocumentUtil.writeDocument(document, Files.newOutputStream(path), compressFiles);
+		documentBytesWritten(Files.size(path));
 	}
 
+	/**
+	 * removes the indexes from the mapping and deletes only the files of the
+	 * removed documents
+	 */
 	@Override
 	protected void deleteDocuments(Set<Integer> indexes) throws Exception {
 		if (regularFiles) {
 			throw new UnsupportedOperationException();
 		}
-		Integer firstIndex = indexes.stream().min(Integer::compareTo).get();
-		Integer lastIndex = size();
-
-		Integer newIndex = firstIndex;
-		for (Integer index = firstIndex; index <= lastIndex; index++) {
-			if (!indexes.contains(index)) {
-				Files.move(indexedPath(index), indexedPath(newIndex++));
-			}
+		for (int id : indexMapping.remove(indexes)) {
+			Files.deleteIfExists(idPath(id));
 		}
 	}
 
@@ -267,6 +407,10 @@ public class SerializedFilesCorpus extends VirtualCorpus {
 				}
 			});
 		}
+		if (indexMapping != null) {
+			indexMapping.clear();
+			saveIndexMapping();
+		}
 	}
 
 	@Override
@@ -275,18 +419,23 @@ public class SerializedFilesCorpus extends VirtualCorpus {
 			throw new UnsupportedOperationException();
 		}
 		document.setName(newName);
-		setDocument(this.indexOf(document), document);
+		setDocument(this.backendIndexOf(document), document);
 	}
 
 	private Document loadDocument(Path path) throws Exception {
-		return DocumentUtil.readDocument(Files.newInputStream(path), compressFiles);
+		documentBytesRead(Files.size(path));
+		return readDocument(Files.newInputStream(path), compressFiles);
 	}
 
-	private Path indexedPath(int index) {
-		String filename = String.valueOf(index);
+	private Path idPath(int id) {
+		String filename = String.valueOf(id);
 		return directory.resolve(writePath(Paths.get(filename)));
 	}
 
+	private static boolean isIndexMappingFile(Path path) {
+		return path.getFileName().toString().startsWith(INDEX_MAPPING_FILENAME);
+	}
+
 	private int getIndex(Path path) {
 		String filename = path.getFileName().toString();
 		String extension = getWriteExtension();
@@ -3,28 +3,52 @@ package gate.virtualcorpus;
 import java.io.ByteArrayOutputStream;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.ref.WeakReference;
 import java.net.URL;
+import java.lang.management.MemoryUsage;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.Spliterator;
 import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.apache.log4j.Logger;
+import org.reactivestreams.Publisher;
 
 import gate.Annotation;
 import gate.AnnotationSet;
@@ -32,9 +56,11 @@ import gate.Corpus;
 import gate.Document;
 import gate.DocumentExporter;
 import gate.DocumentFormat;
+import gate.Factory;
 import gate.FeatureMap;
 import gate.Gate;
 import gate.Resource;
+import gate.corpora.DocumentImpl;
 import gate.creole.AbstractLanguageResource;
 import gate.creole.ResourceInstantiationException;
 import gate.creole.metadata.CreoleParameter;
@@ -55,6 +81,7 @@ import gate.event.RelationSetListener;
 import gate.persist.PersistenceException;
 import gate.relations.Relation;
 import gate.relations.RelationSet;
+import gate.serialization.DocumentUtil;
 import gate.util.GateException;
 import gate.util.GateRuntimeException;
 import gate.util.persistence.PersistenceManager;
@@ -71,9 +98,31 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 		}
 	}
 
+	private static final long DOCUMENT_CHAR_WEIGHT = 2;
+	private static final long ANNOTATION_WEIGHT = 256;
+	private static final int DOCUMENT_NAMES_CHUNK_SIZE = 1000;
+	private static final int DOCUMENT_NAMES_READ_AHEAD = 100;
+
 	private Boolean readonlyDocuments = true;
 	private Boolean immutableCorpus = true;
 	private Integer cacheDocumentNames;
+	private Integer cacheDocuments;
+	private Long cacheDocumentsWeight;
+	private Integer prefetchDepth;
+	private Boolean concurrent;
+	private Integer shardCount;
+	private Integer shardIndex;
+	private Boolean shardStrided;
+	private Integer writeBehindQueue;
+	private ChangeTracking changeTracking;
+	private Integer followInterval;
+	private Integer followTimeout;
+	private Double unloadMemoryThreshold;
+	private URL progressJournal;
+	private Boolean registerDocuments;
+	private Integer asyncLoadThreads;
+	private Integer asyncLoadBatchSize;
+	private URL nameIndex;
 
 	@Optional
 	@CreoleParameter(comment = "cache n last document names", defaultValue = "100000")
@@ -85,20 +134,466 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 		return cacheDocumentNames;
 	}
 
+	@Optional
+	@CreoleParameter(comment = "keep n last used documents loaded, least recently used documents will be saved (if changed) and unloaded, except documents in use (leased, returned by toArray or the last document returned to a thread) (0 for unlimited)", defaultValue = "0")
+	public void setCacheDocuments(Integer cacheDocuments) {
+		this.cacheDocuments = cacheDocuments;
+	}
+
+	public Integer getCacheDocuments() {
+		return cacheDocuments;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "keep last used documents loaded up to an estimated weight in bytes (by content length and annotation count), least recently used documents will be saved (if changed) and unloaded, except documents in use (0 for unlimited)", defaultValue = "0")
+	public void setCacheDocumentsWeight(Long cacheDocumentsWeight) {
+		this.cacheDocumentsWeight = cacheDocumentsWeight;
+	}
+
+	public Long getCacheDocumentsWeight() {
+		return cacheDocumentsWeight;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "load the next n documents in background, while iterating sequentially over the corpus (0 to disable)", defaultValue = "0")
+	public void setPrefetchDepth(Integer prefetchDepth) {
+		this.prefetchDepth = prefetchDepth;
+	}
+
+	public Integer getPrefetchDepth() {
+		return prefetchDepth;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "allow multiple threads (e.g. duplicated pipelines) to load documents in parallel, if supported by the backend (otherwise backend calls are serialized)", defaultValue = "false")
+	public void setConcurrent(Boolean concurrent) {
+		this.concurrent = concurrent;
+	}
+
+	public Boolean getConcurrent() {
+		return concurrent;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "split the backend into n shards, the corpus contains only the documents of shard shardIndex (requires an immutable corpus)", defaultValue = "1")
+	public void setShardCount(Integer shardCount) {
+		this.shardCount = shardCount;
+	}
+
+	public Integer getShardCount() {
+		return shardCount;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "index of the shard contained in the corpus (0 to shardCount - 1)", defaultValue = "0")
+	public void setShardIndex(Integer shardIndex) {
+		this.shardIndex = shardIndex;
+	}
+
+	public Integer getShardIndex() {
+		return shardIndex;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "shards contain every n-th document of the backend instead of a contiguous range", defaultValue = "false")
+	public void setShardStrided(Boolean shardStrided) {
+		this.shardStrided = shardStrided;
+	}
+
+	public Boolean getShardStrided() {
+		return shardStrided;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "save changed documents in background, while up to n documents are queued (0 to save them while unloading)", defaultValue = "0")
+	public void setWriteBehindQueue(Integer writeBehindQueue) {
+		this.writeBehindQueue = writeBehindQueue;
+	}
+
+	public Integer getWriteBehindQueue() {
+		return writeBehindQueue;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "how changed documents are detected: NONE, ANNOTATION_SETS (added/removed annotations), ANNOTATIONS (all changes) or FINGERPRINT (compare hashes when unloading)", defaultValue = "ANNOTATIONS")
+	public void setChangeTracking(ChangeTracking changeTracking) {
+		this.changeTracking = changeTracking;
+	}
+
+	public ChangeTracking getChangeTracking() {
+		return changeTracking;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "follow documents appended to the backend: re-check the backend size at most every n milliseconds and let iterators wait at the end for new documents (0 to disable, requires an immutable corpus)", defaultValue = "0")
+	public void setFollowInterval(Integer followInterval) {
+		this.followInterval = followInterval;
+	}
+
+	public Integer getFollowInterval() {
+		return followInterval;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "iterators of a followed corpus stop after waiting n milliseconds at the end without new documents (0 to wait until interrupted)", defaultValue = "0")
+	public void setFollowTimeout(Integer followTimeout) {
+		this.followTimeout = followTimeout;
+	}
+
+	public Integer getFollowTimeout() {
+		return followTimeout;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "unload the least recently used half of the loaded documents (saved first, if changed), when a heap memory pool exceeds this fraction of its maximum size after garbage collection, e.g. 0.8 (0 to disable)", defaultValue = "0")
+	public void setUnloadMemoryThreshold(Double unloadMemoryThreshold) {
+		this.unloadMemoryThreshold = unloadMemoryThreshold;
+	}
+
+	public Double getUnloadMemoryThreshold() {
+		return unloadMemoryThreshold;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "MapDB file recording completed (unloaded and saved) and failed documents, a reopened corpus contains only the documents not completed to resume an interrupted run (indexes differ from the backend, requires an immutable corpus)")
+	public void setProgressJournal(URL progressJournal) {
+		this.progressJournal = progressJournal;
+	}
+
+	public URL getProgressJournal() {
+		return progressJournal;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "create loaded documents by the GATE Factory, so they are shown in GATE Developer and all creole listeners are notified, false creates them directly for faster streaming (release them by releaseDocument)", defaultValue = "true")
+	public void setRegisterDocuments(Boolean registerDocuments) {
+		this.registerDocuments = registerDocuments;
+	}
+
+	public Boolean getRegisterDocuments() {
+		return registerDocuments;
+	}
+
+	private boolean isRegisteringDocuments() {
+		return registerDocuments == null || registerDocuments;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "threads loading documents for loadAsync and loadRange, unless an executor is set by setAsyncLoadExecutor", defaultValue = "4")
+	public void setAsyncLoadThreads(Integer asyncLoadThreads) {
+		this.asyncLoadThreads = asyncLoadThreads;
+	}
+
+	public Integer getAsyncLoadThreads() {
+		return asyncLoadThreads;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "documents loaded by one backend call of loadAsync and loadRange", defaultValue = "100")
+	public void setAsyncLoadBatchSize(Integer asyncLoadBatchSize) {
+		this.asyncLoadBatchSize = asyncLoadBatchSize;
+	}
+
+	public Integer getAsyncLoadBatchSize() {
+		return asyncLoadBatchSize;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "MapDB file indexing the document names for indexOfName and indexesOfNamePrefix, built on first lookup and rebuilt if the corpus or its backend changed")
+	public void setNameIndex(URL nameIndex) {
+		this.nameIndex = nameIndex;
+	}
+
+	public URL getNameIndex() {
+		return nameIndex;
+	}
+
+	/**
+	 * runs the backend calls of loadAsync and loadRange on an executor of the
+	 * caller (not shut down by the corpus), e.g. a virtual thread per task
+	 * executor on Java 21
+	 */
+	public void setAsyncLoadExecutor(Executor asyncLoadExecutor) {
+		synchronized (stateLock) {
+			this.asyncLoadExecutor = asyncLoadExecutor;
+		}
+	}
+
 	private transient VirtualCorpusCreoleListener creoleListener;
-	private boolean loaded = false;
+	private transient DocumentPrefetcher prefetcher;
+	private transient DocumentWriter writer;
+	private transient ProgressJournal progress;
+	/**
+	 * journal indexes of the documents not completed when the size was loaded
+	 * first, documents appended later (follow mode) are mapped after them
+	 */
+	private transient int[] pendingIndexes;
+	private transient int pendingJournalSize;
+	private transient DocumentNameIndex documentNameIndex;
+	private final transient Object nameIndexLock = new Object();
+	private transient int checkedNameIndexGeneration = -1;
+	private transient String nameIndexFingerprint;
+	private transient Executor asyncLoadExecutor;
+	private transient ExecutorService asyncLoadThreadPool;
+	private final transient Set<Integer> pendingProgress = ConcurrentHashMap.newKeySet();
+	private final transient VirtualCorpusMetrics metrics = new VirtualCorpusMetrics(this);
+	private final transient Object stateLock = new Object();
+	private final transient ReentrantReadWriteLock backendLock = new ReentrantReadWriteLock();
+	private transient boolean concurrentBackend = false;
+	private transient int shardOffset = 0;
+	private transient int backendSize = 0;
+	private transient long sizeCheckedNanos = 0;
+	private volatile boolean loaded = false;
+	private final transient ThreadLocal<Integer> lastRequestedIndex = ThreadLocal.withInitial(() -> -1);
 
 	private Integer size;
-	private transient int modCount = 0;
-	private SortedMap<Integer, Document> loadedDocuments = new TreeMap<>();
-	private SortedMap<Integer, String> loadedDocumentNames = new TreeMap<>();
-	private Set<Integer> lruDocumentNameIndexes = new LinkedHashSet<>();
-	private Map<Document, DocumentChangeObserver> documentChangeObservers = new HashMap<>();
+	private transient volatile int modCount = 0;
+	private LoadedDocumentMap loadedDocuments = new LoadedDocumentMap();
+	private transient Map<Integer, CompletableFuture<Document>> loadingDocuments = new HashMap<>();
+	private final transient Map<Integer, CompletableFuture<Void>> savingDocuments = new ConcurrentHashMap<>();
+	private transient DocumentNameCache loadedDocumentNames = new DocumentNameCache(0);
+	private Map<Document, DocumentChangeTracker> documentChangeTrackers = new HashMap<>();
+	private Map<Document, Long> lruDocumentWeights = new LinkedHashMap<>();
+	private long lruDocumentsWeight = 0;
+	private transient Map<Document, Integer> documentLeases = new IdentityHashMap<>();
+	private final transient Set<Document> retainedDocuments = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final transient Map<Thread, Document> currentDocuments = new WeakHashMap<>();
+	private final transient Set<Document> unregisteredDocuments = Collections
+			.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+	/**
+	 * views returned by {@link #getDocumentNames()}, which copy their names
+	 * before the corpus is modified first (weak references, since name lists
+	 * compare by content)
+	 */
+	private final transient List<WeakReference<DocumentNameList>> documentNameViews = new ArrayList<>();
 
-	protected final void initVirtualCorpus() {
+	protected final void initVirtualCorpus() throws ResourceInstantiationException {
+		if (isSharded()) {
+			if (shardIndex == null || shardIndex < 0 || shardIndex >= shardCount) {
+				throw new ResourceInstantiationException("shardIndex must be between 0 and " + (shardCount - 1));
+			}
+			if (!immutableCorpus) {
+				throw new ResourceInstantiationException("sharded corpus must be immutable");
+			}
+		}
+		if (isFollowing()) {
+			if (!immutableCorpus) {
+				throw new ResourceInstantiationException("followed corpus must be immutable");
+			}
+			if (isSharded() && (shardStrided == null || !shardStrided)) {
+				throw new ResourceInstantiationException("followed corpus can only be sharded strided");
+			}
+		}
+		if (isUnloadingOnMemoryPressure() && unloadMemoryThreshold > 1) {
+			throw new ResourceInstantiationException("unloadMemoryThreshold must be between 0 and 1");
+		}
+		if (progressJournal != null) {
+			if (!immutableCorpus) {
+				throw new ResourceInstantiationException("corpus with progressJournal must be immutable");
+			}
+			try {
+				progress = new ProgressJournal(gate.util.Files.fileFromURL(progressJournal));
+			} catch (RuntimeException e) {
+				throw new ResourceInstantiationException("cannot open progressJournal " + progressJournal, e);
+			}
+			logger.info("progress journal of corpus " + getName() + " resumes at document "
+					+ progress.getCommittedIndex());
+		}
+		if (nameIndex != null) {
+			try {
+				documentNameIndex = new DocumentNameIndex(gate.util.Files.fileFromURL(nameIndex));
+			} catch (RuntimeException e) {
+				throw new ResourceInstantiationException("cannot open nameIndex " + nameIndex, e);
+			}
+		}
 		creoleListener = new VirtualCorpusCreoleListener(this);
 		Gate.getCreoleRegister().addCreoleListener(creoleListener);
+		loadedDocumentNames = new DocumentNameCache(cacheDocumentNames != null ? cacheDocumentNames : 0);
+		concurrentBackend = concurrent != null && concurrent && supportsConcurrentAccess();
+		if (prefetchDepth != null && prefetchDepth > 0) {
+			prefetcher = new DocumentPrefetcher(this, concurrentBackend ? prefetchDepth : 1);
+		}
+		if (!readonlyDocuments && writeBehindQueue != null && writeBehindQueue > 0) {
+			writer = new DocumentWriter(this, writeBehindQueue);
+		}
+		if (!readonlyDocuments && changeTracking == ChangeTracking.NONE) {
+			logger.warn("documents of corpus " + getName()
+					+ " are writable, but changes are never saved with changeTracking NONE");
+		}
+		metrics.register();
+		if (isUnloadingOnMemoryPressure()) {
+			MemoryPressureMonitor.register(this, unloadMemoryThreshold);
+		}
 		loaded = true;
+		if (progress != null) {
+			// selects the documents not completed by a previous run
+			size();
+		}
+	}
+
+	/**
+	 * backends returning true allow {@link #loadDocument(int)},
+	 * {@link #loadDocumentName(int)}, {@link #loadDocumentNames(int, int)} and
+	 * {@link #documentUnloaded(int, Document)} to be called by multiple threads
+	 * in parallel (if the corpus is concurrent), all other backend methods are
+	 * always called exclusively
+	 */
+	protected boolean supportsConcurrentAccess() {
+		return false;
+	}
+
+	/**
+	 * calls a backend method, which only reads from the backend
+	 */
+	private <T> T readBackend(Callable<T> call) throws Exception {
+		Lock lock = concurrentBackend ? backendLock.readLock() : backendLock.writeLock();
+		lock.lock();
+		try {
+			return call.call();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * calls a backend method exclusively
+	 */
+	private <T> T writeBackend(Callable<T> call) throws Exception {
+		Lock lock = backendLock.writeLock();
+		lock.lock();
+		try {
+			return call.call();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean isFollowing() {
+		return followInterval != null && followInterval > 0;
+	}
+
+	private boolean isSharded() {
+		return shardCount != null && shardCount > 1;
+	}
+
+	/**
+	 * @param index of a document in this corpus
+	 * @return the index of the document in the backend
+	 */
+	protected final int backendIndex(int index) {
+		index = journalIndex(index);
+		if (!isSharded()) {
+			return index;
+		}
+		if (shardStrided != null && shardStrided) {
+			return index * shardCount + shardIndex;
+		}
+		return shardOffset + index;
+	}
+
+	/**
+	 * @param backendIndex of a document in the backend
+	 * @return the index of the document in this corpus or -1, if the document is
+	 *         not contained in the shard of this corpus
+	 */
+	protected final int corpusIndex(int backendIndex) {
+		int index;
+		if (!isSharded()) {
+			index = backendIndex;
+		} else if (shardStrided != null && shardStrided) {
+			index = (backendIndex - shardIndex) % shardCount == 0 ? (backendIndex - shardIndex) / shardCount : -1;
+		} else {
+			index = backendIndex - shardOffset;
+		}
+		index = pendingIndex(index);
+		return index >= 0 && index < size() ? index : -1;
+	}
+
+	/**
+	 * @return the index of a loaded document in the backend or -1 (like
+	 *         {@link #indexOf(Object)} for backend indexes)
+	 */
+	protected final int backendIndexOf(Document document) {
+		int index = indexOf(document);
+		return index >= 0 ? backendIndex(index) : -1;
+	}
+
+	/**
+	 * the size of the shard of this corpus, sets the offset of contiguous shards
+	 */
+	private int shardSize(int backendSize) {
+		if (!isSharded()) {
+			return backendSize;
+		}
+		if (shardStrided != null && shardStrided) {
+			return backendSize > shardIndex ? (backendSize - shardIndex + shardCount - 1) / shardCount : 0;
+		}
+		shardOffset = (int) ((long) backendSize * shardIndex / shardCount);
+		return (int) ((long) backendSize * (shardIndex + 1) / shardCount) - shardOffset;
+	}
+
+	/**
+	 * @param index of a document in this corpus
+	 * @return the index of the document in the progress journal (the index in
+	 *         the shard), which differs if documents were completed by a previous
+	 *         run
+	 */
+	private int journalIndex(int index) {
+		if (pendingIndexes == null) {
+			return index;
+		}
+		return index < pendingIndexes.length ? pendingIndexes[index]
+				: pendingJournalSize + index - pendingIndexes.length;
+	}
+
+	/**
+	 * @return the index in this corpus of a document in the progress journal, -1
+	 *         if it was completed by a previous run
+	 */
+	private int pendingIndex(int journalIndex) {
+		if (pendingIndexes == null || journalIndex < 0) {
+			return journalIndex;
+		}
+		if (journalIndex >= pendingJournalSize) {
+			return pendingIndexes.length + journalIndex - pendingJournalSize;
+		}
+		int index = Arrays.binarySearch(pendingIndexes, journalIndex);
+		return index >= 0 ? index : -1;
+	}
+
+	/**
+	 * selects the documents not completed in the progress journal, when the size
+	 * of the shard is loaded first
+	 * 
+	 * @return the size of this corpus
+	 */
+	private int pendingSize(int journalSize) {
+		if (progress == null) {
+			return journalSize;
+		}
+		if (pendingIndexes == null) {
+			IntStream.Builder indexes = IntStream.builder();
+			for (int index = progress.nextUncompletedIndex(0, journalSize); index < journalSize; index = progress
+					.nextUncompletedIndex(index + 1, journalSize)) {
+				indexes.add(index);
+			}
+			pendingIndexes = indexes.build().toArray();
+			pendingJournalSize = journalSize;
+			logger.info("corpus " + getName() + " resumes with " + pendingIndexes.length + " of " + journalSize
+					+ " documents not completed");
+		}
+		return pendingIndexes.length + Math.max(0, journalSize - pendingJournalSize);
+	}
+
+	/**
+	 * loads the document names of a range of this corpus, strided shards and
+	 * resumed corpora load only the names of their own backend indexes
+	 */
+	private List<String> loadShardDocumentNames(int fromIndex, int toIndex) throws Exception {
+		if (pendingIndexes == null && (!isSharded() || shardStrided == null || !shardStrided)) {
+			return loadDocumentNames(backendIndex(fromIndex), backendIndex(toIndex - 1) + 1);
+		}
+		return loadDocumentNames(IntStream.range(fromIndex, toIndex).map(this::backendIndex).toArray());
 	}
 
 	protected Boolean getReadonlyDocuments() {
@@ -243,7 +738,7 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 			Resource resource = e.getResource();
 			if (resource instanceof Document) {
 				Document document = (Document) resource;
-				corpus.unloadDocument(document);
+				corpus.unloadDocument(document, false);
 			} else if (resource == corpus) {
 				Gate.getCreoleRegister().removeCreoleListener(this);
 				corpus.unload();
@@ -252,15 +747,22 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 
 		@Override
 		public void resourceRenamed(Resource resource, String oldName, String newName) {
-			if (corpus.contains(resource)) {
-				Document document = (Document) resource;
-				if (corpus.readonlyDocuments) {
-					document.setName(oldName);
-				} else {
-					try {
-						corpus.renameDocument(document, oldName, newName);
-					} catch (Exception e) {
-						throw new GateRuntimeException("cannot rename document " + document, e);
+			synchronized (corpus.stateLock) {
+				if (corpus.contains(resource)) {
+					Document document = (Document) resource;
+					corpus.flushDocuments();
+					if (corpus.readonlyDocuments) {
+						document.setName(oldName);
+					} else {
+						try {
+							corpus.writeBackend(() -> {
+								corpus.renameDocument(document, oldName, newName);
+								return null;
+							});
+							corpus.invalidateNameIndex();
+						} catch (Exception e) {
+							throw new GateRuntimeException("cannot rename document " + document, e);
+						}
 					}
 				}
 			}
@@ -287,376 +789,2127 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 		}
 	}
 
-	private static class DocumentChangeObserver implements DocumentListener, AnnotationSetListener, AnnotationListener,
-			RelationSetListener, FeatureMapListener {
-
-		private Document document;
-		private boolean changed = false;
-
-		private Map<String, AnnotationSet> annotationSets = new HashMap<>();
-
-		public DocumentChangeObserver(Document document) {
-			this.document = document;
-
-			registerDocument();
-		}
+	/**
+	 * index map of loaded documents, which keeps an identity based reverse index
+	 * from document to index in step with all modifications (including shifts by
+	 * {@link VirtualCorpus#shiftIndexMap} and
+	 * {@link VirtualCorpus#removeFromIndexMap})
+	 */
+	private static class LoadedDocumentMap extends TreeMap<Integer, Document> {
+		private static final long serialVersionUID = 4311432571963411702L;
 
-		private void registerDocument() {
-			registerFeatureMap(document.getFeatures());
+		private final Map<Document, Integer> documentIndexes = new IdentityHashMap<>();
 
-			registerAnnotationSet(document.getAnnotations());
-			for (AnnotationSet annotationSet : document.getNamedAnnotationSets().values()) {
-				registerAnnotationSet(annotationSet);
+		@Override
+		public Document put(Integer index, Document document) {
+			Document previousDocument = super.put(index, document);
+			if (previousDocument != null && previousDocument != document) {
+				removeDocumentIndex(previousDocument, index);
 			}
-			document.addDocumentListener(this);
-		}
-
-		private void unregisterDocument() {
-			document.removeDocumentListener(this);
-			unregisterFeatureMap(document.getFeatures());
-
-			unregisterAnnotationSet(document.getAnnotations());
-			for (AnnotationSet annotationSet : document.getNamedAnnotationSets().values()) {
-				unregisterAnnotationSet(annotationSet);
+			if (document != null) {
+				documentIndexes.put(document, index);
 			}
+			return previousDocument;
 		}
 
-		private void registerAnnotationSet(AnnotationSet annotationSet) {
-			annotationSet.addAnnotationSetListener(this);
-			if (annotationSet.getName() != null && annotationSet.getName().length() > 0) {
-				annotationSets.put(annotationSet.getName(), annotationSet);
-			}
-			for (Annotation annotation : annotationSet) {
-				registerAnnotation(annotation);
+		@Override
+		public void putAll(Map<? extends Integer, ? extends Document> map) {
+			for (Entry<? extends Integer, ? extends Document> entry : map.entrySet()) {
+				put(entry.getKey(), entry.getValue());
 			}
-			registerRelationSet(annotationSet.getRelations());
 		}
 
-		private void unregisterAnnotationSet(AnnotationSet annotationSet) {
-			annotationSet.removeAnnotationSetListener(this);
-			if (annotationSet.getName() != null && annotationSet.getName().length() > 0) {
-				annotationSets.remove(annotationSet.getName());
-			}
-			for (Annotation annotation : annotationSet) {
-				unregisterAnnotation(annotation);
+		@Override
+		public Document remove(Object index) {
+			Document document = super.remove(index);
+			if (document != null) {
+				removeDocumentIndex(document, (Integer) index);
 			}
-			unregisterRelationSet(annotationSet.getRelations());
-		}
-
-		private void registerAnnotation(Annotation annotation) {
-			annotation.addAnnotationListener(this);
-			registerFeatureMap(annotation.getFeatures());
+			return document;
 		}
 
-		private void unregisterAnnotation(Annotation annotation) {
-			annotation.removeAnnotationListener(this);
-			unregisterFeatureMap(annotation.getFeatures());
+		@Override
+		public void clear() {
+			super.clear();
+			documentIndexes.clear();
 		}
 
-		private void registerRelationSet(RelationSet relationSet) {
-			relationSet.addRelationSetListener(this);
-			for (Relation relation : relationSet) {
-				registerRelation(relation);
+		private void removeDocumentIndex(Document document, Integer index) {
+			if (index.equals(documentIndexes.get(document))) {
+				documentIndexes.remove(document);
 			}
 		}
 
-		private void unregisterRelationSet(RelationSet relationSet) {
-			relationSet.removeRelationSetListener(this);
-			for (Relation relation : relationSet) {
-				unregisterRelation(relation);
-			}
+		public int indexOfDocument(Object document) {
+			Integer index = documentIndexes.get(document);
+			return index != null ? index : -1;
 		}
 
-		private void registerRelation(Relation relation) {
-			registerFeatureMap(relation.getFeatures());
+		public boolean containsDocument(Object document) {
+			return documentIndexes.containsKey(document);
 		}
 
-		private void unregisterRelation(Relation relation) {
-			unregisterFeatureMap(relation.getFeatures());
-		}
+	}
 
-		private void registerFeatureMap(FeatureMap featureMap) {
-			featureMap.addFeatureMapListener(this);
-		}
+	private interface DocumentChangeTracker {
+		boolean hasChanged();
 
-		private void unregisterFeatureMap(FeatureMap featureMap) {
-			featureMap.removeFeatureMapListener(this);
-		}
+		DocumentChanges getChanges();
+
+		void release();
+	}
 
+	private static final DocumentChangeTracker UNTRACKED_DOCUMENT = new DocumentChangeTracker() {
 		@Override
-		public void featureMapUpdated() {
-			changed = true;
+		public boolean hasChanged() {
+			return false;
 		}
 
 		@Override
-		public void relationAdded(RelationSetEvent e) {
-			changed = true;
-			registerRelation(e.getRelation());
+		public DocumentChanges getChanges() {
+			return DocumentChanges.NONE;
 		}
 
 		@Override
-		public void relationRemoved(RelationSetEvent e) {
-			changed = true;
-			unregisterRelation(e.getRelation());
+		public void release() {
+		}
+	};
+
+	private DocumentChangeTracker trackDocument(Document document) {
+		if (readonlyDocuments) {
+			return UNTRACKED_DOCUMENT;
+		}
+		switch (changeTracking != null ? changeTracking : ChangeTracking.ANNOTATIONS) {
+		case NONE:
+			return UNTRACKED_DOCUMENT;
+		case ANNOTATION_SETS:
+			return new DocumentChangeObserver(document, false);
+		case FINGERPRINT:
+			return new DocumentFingerprint(document);
+		default:
+			return new DocumentChangeObserver(document, true);
+		}
+	}
+
+	/**
+	 * observes the document and its features, changes of annotation sets are
+	 * observed by an {@link AnnotationSetChangeObserver} for each set
+	 */
+	private static class DocumentChangeObserver implements DocumentChangeTracker, DocumentListener,
+			FeatureMapListener {
+
+		private Document document;
+		private final boolean observeAnnotations;
+		private volatile boolean changed = false;
+		private volatile boolean contentChanged = false;
+		private volatile boolean featuresChanged = false;
+		private final Set<String> changedAnnotationSets = ConcurrentHashMap.newKeySet();
+		private final Set<String> removedAnnotationSets = ConcurrentHashMap.newKeySet();
+
+		private Map<String, AnnotationSetChangeObserver> annotationSetObservers = new HashMap<>();
+
+		/**
+		 * @param observeAnnotations observe all annotations and relations, otherwise
+		 *                           only annotation sets and relation sets
+		 */
+		public DocumentChangeObserver(Document document, boolean observeAnnotations) {
+			this.document = document;
+			this.observeAnnotations = observeAnnotations;
+
+			registerDocument();
 		}
 
 		@Override
-		public void annotationAdded(AnnotationSetEvent e) {
+		public boolean hasChanged() {
+			return changed;
+		}
+
+		@Override
+		public DocumentChanges getChanges() {
+			if (!changed) {
+				return DocumentChanges.NONE;
+			}
+			return new DocumentChanges(contentChanged, featuresChanged, new HashSet<>(changedAnnotationSets),
+					new HashSet<>(removedAnnotationSets));
+		}
+
+		@Override
+		public void release() {
+			unregisterDocument();
+		}
+
+		private void registerDocument() {
+			document.getFeatures().addFeatureMapListener(this);
+
+			registerAnnotationSet(document.getAnnotations());
+			for (AnnotationSet annotationSet : document.getNamedAnnotationSets().values()) {
+				registerAnnotationSet(annotationSet);
+			}
+			document.addDocumentListener(this);
+		}
+
+		private void unregisterDocument() {
+			document.removeDocumentListener(this);
+			document.getFeatures().removeFeatureMapListener(this);
+
+			for (AnnotationSetChangeObserver annotationSetObserver : annotationSetObservers.values()) {
+				annotationSetObserver.unregisterAnnotationSet();
+			}
+			annotationSetObservers.clear();
+		}
+
+		private void registerAnnotationSet(AnnotationSet annotationSet) {
+			AnnotationSetChangeObserver annotationSetObserver = new AnnotationSetChangeObserver(this, annotationSet);
+			annotationSetObservers.put(annotationSetObserver.name, annotationSetObserver);
+			annotationSetObserver.registerAnnotationSet();
+		}
+
+		private void annotationSetChanged(String name) {
 			changed = true;
-			registerAnnotation(e.getAnnotation());
+			changedAnnotationSets.add(name);
 		}
 
 		@Override
-		public void annotationRemoved(AnnotationSetEvent e) {
+		public void featureMapUpdated() {
 			changed = true;
-			unregisterAnnotation(e.getAnnotation());
+			featuresChanged = true;
 		}
 
 		@Override
 		public void annotationSetAdded(DocumentEvent e) {
-			changed = true;
-			AnnotationSet annotationSet = document.getAnnotations(e.getAnnotationSetName());
-			registerAnnotationSet(annotationSet);
+			String name = DocumentChanges.annotationSetName(e.getAnnotationSetName());
+			removedAnnotationSets.remove(name);
+			annotationSetChanged(name);
+			registerAnnotationSet(document.getAnnotations(e.getAnnotationSetName()));
 		}
 
 		@Override
 		public void annotationSetRemoved(DocumentEvent e) {
+			String name = DocumentChanges.annotationSetName(e.getAnnotationSetName());
 			changed = true;
-			AnnotationSet annotationSet = annotationSets.get(e.getAnnotationSetName());
-			unregisterAnnotationSet(annotationSet);
+			changedAnnotationSets.remove(name);
+			removedAnnotationSets.add(name);
+			AnnotationSetChangeObserver annotationSetObserver = annotationSetObservers.remove(name);
+			if (annotationSetObserver != null) {
+				annotationSetObserver.unregisterAnnotationSet();
+			}
 		}
 
 		@Override
 		public void contentEdited(DocumentEvent e) {
 			changed = true;
+			contentChanged = true;
+		}
+
+	}
+
+	private static class AnnotationSetChangeObserver implements AnnotationSetListener, AnnotationListener,
+			RelationSetListener, FeatureMapListener {
+
+		private final DocumentChangeObserver documentObserver;
+		private final AnnotationSet annotationSet;
+		private final String name;
+
+		public AnnotationSetChangeObserver(DocumentChangeObserver documentObserver, AnnotationSet annotationSet) {
+			this.documentObserver = documentObserver;
+			this.annotationSet = annotationSet;
+			this.name = DocumentChanges.annotationSetName(annotationSet);
+		}
+
+		private void registerAnnotationSet() {
+			annotationSet.addAnnotationSetListener(this);
+			if (documentObserver.observeAnnotations) {
+				for (Annotation annotation : annotationSet) {
+					registerAnnotation(annotation);
+				}
+			}
+			registerRelationSet(annotationSet.getRelations());
+		}
+
+		private void unregisterAnnotationSet() {
+			annotationSet.removeAnnotationSetListener(this);
+			if (documentObserver.observeAnnotations) {
+				for (Annotation annotation : annotationSet) {
+					unregisterAnnotation(annotation);
+				}
+			}
+			unregisterRelationSet(annotationSet.getRelations());
+		}
+
+		private void registerAnnotation(Annotation annotation) {
+			if (!documentObserver.observeAnnotations) {
+				return;
+			}
+			annotation.addAnnotationListener(this);
+			registerFeatureMap(annotation.getFeatures());
+		}
+
+		private void unregisterAnnotation(Annotation annotation) {
+			if (!documentObserver.observeAnnotations) {
+				return;
+			}
+			annotation.removeAnnotationListener(this);
+			unregisterFeatureMap(annotation.getFeatures());
+		}
+
+		private void registerRelationSet(RelationSet relationSet) {
+			relationSet.addRelationSetListener(this);
+			if (documentObserver.observeAnnotations) {
+				for (Relation relation : relationSet) {
+					registerRelation(relation);
+				}
+			}
+		}
+
+		private void unregisterRelationSet(RelationSet relationSet) {
+			relationSet.removeRelationSetListener(this);
+			if (documentObserver.observeAnnotations) {
+				for (Relation relation : relationSet) {
+					unregisterRelation(relation);
+				}
+			}
+		}
+
+		private void registerRelation(Relation relation) {
+			if (!documentObserver.observeAnnotations) {
+				return;
+			}
+			registerFeatureMap(relation.getFeatures());
+		}
+
+		private void unregisterRelation(Relation relation) {
+			if (!documentObserver.observeAnnotations) {
+				return;
+			}
+			unregisterFeatureMap(relation.getFeatures());
+		}
+
+		private void registerFeatureMap(FeatureMap featureMap) {
+			featureMap.addFeatureMapListener(this);
+		}
+
+		private void unregisterFeatureMap(FeatureMap featureMap) {
+			featureMap.removeFeatureMapListener(this);
+		}
+
+		private void changed() {
+			documentObserver.annotationSetChanged(name);
+		}
+
+		@Override
+		public void featureMapUpdated() {
+			changed();
+		}
+
+		@Override
+		public void relationAdded(RelationSetEvent e) {
+			changed();
+			registerRelation(e.getRelation());
+		}
+
+		@Override
+		public void relationRemoved(RelationSetEvent e) {
+			changed();
+			unregisterRelation(e.getRelation());
+		}
+
+		@Override
+		public void annotationAdded(AnnotationSetEvent e) {
+			changed();
+			registerAnnotation(e.getAnnotation());
+		}
+
+		@Override
+		public void annotationRemoved(AnnotationSetEvent e) {
+			changed();
+			unregisterAnnotation(e.getAnnotation());
 		}
 
 		@Override
 		public void annotationUpdated(AnnotationEvent e) {
-			changed = true;
+			changed();
+		}
+
+	}
+
+	/**
+	 * hashes content, features and each annotation set (with relations) of a
+	 * document, hashes of annotations and relations are summed, since the
+	 * iteration order of annotation sets is not defined
+	 */
+	private static class DocumentFingerprint implements DocumentChangeTracker {
+		private final Document document;
+		private final long contentFingerprint;
+		private final long featuresFingerprint;
+		private final Map<String, Long> annotationSetFingerprints;
+
+		public DocumentFingerprint(Document document) {
+			this.document = document;
+			this.contentFingerprint = contentFingerprint(document);
+			this.featuresFingerprint = featuresFingerprint(document);
+			this.annotationSetFingerprints = annotationSetFingerprints(document);
+		}
+
+		@Override
+		public boolean hasChanged() {
+			return !getChanges().isEmpty();
+		}
+
+		@Override
+		public DocumentChanges getChanges() {
+			Map<String, Long> currentAnnotationSetFingerprints = annotationSetFingerprints(document);
+			Set<String> changedAnnotationSets = new HashSet<>();
+			for (Entry<String, Long> entry : currentAnnotationSetFingerprints.entrySet()) {
+				if (!entry.getValue().equals(annotationSetFingerprints.get(entry.getKey()))) {
+					changedAnnotationSets.add(entry.getKey());
+				}
+			}
+			Set<String> removedAnnotationSets = new HashSet<>(annotationSetFingerprints.keySet());
+			removedAnnotationSets.removeAll(currentAnnotationSetFingerprints.keySet());
+			return new DocumentChanges(contentFingerprint(document) != contentFingerprint,
+					featuresFingerprint(document) != featuresFingerprint, changedAnnotationSets,
+					removedAnnotationSets);
+		}
+
+		@Override
+		public void release() {
+		}
+
+		private static long contentFingerprint(Document document) {
+			return mix(document.getContent().toString().hashCode());
+		}
+
+		private static long featuresFingerprint(Document document) {
+			return fingerprint(document.getFeatures());
+		}
+
+		private static Map<String, Long> annotationSetFingerprints(Document document) {
+			Map<String, Long> fingerprints = new HashMap<>();
+			fingerprints.put(DocumentChanges.DEFAULT_ANNOTATION_SET_NAME, fingerprint(document.getAnnotations()));
+			for (Entry<String, AnnotationSet> entry : document.getNamedAnnotationSets().entrySet()) {
+				fingerprints.put(entry.getKey(), fingerprint(entry.getValue()));
+			}
+			return fingerprints;
+		}
+
+		/**
+		 * the hash code of a feature map is always 0 (SimpleFeatureMapImpl),
+		 * so the hashes of its entries are summed, nested feature maps are hashed
+		 * the same way
+		 */
+		private static long fingerprint(FeatureMap features) {
+			if (features == null) {
+				return 0;
+			}
+			long hash = features.size();
+			for (Entry<Object, Object> entry : features.entrySet()) {
+				Object value = entry.getValue();
+				long valueHash = value instanceof FeatureMap ? fingerprint((FeatureMap) value)
+						: Objects.hashCode(value);
+				hash += mix(combine(Objects.hashCode(entry.getKey()), valueHash));
+			}
+			return hash;
+		}
+
+		private static long fingerprint(AnnotationSet annotationSet) {
+			long hash = annotationSet.size();
+			for (Annotation annotation : annotationSet) {
+				long annotationHash = mix(annotation.getId());
+				annotationHash = combine(annotationHash, annotation.getType().hashCode());
+				annotationHash = combine(annotationHash, annotation.getStartNode().getOffset());
+				annotationHash = combine(annotationHash, annotation.getEndNode().getOffset());
+				annotationHash = combine(annotationHash, fingerprint(annotation.getFeatures()));
+				hash += mix(annotationHash);
+			}
+			for (Relation relation : annotationSet.getRelations()) {
+				long relationHash = mix(relation.getId());
+				relationHash = combine(relationHash, relation.getType().hashCode());
+				relationHash = combine(relationHash, Arrays.hashCode(relation.getMembers()));
+				relationHash = combine(relationHash, fingerprint(relation.getFeatures()));
+				hash += mix(relationHash);
+			}
+			return hash;
+		}
+
+		private static long combine(long hash, long value) {
+			return mix(hash * 31 + value);
+		}
+
+		private static long mix(long value) {
+			value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+			value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+			return value ^ (value >>> 33);
+		}
+	}
+
+	/**
+	 * the changes are detected without holding the state lock, fingerprints
+	 * may hash the whole document
+	 *
+	 * @return false for readonly or not loaded documents
+	 */
+	protected final boolean hasDocumentChanged(Document document) {
+		DocumentChangeTracker documentChangeTracker;
+		synchronized (stateLock) {
+			documentChangeTracker = documentChangeTrackers.get(document);
+		}
+		return documentChangeTracker != null && documentChangeTracker.hasChanged();
+	}
+
+	/**
+	 * @return the changed parts of a loaded document (no changes for readonly
+	 *         or not loaded documents)
+	 */
+	protected final DocumentChanges getDocumentChanges(Document document) {
+		DocumentChangeTracker documentChangeTracker;
+		synchronized (stateLock) {
+			documentChangeTracker = documentChangeTrackers.get(document);
+		}
+		return documentChangeTracker != null ? documentChangeTracker.getChanges() : DocumentChanges.NONE;
+	}
+
+	protected boolean isCorpusLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * saves the changed documents without holding the state lock, then unloads
+	 * all documents
+	 */
+	private final void unload() {
+		try {
+			Map<Integer, Document> documents = new TreeMap<>();
+			Map<Integer, DocumentChangeTracker> changeTrackers = new HashMap<>();
+			synchronized (stateLock) {
+				if (prefetcher != null) {
+					prefetcher.shutdown();
+				}
+				awaitSavedDocuments();
+				for (Entry<Integer, Document> entry : loadedDocuments.entrySet()) {
+					DocumentChangeTracker changeTracker = entry.getValue() != null
+							? documentChangeTrackers.get(entry.getValue())
+							: null;
+					if (changeTracker != null) {
+						documents.put(entry.getKey(), entry.getValue());
+						changeTrackers.put(entry.getKey(), changeTracker);
+					}
+				}
+			}
+			saveChangedDocuments(documents, changeTrackers);
+		} finally {
+			unloadDocuments();
+		}
+	}
+
+	private void unloadDocuments() {
+		synchronized (stateLock) {
+			try {
+				Iterator<Entry<Integer, Document>> iterator = new ArrayList<>(loadedDocuments.entrySet()).iterator();
+				while (iterator.hasNext()) {
+					Entry<Integer, Document> entry = iterator.next();
+					Integer index = entry.getKey();
+					Document document = entry.getValue();
+					loadedDocuments.remove(index);
+					documentReleased(document);
+					unloadedFromBackend(index, document);
+				}
+				documentLeases.clear();
+				retainedDocuments.clear();
+				currentDocuments.clear();
+			} finally {
+				if (writer != null) {
+					writer.shutdown();
+				}
+				metrics.unregister();
+				MemoryPressureMonitor.unregister(this);
+				if (progress != null) {
+					progress.close();
+				}
+				if (documentNameIndex != null) {
+					documentNameIndex.close();
+				}
+				if (asyncLoadThreadPool != null) {
+					asyncLoadThreadPool.shutdown();
+					asyncLoadThreadPool = null;
+				}
+			}
+			loaded = false;
+		}
+	}
+
+	/**
+	 * saves a changed document, in background if write behind is enabled
+	 *
+	 * @return true, if the document is queued to be saved in background
+	 */
+	private boolean saveDocumentChanges(int index, Document document, DocumentChanges changes) {
+		try {
+			if (writer != null) {
+				writer.write(index, DocumentUtil.snapshotDocument(document), changes);
+				return true;
+			} else {
+				lockedSetDocument(index, document, changes);
+			}
+			return false;
+		} catch (Exception e) {
+			throw new GateRuntimeException("cannot update document " + document, e);
+		}
+	}
+
+	/**
+	 * called by the {@link DocumentWriter} after documents were saved in
+	 * background, completes unloaded documents in the progress journal
+	 */
+	final void documentsWritten(Set<Integer> indexes, boolean succeeded) {
+		if (progress == null) {
+			return;
+		}
+		for (Integer index : indexes) {
+			if (pendingProgress.remove(index)) {
+				if (succeeded) {
+					progress.markCompleted(journalIndex(index));
+				} else {
+					progress.markFailed(journalIndex(index));
+				}
+			}
+		}
+	}
+
+	/**
+	 * records a document as failed in the progress journal (e.g. if processing
+	 * failed), it is not skipped when resuming. Without progressJournal, this has
+	 * no effect.
+	 */
+	public final void markDocumentFailed(int index) {
+		checkLoaded();
+		checkIndex(index);
+		if (progress != null) {
+			progress.markFailed(journalIndex(index));
+		}
+	}
+
+	/**
+	 * @return true, if the progress journal recorded the document as unloaded and
+	 *         saved
+	 */
+	public final boolean isDocumentCompleted(int index) {
+		checkLoaded();
+		return progress != null && progress.isCompleted(journalIndex(index));
+	}
+
+	public final boolean isDocumentFailed(int index) {
+		checkLoaded();
+		return progress != null && progress.isFailed(journalIndex(index));
+	}
+
+	/**
+	 * @return the first index from fromIndex, which is not completed according to
+	 *         the progress journal (documents completed by a previous run are not
+	 *         contained in the corpus, documents completed since it was opened
+	 *         are skipped)
+	 */
+	final int nextUncompletedIndex(int fromIndex) {
+		if (progress == null) {
+			return fromIndex;
+		}
+		int size = size();
+		int index = fromIndex;
+		while (index < size && progress.isCompleted(journalIndex(index))) {
+			index++;
 		}
+		return index;
+	}
 
+	/**
+	 * saves the changed documents with one call of {@link #setDocuments(Map)}
+	 * (or queues them, if write behind is enabled), called without holding the
+	 * state lock, since the changes are detected here
+	 */
+	private void saveChangedDocuments(Map<Integer, Document> documents,
+			Map<Integer, DocumentChangeTracker> changeTrackers) {
+		if (readonlyDocuments) {
+			return;
+		}
+		Map<Integer, Document> changedDocuments = new TreeMap<>();
+		Map<Integer, DocumentChanges> changes = new HashMap<>();
+		for (Entry<Integer, Document> entry : documents.entrySet()) {
+			DocumentChanges documentChanges = changeTrackers.get(entry.getKey()).getChanges();
+			if (!documentChanges.isEmpty()) {
+				changedDocuments.put(entry.getKey(), entry.getValue());
+				changes.put(entry.getKey(), documentChanges);
+			}
+		}
+		if (changedDocuments.isEmpty()) {
+			return;
+		}
+		if (writer != null) {
+			for (Entry<Integer, Document> entry : changedDocuments.entrySet()) {
+				saveDocumentChanges(entry.getKey(), entry.getValue(), changes.get(entry.getKey()));
+			}
+			return;
+		}
+		try {
+			lockedSetDocuments(changedDocuments, changes);
+		} catch (Exception e) {
+			throw new GateRuntimeException("cannot update documents " + changedDocuments.keySet(), e);
+		}
+	}
+
+	/**
+	 * writes all documents queued by write behind, e.g. before indexes of the
+	 * backend change
+	 */
+	private void flushDocuments() {
+		if (writer != null) {
+			writer.flush();
+		}
+	}
+
+	@Override
+	public void cleanup() {
+		flushDocuments();
+		super.cleanup();
+	}
+
+	private void unloadedFromBackend(int index, Document document) {
+		Lock lock = concurrentBackend ? backendLock.readLock() : backendLock.writeLock();
+		lock.lock();
+		try {
+			documentUnloaded(backendIndex(index), document);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * loads the size of the virtual corpus
+	 * 
+	 * @return an Integer of the size
+	 */
+	protected abstract int loadSize() throws Exception;
+
+	/**
+	 * @param index of document in corpus
+	 * @return the document name
+	 */
+	protected abstract String loadDocumentName(int index) throws Exception;
+
+	/**
+	 * loads the document names of a range at once, backends should override this
+	 * with a single ranged query or scan
+	 * 
+	 * @param fromIndex of the first document (inclusive)
+	 * @param toIndex   of the last document (exclusive)
+	 * @return a list of the document names (toIndex - fromIndex elements)
+	 */
+	protected List<String> loadDocumentNames(int fromIndex, int toIndex) throws Exception {
+		List<String> documentNames = new ArrayList<>(toIndex - fromIndex);
+		for (int index = fromIndex; index < toIndex; index++) {
+			documentNames.add(loadDocumentName(index));
+		}
+		return documentNames;
+	}
+
+	/**
+	 * loads the names of documents at ascending indexes (e.g. of a strided
+	 * shard), by default each name is loaded by {@link #loadDocumentName(int)}.
+	 * Backends with ranged scans override this with a single scan, which builds
+	 * only the names of the indexes.
+	 * 
+	 * @param indexes of documents in the backend (ascending)
+	 * @return a list of the document names, in the order of the indexes
+	 */
+	protected List<String> loadDocumentNames(int[] indexes) throws Exception {
+		List<String> documentNames = new ArrayList<>(indexes.length);
+		for (int index : indexes) {
+			documentNames.add(loadDocumentName(index));
+		}
+		return documentNames;
+	}
+
+	/**
+	 * may be called by a prefetch thread, so implementations must not access
+	 * loaded documents or document names of the corpus (e.g. call
+	 * {@link #loadDocumentName(int)} instead of {@link #getDocumentName(int)}).
+	 * Calls of all backend methods are serialized, unless the backend
+	 * {@link #supportsConcurrentAccess()}.
+	 * 
+	 * @param index of document in corpus
+	 * @return the document with features
+	 */
+	protected abstract Document loadDocument(int index) throws Exception;
+
+	/**
+	 * a persistent name index is rebuilt, if the fingerprint of the backend
+	 * changed since it was built. Backends return a value which changes when
+	 * documents are added, removed or renamed (e.g. a modification counter), by
+	 * default null (only the size of the corpus is compared).
+	 */
+	protected String loadFingerprint() throws Exception {
+		return null;
+	}
+
+	/**
+	 * creates a {@link DocumentImpl} in {@link #loadDocument(int)}, by the
+	 * {@link Factory} or, if the corpus does not register documents, without
+	 * creole registration and events (which notify every listener, e.g. all
+	 * loaded corpora, for each document)
+	 */
+	protected final Document createDocument(FeatureMap parameters, FeatureMap features, String name)
+			throws ResourceInstantiationException {
+		if (isRegisteringDocuments()) {
+			return (Document) Factory.createResource(DocumentImpl.class.getName(), parameters, features, name);
+		}
+		Document document = DocumentUtil.createUnregisteredDocument(DocumentImpl.class.getName(), parameters,
+				features, name);
+		unregisteredDocuments.add(document);
+		return document;
+	}
+
+	/**
+	 * reads a document written by {@link DocumentUtil#writeDocument} in
+	 * {@link #loadDocument(int)}, registered like
+	 * {@link #createDocument(FeatureMap, FeatureMap, String)}
+	 */
+	protected final Document readDocument(InputStream in, boolean compressed) throws IOException, GateException {
+		if (isRegisteringDocuments()) {
+			return DocumentUtil.readDocument(in, compressed);
+		}
+		Document document = DocumentUtil.readUnregisteredDocument(in, compressed);
+		unregisteredDocuments.add(document);
+		return document;
+	}
+
+	/**
+	 * deletes a document created by this corpus, unregistered documents are
+	 * cleaned up directly
+	 */
+	final void deleteDocument(Document document) {
+		if (unregisteredDocuments.remove(document)) {
+			document.cleanup();
+		} else {
+			Factory.deleteResource(document);
+		}
+	}
+
+	final Document lockedLoadDocument(int index) throws Exception {
+		if (writer != null) {
+			writer.awaitWritten(index);
+		}
+		return readBackend(() -> metrics.loadDocument.time(() -> loadDocument(backendIndex(index))));
+	}
+
+	/**
+	 * loads multiple documents with one call, backends which can read them in a
+	 * batch (e.g. by one query) override it, by default each document is loaded
+	 * by {@link #loadDocument(int)}. The same threading rules as for
+	 * loadDocument apply.
+	 * 
+	 * @param indexes of documents in corpus
+	 * @return a document (or null) for each index, in the order of the indexes
+	 */
+	protected List<Document> loadDocuments(int[] indexes) throws Exception {
+		List<Document> documents = new ArrayList<>(indexes.length);
+		for (int index : indexes) {
+			documents.add(loadDocument(index));
+		}
+		return documents;
+	}
+
+	final List<Document> lockedLoadDocuments(int[] indexes) throws Exception {
+		int[] backendIndexes = new int[indexes.length];
+		for (int i = 0; i < indexes.length; i++) {
+			if (writer != null) {
+				writer.awaitWritten(indexes[i]);
+			}
+			backendIndexes[i] = backendIndex(indexes[i]);
+		}
+		List<Document> documents = readBackend(
+				() -> metrics.loadDocument.time(indexes.length, () -> loadDocuments(backendIndexes)));
+		if (documents.size() != indexes.length) {
+			throw new IllegalStateException(
+					"backend loaded " + documents.size() + " instead of " + indexes.length + " documents");
+		}
+		return documents;
+	}
+
+	final void lockedSetDocument(int index, Document document, DocumentChanges changes) throws Exception {
+		writeBackend(() -> metrics.setDocument.time(() -> {
+			if (supportsDocumentChanges()) {
+				setDocumentChanges(backendIndex(index), document, changes);
+			} else {
+				setDocument(backendIndex(index), document);
+			}
+			return null;
+		}));
+	}
+
+	final void lockedSetDocuments(Map<Integer, Document> documents, Map<Integer, DocumentChanges> changes)
+			throws Exception {
+		writeBackend(() -> metrics.setDocument.time(documents.size(), () -> {
+			if (supportsDocumentChanges()) {
+				Map<Integer, Document> wholeDocuments = new TreeMap<>();
+				for (Entry<Integer, Document> entry : documents.entrySet()) {
+					int backendIndex = backendIndex(entry.getKey());
+					DocumentChanges documentChanges = changes.get(entry.getKey());
+					if (requiresWholeDocument(backendIndex, entry.getValue(), documentChanges)) {
+						wholeDocuments.put(backendIndex, entry.getValue());
+					} else {
+						setDocumentChanges(backendIndex, entry.getValue(), documentChanges);
+					}
+				}
+				if (!wholeDocuments.isEmpty()) {
+					setDocuments(wholeDocuments);
+				}
+			} else {
+				Map<Integer, Document> backendDocuments = new TreeMap<>();
+				for (Entry<Integer, Document> entry : documents.entrySet()) {
+					backendDocuments.put(backendIndex(entry.getKey()), entry.getValue());
+				}
+				setDocuments(backendDocuments);
+			}
+			return null;
+		}));
+	}
+
+	/**
+	 * 
+	 * @param index     where to insert new documents
+	 * @param documents to add
+	 * @return the amount of documents added
+	 */
+	protected abstract void addDocuments(int index, Collection<? extends Document> documents) throws Exception;
+
+	protected abstract void setDocument(int index, Document document) throws Exception;
+
+	/**
+	 * saves multiple documents at once, backends should override this with a
+	 * batch update
+	 * 
+	 * @param documents to save by index (sorted by index)
+	 */
+	protected void setDocuments(Map<Integer, Document> documents) throws Exception {
+		for (Entry<Integer, Document> entry : documents.entrySet()) {
+			setDocument(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * backends returning true store parts of documents separately and get saved
+	 * documents by {@link #setDocumentChanges(int, Document, DocumentChanges)}
+	 * instead of {@link #setDocument(int, Document)}, batches use
+	 * {@link #setDocuments(Map)} only for documents, which
+	 * {@link #requiresWholeDocument(int, Document, DocumentChanges)}
+	 */
+	protected boolean supportsDocumentChanges() {
+		return false;
+	}
+
+	/**
+	 * saves the changed parts of a document, the default saves the whole
+	 * document
+	 * 
+	 * @param changes since the document was loaded or last saved
+	 */
+	protected void setDocumentChanges(int index, Document document, DocumentChanges changes) throws Exception {
+		setDocument(index, document);
+	}
+
+	/**
+	 * backends supporting document changes return true for documents, whose
+	 * changes cannot be saved as delta, a batch saves them together by
+	 * {@link #setDocuments(Map)} and the others one by one by
+	 * {@link #setDocumentChanges(int, Document, DocumentChanges)}
+	 * 
+	 * @param changes since the document was loaded or last saved
+	 */
+	protected boolean requiresWholeDocument(int index, Document document, DocumentChanges changes) throws Exception {
+		return false;
+	}
+
+	protected abstract void deleteDocuments(Set<Integer> indexes) throws Exception;
+
+	protected abstract void deleteAllDocuments() throws Exception;
+
+	protected abstract void renameDocument(Document document, String oldName, String newName) throws Exception;
+
+	protected void documentUnloaded(int index, Document document) {
+	}
+
+	/**
+	 * called if the backend of a followed corpus contains more documents than
+	 * before, backends reopen cursors or result sets, which do not contain
+	 * appended documents
+	 * 
+	 * @param previousSize backend size before
+	 * @param size         backend size now
+	 */
+	protected void backendSizeGrown(int previousSize, int size) throws Exception {
+	}
+
+	/**
+	 * backends report bytes read for a document (or characters of text values)
+	 * for the metrics of the corpus
+	 */
+	protected final void documentBytesRead(long bytes) {
+		metrics.bytesRead.add(bytes);
+	}
+
+	/**
+	 * backends report bytes written for a document for the metrics of the corpus
+	 */
+	protected final void documentBytesWritten(long bytes) {
+		metrics.bytesWritten.add(bytes);
+	}
+
+	final int loadedDocumentCount() {
+		synchronized (stateLock) {
+			return loadedDocuments.size();
+		}
+	}
+
+	final int observedDocumentCount() {
+		synchronized (stateLock) {
+			return documentChangeTrackers.size();
+		}
+	}
+
+	protected final void documentNameLoaded(int index, String documentName) {
+		synchronized (stateLock) {
+			checkIndex(index);
+			String loadedDocumentName = loadedDocumentNames.peek(index);
+			if (loadedDocumentName != null && !documentName.contentEquals(loadedDocumentName)) {
+				throw new IllegalArgumentException("document name already loaded" + index + " and different");
+			}
+			loadedDocumentNames.put(index, documentName);
+		}
+	}
+
+	protected final void documentLoaded(int index, Document document) {
+		documentLoaded(index, document, null);
+	}
+
+	/**
+	 * @param changeTracker of the document, created before the state lock was
+	 *                      acquired, null to track the document here
+	 */
+	private void documentLoaded(int index, Document document, DocumentChangeTracker changeTracker) {
+		synchronized (stateLock) {
+			checkIndex(index);
+			if (loadedDocuments.containsKey(index)) {
+				throw new IllegalArgumentException("document index already loaded: " + index);
+			}
+			if (document != null) {
+				if (this.contains(document)) {
+					throw new IllegalArgumentException(
+							"document already loaded " + document + " at another index " + indexOf(document));
+				}
+				documentNameLoaded(index, document.getName());
+				documentChangeTrackers.put(document, changeTracker != null ? changeTracker : trackDocument(document));
+			}
+			loadedDocuments.put(index, document);
+		}
+	}
+
+	private void documentReleased(Document document) {
+		DocumentChangeTracker documentChangeTracker = documentChangeTrackers.remove(document);
+		if (documentChangeTracker != null) {
+			documentChangeTracker.release();
+		}
+		Long weight = lruDocumentWeights.remove(document);
+		if (weight != null) {
+			lruDocumentsWeight -= weight;
+		}
+		retainedDocuments.remove(document);
+		currentDocuments.values().removeIf(currentDocument -> currentDocument == document);
+	}
+
+	/**
+	 * @return true, if least recently used documents are tracked for unloading
+	 */
+	private boolean isDocumentCacheLimited() {
+		return (cacheDocuments != null && cacheDocuments > 0)
+				|| (cacheDocumentsWeight != null && cacheDocumentsWeight > 0) || isUnloadingOnMemoryPressure();
+	}
+
+	private boolean isUnloadingOnMemoryPressure() {
+		return unloadMemoryThreshold != null && unloadMemoryThreshold > 0;
+	}
+
+	private boolean isDocumentCacheExceeded() {
+		return (cacheDocuments != null && cacheDocuments > 0 && lruDocumentWeights.size() > cacheDocuments)
+				|| (cacheDocumentsWeight != null && cacheDocumentsWeight > 0
+						&& lruDocumentsWeight > cacheDocumentsWeight);
+	}
+
+	private void updateLruDocument(Document document) {
+		if (document == null || !isDocumentCacheLimited() || documentLeases.containsKey(document)
+				|| retainedDocuments.contains(document)) {
+			return;
+		}
+		Long previousWeight = lruDocumentWeights.remove(document);
+		long weight = estimateDocumentWeight(document);
+		lruDocumentWeights.put(document, weight);
+		lruDocumentsWeight += weight - (previousWeight != null ? previousWeight : 0);
+	}
+
+	/**
+	 * records the document as the current document of the calling thread, which
+	 * is in use until the thread gets another document or releases it
+	 */
+	final void documentReturned(Document document) {
+		if (document == null || !isDocumentCacheLimited()) {
+			return;
+		}
+		synchronized (stateLock) {
+			if (contains(document)) {
+				currentDocuments.put(Thread.currentThread(), document);
+			}
+		}
+	}
+
+	/**
+	 * @return the least recently used documents, which are not in use (see
+	 *         {@link #documentReturned(Document)}) and have to be unloaded until
+	 *         the document cache is not exceeded anymore
+	 */
+	private List<Document> selectLruDocuments() {
+		if (!isDocumentCacheExceeded()) {
+			return Collections.emptyList();
+		}
+		Set<Document> usedDocuments = usedDocuments();
+		List<Document> leastUsedDocuments = new ArrayList<>();
+		int count = lruDocumentWeights.size();
+		long weight = lruDocumentsWeight;
+		for (Entry<Document, Long> entry : lruDocumentWeights.entrySet()) {
+			if ((cacheDocuments == null || cacheDocuments <= 0 || count <= cacheDocuments)
+					&& (cacheDocumentsWeight == null || cacheDocumentsWeight <= 0 || weight <= cacheDocumentsWeight)) {
+				break;
+			}
+			if (!usedDocuments.contains(entry.getKey())) {
+				leastUsedDocuments.add(entry.getKey());
+				count--;
+				weight -= entry.getValue();
+			}
+		}
+		return leastUsedDocuments;
+	}
+
+	/**
+	 * unloads least recently used documents, until the document cache is not
+	 * exceeded anymore. Documents in use are never unloaded, so the cache may be
+	 * exceeded while threads hold more documents. Called with the state lock
+	 * held, the caller saves (if changed) and deletes the unloaded documents by
+	 * {@link #releaseEvictedDocuments(List)} after releasing it.
+	 */
+	private List<DetachedDocument> evictLruDocuments() {
+		return evictDocuments(selectLruDocuments());
+	}
+
+	/**
+	 * @return the documents currently used by threads (see
+	 *         {@link #documentReturned(Document)}), called with the state lock
+	 *         held
+	 */
+	private Set<Document> usedDocuments() {
+		Set<Document> usedDocuments = Collections.newSetFromMap(new IdentityHashMap<>());
+		usedDocuments.addAll(currentDocuments.values());
+		return usedDocuments;
+	}
+
+	/**
+	 * detaches the documents to be saved and deleted by
+	 * {@link #releaseEvictedDocuments(List)}, called with the state lock held
+	 */
+	private List<DetachedDocument> evictDocuments(List<Document> leastUsedDocuments) {
+		if (leastUsedDocuments.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<DetachedDocument> evictedDocuments = new ArrayList<>(leastUsedDocuments.size());
+		for (Document leastUsedDocument : leastUsedDocuments) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("evict document " + leastUsedDocument.getName() + " (" + lruDocumentWeights.size()
+						+ " documents with weight " + lruDocumentsWeight + " loaded)");
+			}
+			if (contains(leastUsedDocument)) {
+				evictedDocuments.add(detachDocument(leastUsedDocument, false));
+			} else {
+				documentReleased(leastUsedDocument);
+			}
+		}
+		return evictedDocuments;
+	}
+
+	/**
+	 * saves (if changed) and deletes evicted documents, without holding the
+	 * state lock
+	 */
+	private void releaseEvictedDocuments(List<DetachedDocument> evictedDocuments) {
+		for (DetachedDocument evictedDocument : evictedDocuments) {
+			try {
+				saveDetachedDocument(evictedDocument);
+			} finally {
+				deleteDocument(evictedDocument.document);
+			}
+		}
+	}
+
+	/**
+	 * gets a document pinned until the lease is closed, pinned documents are not
+	 * tracked as least recently used and therefore never evicted. Leases of the
+	 * same document are counted, closing the last one saves (if changed) and
+	 * unloads the document like {@link #releaseDocument(Document)}.
+	 */
+	public final DocumentLease lease(int index) {
+		checkLoaded();
+		while (true) {
+			Document document = get(index);
+			if (document == null) {
+				return new DocumentLease(this, null);
+			}
+			synchronized (stateLock) {
+				// the document may be evicted or released by another thread since get
+				if (contains(document)) {
+					documentLeases.merge(document, 1, Integer::sum);
+					Long weight = lruDocumentWeights.remove(document);
+					if (weight != null) {
+						lruDocumentsWeight -= weight;
+					}
+					return new DocumentLease(this, document);
+				}
+			}
+		}
+	}
+
+	final void closeLease(Document document) {
+		DetachedDocument releasedDocument;
+		synchronized (stateLock) {
+			Integer leases = documentLeases.get(document);
+			if (leases == null) {
+				return;
+			}
+			if (leases > 1) {
+				documentLeases.put(document, leases - 1);
+				return;
+			}
+			documentLeases.remove(document);
+			if (!loaded || !contains(document)) {
+				return;
+			}
+			releasedDocument = detachDocument(document, true);
+		}
+		try {
+			saveDetachedDocument(releasedDocument);
+		} finally {
+			deleteDocument(document);
+		}
+	}
+
+	final int leasedDocumentCount() {
+		synchronized (stateLock) {
+			return documentLeases.size();
+		}
+	}
+
+	/**
+	 * unloads the least recently used half of the loaded documents (saved first,
+	 * if changed), called by {@link MemoryPressureMonitor} when a heap pool
+	 * exceeds unloadMemoryThreshold. Like evicted documents, documents in use or
+	 * leased are never unloaded and the unloaded documents are saved without
+	 * holding the state lock.
+	 */
+	final void unloadOnMemoryPressure(String poolName, MemoryUsage usage) {
+		if (!loaded) {
+			return;
+		}
+		List<DetachedDocument> unloadedDocuments;
+		long unloadedWeight = 0;
+		synchronized (stateLock) {
+			Set<Document> usedDocuments = usedDocuments();
+			List<Document> leastUsedDocuments = new ArrayList<>();
+			int count = (lruDocumentWeights.size() + 1) / 2;
+			for (Entry<Document, Long> entry : lruDocumentWeights.entrySet()) {
+				if (leastUsedDocuments.size() >= count) {
+					break;
+				}
+				Document document = entry.getKey();
+				if (!usedDocuments.contains(document) && !documentLeases.containsKey(document)) {
+					leastUsedDocuments.add(document);
+					unloadedWeight += entry.getValue();
+				}
+			}
+			unloadedDocuments = evictDocuments(leastUsedDocuments);
+		}
+		releaseEvictedDocuments(unloadedDocuments);
+		metrics.memoryPressureUnloads.increment();
+		metrics.memoryPressureUnloadedDocuments.add(unloadedDocuments.size());
+		metrics.memoryPressureUnloadedWeight.add(unloadedWeight);
+		logger.info("memory pool " + poolName + " uses " + usage.getUsed() + " of " + usage.getMax()
+				+ " bytes, unloaded " + unloadedDocuments.size() + " documents with estimated weight "
+				+ unloadedWeight + " of corpus " + getName());
+	}
+
+	private static long estimateDocumentWeight(Document document) {
+		long annotationCount = document.getAnnotations().size();
+		for (AnnotationSet annotationSet : document.getNamedAnnotationSets().values()) {
+			annotationCount += annotationSet.size();
+		}
+		return document.getContent().size() * DOCUMENT_CHAR_WEIGHT + annotationCount * ANNOTATION_WEIGHT;
+	}
+
+	@Override
+	public final boolean isDocumentLoaded(int index) {
+		checkLoaded();
+		synchronized (stateLock) {
+			checkIndex(index);
+			return loadedDocuments.containsKey(index);
+		}
+	}
+
+	/**
+	 * @return true, if the document is loaded or currently loaded by another
+	 *         thread
+	 */
+	final boolean isDocumentLoadedOrLoading(int index) {
+		synchronized (stateLock) {
+			return loadedDocuments.containsKey(index) || loadingDocuments.containsKey(index)
+					|| savingDocuments.containsKey(index);
+		}
+	}
+
+	public final boolean isDocumentNameLoaded(int index) {
+		checkLoaded();
+		synchronized (stateLock) {
+			checkIndex(index);
+			return loadedDocumentNames.containsKey(index);
+		}
+	}
+
+	/**
+	 * saves (if changed) and unloads a document, which is recorded as completed
+	 * in the progress journal (after it is saved)
+	 */
+	@Override
+	public final void unloadDocument(Document document) {
+		checkLoaded();
+		unloadDocument(document, true);
+	}
+
+	/**
+	 * @param completed false if the document is unloaded without being
+	 *                  processed (e.g. evicted)
+	 */
+	private void unloadDocument(Document document, boolean completed) {
+		if (document == null) {
+			return;
+		}
+		DetachedDocument unloadedDocument;
+		synchronized (stateLock) {
+			if (!this.contains(document)) {
+				return;
+			}
+			unloadedDocument = detachDocument(document, completed);
+		}
+		saveDetachedDocument(unloadedDocument);
+	}
+
+	/**
+	 * a document removed from the loaded documents, which is saved (if changed)
+	 * without holding the state lock
+	 */
+	private static final class DetachedDocument {
+		private final int index;
+		private final Document document;
+		private final DocumentChangeTracker changeTracker;
+		private final boolean completed;
+		private final CompletableFuture<Void> saved = new CompletableFuture<>();
+
+		private DetachedDocument(int index, Document document, DocumentChangeTracker changeTracker,
+				boolean completed) {
+			this.index = index;
+			this.document = document;
+			this.changeTracker = changeTracker;
+			this.completed = completed;
+		}
+	}
+
+	/**
+	 * removes a loaded document, called with the state lock held. Until it is
+	 * saved by {@link #saveDetachedDocument(DetachedDocument)}, get of its index
+	 * and modifications of the corpus wait.
+	 */
+	private DetachedDocument detachDocument(Document document, boolean completed) {
+		int index = this.indexOf(document);
+		DetachedDocument detachedDocument = new DetachedDocument(index, document,
+				documentChangeTrackers.remove(document), completed);
+		savingDocuments.put(index, detachedDocument.saved);
+		loadedDocuments.remove(index);
+		documentReleased(document);
+		unloadedFromBackend(index, document);
+		return detachedDocument;
+	}
+
+	/**
+	 * saves a detached document (if changed) without holding the state lock and
+	 * records it in the progress journal, if it was completed
+	 */
+	private void saveDetachedDocument(DetachedDocument detachedDocument) {
+		int index = detachedDocument.index;
+		boolean recordProgress = detachedDocument.completed && progress != null;
+		try {
+			boolean queued = false;
+			DocumentChangeTracker changeTracker = detachedDocument.changeTracker;
+			if (!readonlyDocuments && changeTracker != null) {
+				DocumentChanges changes = changeTracker.getChanges();
+				if (!changes.isEmpty()) {
+					if (recordProgress && writer != null) {
+						pendingProgress.add(index);
+					}
+					queued = saveDocumentChanges(index, detachedDocument.document, changes);
+				}
+			}
+			if (recordProgress && !queued) {
+				progress.markCompleted(journalIndex(index));
+			}
+		} catch (RuntimeException e) {
+			if (recordProgress) {
+				pendingProgress.remove(index);
+				progress.markFailed(journalIndex(index));
+			}
+			throw e;
+		} finally {
+			if (detachedDocument.changeTracker != null) {
+				detachedDocument.changeTracker.release();
+			}
+			savingDocuments.remove(index, detachedDocument.saved);
+			detachedDocument.saved.complete(null);
+		}
+	}
+
+	/**
+	 * waits (without holding the state lock) until an unloaded document is
+	 * saved
+	 */
+	private void awaitSaved(int index, CompletableFuture<Void> saving) {
+		try {
+			saving.get();
+		} catch (ExecutionException e) {
+			throw new GateRuntimeException("cannot save document " + index, e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GateRuntimeException("interrupted while waiting for document " + index, e);
+		}
+	}
+
+	/**
+	 * waits until all unloaded documents are saved, called with the state lock
+	 * held before indexes change (saving never needs the state lock)
+	 */
+	private void awaitSavedDocuments() {
+		for (Entry<Integer, CompletableFuture<Void>> entry : savingDocuments.entrySet()) {
+			awaitSaved(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * @return a lazy view of all document names, which loads names page by page
+	 *         when accessed (see {@link DocumentNameList}). Before documents are
+	 *         added, removed or replaced first, the view copies all its names,
+	 *         so it keeps the names of the corpus when it was returned (like the
+	 *         list of names returned by earlier versions).
+	 */
+	@Override
+	public final List<String> getDocumentNames() {
+		checkLoaded();
+		synchronized (stateLock) {
+			DocumentNameList documentNames = new DocumentNameList(this, 0, size());
+			documentNameViews.removeIf(view -> view.get() == null);
+			documentNameViews.add(new WeakReference<>(documentNames));
+			return documentNames;
+		}
 	}
 
-	protected final boolean hasDocumentChanged(Document document) {
-		return documentChangeObservers.get(document).changed;
+	/**
+	 * iterates over all document names, holding only one page of names at a
+	 * time, fails after documents were added or removed
+	 */
+	public final Iterator<String> documentNameIterator() {
+		checkLoaded();
+		return new DocumentNameList(this, 0, size()).iterator();
 	}
 
-	protected boolean isCorpusLoaded() {
-		return loaded;
+	/**
+	 * copies the names of the views returned by {@link #getDocumentNames()},
+	 * called with the state lock held before the backend is modified
+	 */
+	private void copyDocumentNameViews() {
+		for (WeakReference<DocumentNameList> view : documentNameViews) {
+			DocumentNameList documentNames = view.get();
+			if (documentNames != null) {
+				documentNames.copyNames();
+			}
+		}
+		documentNameViews.clear();
 	}
 
-	private final void unload() {
-		Iterator<Entry<Integer, Document>> iterator = loadedDocuments.entrySet().iterator();
+	/**
+	 * finds a document by name, in the persistent name index if nameIndex is
+	 * set, otherwise by iterating over all document names
+	 * 
+	 * @return the index of the first document with the name, -1 if there is
+	 *         none
+	 */
+	public final int indexOfName(String documentName) {
+		checkLoaded();
+		if (documentNameIndex != null) {
+			return currentNameIndex().indexOf(documentName);
+		}
+		int index = 0;
+		Iterator<String> iterator = documentNameIterator();
 		while (iterator.hasNext()) {
-			Entry<Integer, Document> entry = iterator.next();
-			Integer index = entry.getKey();
-			Document document = entry.getValue();
-			if (!readonlyDocuments && hasDocumentChanged(document)) {
-				try {
-					saveDocument(document);
-				} catch (Exception e) {
-					throw new GateRuntimeException("cannot update document " + document, e);
-				}
+			if (documentName.equals(iterator.next())) {
+				return index;
 			}
-			iterator.remove();
-			documentChangeObservers.remove(document).unregisterDocument();
-			documentUnloaded(index, document);
+			index++;
 		}
-		loaded = false;
+		return -1;
 	}
 
 	/**
-	 * loads the size of the virtual corpus
+	 * finds documents by the prefix of their names, see
+	 * {@link #indexOfName(String)}
 	 * 
-	 * @return an Integer of the size
+	 * @return the indexes of all documents whose names start with the prefix,
+	 *         ordered by name and index
 	 */
-	protected abstract int loadSize() throws Exception;
+	public final List<Integer> indexesOfNamePrefix(String prefix) {
+		checkLoaded();
+		if (documentNameIndex != null) {
+			return currentNameIndex().indexesOfPrefix(prefix);
+		}
+		List<String> names = new ArrayList<>();
+		List<Integer> indexes = new ArrayList<>();
+		int index = 0;
+		Iterator<String> iterator = documentNameIterator();
+		while (iterator.hasNext()) {
+			String documentName = iterator.next();
+			if (documentName != null && documentName.startsWith(prefix)) {
+				names.add(documentName);
+				indexes.add(index);
+			}
+			index++;
+		}
+		Integer[] positions = IntStream.range(0, indexes.size()).boxed().toArray(Integer[]::new);
+		Arrays.sort(positions, (first, second) -> names.get(first).compareTo(names.get(second)));
+		return Arrays.stream(positions).map(indexes::get).collect(Collectors.toList());
+	}
 
 	/**
-	 * @param index of document in corpus
-	 * @return the document name
+	 * checks the name index once after it was opened or invalidated, rebuilds it
+	 * if its fingerprint differs, and indexes names of documents appended to a
+	 * followed corpus. Names are copied page by page, so the name index is never
+	 * locked while the state lock is acquired.
 	 */
-	protected abstract String loadDocumentName(int index) throws Exception;
+	private DocumentNameIndex currentNameIndex() {
+		synchronized (nameIndexLock) {
+			while (true) {
+				int generation = documentNameIndex.getGeneration();
+				int size = size();
+				if (generation != checkedNameIndexGeneration) {
+					try {
+						nameIndexFingerprint = getClass().getName() + " " + shardIndex + "/" + shardCount + " "
+								+ shardStrided + " " + pendingFingerprint() + writeBackend(() -> loadFingerprint());
+					} catch (Exception e) {
+						throw new GateRuntimeException("cannot load fingerprint of corpus " + getName(), e);
+					}
+					int indexedSize = documentNameIndex.getIndexedSize();
+					if (!documentNameIndex.isValid(nameIndexFingerprint) || indexedSize > size
+							|| (indexedSize < size && !isFollowing())) {
+						logger.info("build name index of corpus " + getName() + " with " + size + " documents");
+						documentNameIndex.clear();
+					}
+				} else if (documentNameIndex.getIndexedSize() == size) {
+					return documentNameIndex;
+				}
+				// fails when documents are added or removed meanwhile
+				List<String> documentNames = new DocumentNameList(this, 0, size());
+				try {
+					int indexedSize = documentNameIndex.getIndexedSize();
+					for (int fromIndex = indexedSize; fromIndex < size; fromIndex += DOCUMENT_NAMES_CHUNK_SIZE) {
+						int toIndex = Math.min(fromIndex + DOCUMENT_NAMES_CHUNK_SIZE, size);
+						documentNameIndex.append(new ArrayList<>(documentNames.subList(fromIndex, toIndex)));
+					}
+				} catch (ConcurrentModificationException e) {
+					continue;
+				}
+				if (documentNameIndex.complete(nameIndexFingerprint, generation)) {
+					checkedNameIndexGeneration = generation;
+					return documentNameIndex;
+				}
+			}
+		}
+	}
 
 	/**
-	 * @param index of document in corpus
-	 * @return the document with features
+	 * the documents of a resumed corpus, indexes in the name index differ from
+	 * a corpus without completed documents
 	 */
-	protected abstract Document loadDocument(int index) throws Exception;
+	private String pendingFingerprint() {
+		if (pendingIndexes == null) {
+			return "";
+		}
+		return pendingJournalSize + ":" + pendingIndexes.length + ":" + Arrays.hashCode(pendingIndexes) + " ";
+	}
 
 	/**
-	 * 
-	 * @param index     where to insert new documents
-	 * @param documents to add
-	 * @return the amount of documents added
+	 * called with the state lock held, when documents are added, removed, set
+	 * or renamed
 	 */
-	protected abstract void addDocuments(int index, Collection<? extends Document> documents) throws Exception;
+	private void invalidateNameIndex() {
+		if (documentNameIndex != null) {
+			documentNameIndex.invalidate();
+		}
+	}
 
-	protected abstract void setDocument(int index, Document document) throws Exception;
+	@Override
+	public final String getDocumentName(int index) {
+		checkLoaded();
+		int toIndex;
+		synchronized (stateLock) {
+			checkIndex(index);
+			String loadedDocumentName = loadedDocumentNames.get(index);
+			if (loadedDocumentName != null) {
+				metrics.nameCacheHits.increment();
+				return loadedDocumentName;
+			}
+			metrics.nameCacheMisses.increment();
+			int readAhead = Math.min(DOCUMENT_NAMES_READ_AHEAD, loadedDocumentNames.capacity());
+			toIndex = Math.max(Math.min(index + readAhead, size()), index + 1);
+		}
+		return getDocumentNames(index, toIndex).get(0);
+	}
 
-	protected void saveDocument(Document document) throws Exception {
-		int index = this.indexOf(document);
+	/**
+	 * gets the document names of a range, names not loaded yet are loaded by one
+	 * call of {@link #loadDocumentNames(int, int)}
+	 */
+	private List<String> getDocumentNames(int fromIndex, int toIndex) {
+		List<String> documentNames = new ArrayList<>(toIndex - fromIndex);
+		int firstMissingIndex = -1;
+		int lastMissingIndex = -1;
+		int expectedModCount;
+		synchronized (stateLock) {
+			expectedModCount = modCount;
+			for (int index = fromIndex; index < toIndex; index++) {
+				String documentName = loadedDocumentNames.get(index);
+				if (documentName == null) {
+					if (firstMissingIndex < 0) {
+						firstMissingIndex = index;
+					}
+					lastMissingIndex = index;
+				}
+				documentNames.add(documentName);
+			}
+		}
+		if (firstMissingIndex < 0) {
+			return documentNames;
+		}
 
-		setDocument(index, document);
-	}
+		int loadFromIndex = firstMissingIndex;
+		int loadToIndex = lastMissingIndex + 1;
+		List<String> missingDocumentNames;
+		try {
+			missingDocumentNames = readBackend(
+					() -> metrics.loadDocumentName.time(() -> loadShardDocumentNames(loadFromIndex, loadToIndex)));
+		} catch (Exception e) {
+			synchronized (stateLock) {
+				if (modCount != expectedModCount) {
+					// documents were removed while loading, the range may exceed the backend
+					if (fromIndex >= size()) {
+						throw new IndexOutOfBoundsException(
+								"document " + fromIndex + " removed while loading its name");
+					}
+					return getDocumentNames(fromIndex, Math.min(toIndex, size()));
+				}
+			}
+			throw new GateRuntimeException(
+					"cannot load document names " + firstMissingIndex + " to " + lastMissingIndex, e);
+		}
+		if (missingDocumentNames.size() != lastMissingIndex + 1 - firstMissingIndex) {
+			throw new GateRuntimeException("loaded " + missingDocumentNames.size() + " document names for "
+					+ (lastMissingIndex + 1 - firstMissingIndex) + " indexes");
+		}
 
-	protected abstract void deleteDocuments(Set<Integer> indexes) throws Exception;
+		synchronized (stateLock) {
+			boolean modified = modCount != expectedModCount;
+			for (int index = firstMissingIndex; index <= lastMissingIndex; index++) {
+				String documentName = missingDocumentNames.get(index - firstMissingIndex);
+				if (documentName != null && documentNames.get(index - fromIndex) == null) {
+					if (!modified && loadedDocumentNames.peek(index) == null) {
+						loadedDocumentNames.put(index, documentName);
+					}
+					documentNames.set(index - fromIndex, documentName);
+				}
+			}
+		}
+		return documentNames;
+	}
 
-	protected abstract void deleteAllDocuments() throws Exception;
+	@Override
+	public final Document get(int index) {
+		checkLoaded();
+		boolean sequentialAccess = index == lastRequestedIndex.get() + 1;
+		lastRequestedIndex.set(index);
+		while (true) {
+			CompletableFuture<Document> loading;
+			CompletableFuture<Void> saving;
+			boolean loadingByOtherThread;
+			int expectedModCount;
+			boolean alreadyLoaded;
+			Document loadedDocument = null;
+			List<DetachedDocument> evictedDocuments;
+			synchronized (stateLock) {
+				checkIndex(index);
+				alreadyLoaded = loadedDocuments.containsKey(index);
+				if (alreadyLoaded) {
+					loadedDocument = loadedDocuments.get(index);
+					updateLruDocument(loadedDocument);
+					documentReturned(loadedDocument);
+					evictedDocuments = evictLruDocuments();
+					if (sequentialAccess) {
+						prefetchDocuments(index + 1);
+					}
+				} else {
+					evictedDocuments = Collections.emptyList();
+				}
+				saving = savingDocuments.get(index);
+				loading = loadingDocuments.get(index);
+				loadingByOtherThread = loading != null;
+				if (!alreadyLoaded && saving == null && !loadingByOtherThread) {
+					loading = new CompletableFuture<>();
+					loadingDocuments.put(index, loading);
+				}
+				expectedModCount = modCount;
+			}
+			if (alreadyLoaded) {
+				releaseEvictedDocuments(evictedDocuments);
+				return loadedDocument;
+			}
 
-	protected abstract void renameDocument(Document document, String oldName, String newName) throws Exception;
+			if (saving != null) {
+				// an unloaded document is saved by another thread, load it afterwards
+				awaitSaved(index, saving);
+				continue;
+			}
+			if (loadingByOtherThread) {
+				if (awaitDocument(index, loading) == null) {
+					return null;
+				}
+				continue;
+			}
 
-	protected void documentUnloaded(int index, Document document) {
-	}
+			Document document;
+			try {
+				document = loadDocumentForIndex(index);
+			} catch (RuntimeException | Error e) {
+				synchronized (stateLock) {
+					loadingDocuments.remove(index, loading);
+				}
+				loading.completeExceptionally(e);
+				throw e;
+			}
 
-	protected final void documentNameLoaded(int index, String documentName) {
-		checkIndex(index);
-		if (cacheDocumentNames != null && cacheDocumentNames > 0) {
-			if (loadedDocumentNames.containsKey(index)) {
-				if (!documentName.contentEquals(this.getDocumentName(index))) {
-					throw new IllegalArgumentException("document name already loaded" + index + " and different");
+			// tracked before the state lock is acquired, fingerprints hash the document
+			DocumentChangeTracker changeTracker = document != null ? trackDocument(document) : null;
+			boolean registered = false;
+			synchronized (stateLock) {
+				loadingDocuments.remove(index, loading);
+				if (modCount == expectedModCount && !loadedDocuments.containsKey(index)) {
+					if (document != null) {
+						documentLoaded(index, document, changeTracker);
+						updateLruDocument(document);
+						documentReturned(document);
+						evictedDocuments = evictLruDocuments();
+					}
+					if (sequentialAccess) {
+						prefetchDocuments(index + 1);
+					}
+					registered = true;
 				}
 			}
-			loadedDocumentNames.put(index, documentName);
-			updateLruDocumentNameIndex(index);
+			loading.complete(document);
+			releaseEvictedDocuments(evictedDocuments);
+			if (registered || document == null) {
+				return document;
+			}
+			// corpus was modified while loading, document may belong to another index
+			changeTracker.release();
+			deleteDocument(document);
 		}
 	}
 
-	private void updateLruDocumentNameIndex(Integer index) {
-		lruDocumentNameIndexes.remove(index);
-		if (lruDocumentNameIndexes.size() >= cacheDocumentNames) {
-			Iterator<Integer> iterator = lruDocumentNameIndexes.iterator();
-			if (iterator.hasNext()) {
-				Integer leastUsedIndex = iterator.next();
-				iterator.remove();
-				loadedDocumentNames.remove(leastUsedIndex);
+	/**
+	 * waits (without holding the state lock) for a document loaded by another
+	 * thread
+	 */
+	private Document awaitDocument(int index, CompletableFuture<Document> loading) {
+		try {
+			return loading.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
 			}
+			throw new GateRuntimeException("cannot load document " + index, e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GateRuntimeException("interrupted while waiting for document " + index, e);
 		}
-		lruDocumentNameIndexes.add(index);
 	}
 
-	protected final void documentLoaded(int index, Document document) {
-		checkIndex(index);
-		if (loadedDocuments.containsKey(index)) {
-			throw new IllegalArgumentException("document index already loaded: " + index);
-		}
-		if (document != null) {
-			if (this.contains(document)) {
-				throw new IllegalArgumentException(
-						"document already loaded " + document + " at another index " + indexOf(document));
+	private Document loadDocumentForIndex(int index) {
+		Document document = null;
+		try {
+			if (prefetcher != null) {
+				document = prefetcher.take(index);
+			}
+			if (document == null) {
+				document = lockedLoadDocument(index);
 			}
-			documentNameLoaded(index, document.getName());
-			documentChangeObservers.put(document, new DocumentChangeObserver(document));
+		} catch (Exception e) {
+			throw new GateRuntimeException("cannot load document " + index, e);
 		}
-		loadedDocuments.put(index, document);
-	}
-
-	@Override
-	public final boolean isDocumentLoaded(int index) {
-		checkLoaded();
-		checkIndex(index);
-		return loadedDocuments.containsKey(index);
+		setSourceUrl(document);
+		return document;
 	}
 
-	public final boolean isDocumentNameLoaded(int index) {
-		checkLoaded();
-		checkIndex(index);
-		return loadedDocumentNames.containsKey(index);
+	private void setSourceUrl(Document document) {
+		if (document != null && document.getFeatures().getOrDefault("gate.SourceURL", "created from String")
+				.equals("created from String")) {
+			document.getFeatures().put("gate.SourceURL", "created from " + this.getClass().getSimpleName());
+		}
 	}
 
-	@Override
-	public final void unloadDocument(Document document) {
+	/**
+	 * loads documents in background, asyncLoadBatchSize documents per backend
+	 * call (in parallel, if the backend supports concurrent access). Loaded
+	 * documents belong to the corpus like documents returned by
+	 * {@link #get(int)}, the document cache is trimmed by the next get (so they
+	 * are not evicted before they are used).
+	 * 
+	 * @return a future for each index, completed with the document (null if the
+	 *         backend has no document) or exceptionally if loading failed
+	 */
+	public final List<CompletableFuture<Document>> loadAsync(int... indexes) {
 		checkLoaded();
-		if (document == null) {
-			return;
-		}
-		if (this.contains(document)) {
-			if (!readonlyDocuments && hasDocumentChanged(document)) {
-				try {
-					saveDocument(document);
-				} catch (Exception e) {
-					throw new GateRuntimeException("cannot update document " + document, e);
+		List<CompletableFuture<Document>> futures = new ArrayList<>(indexes.length);
+		List<Integer> loadIndexes = new ArrayList<>();
+		List<CompletableFuture<Document>> loadings = new ArrayList<>();
+		List<CompletableFuture<Document>> results = new ArrayList<>();
+		Executor executor;
+		int expectedModCount;
+		synchronized (stateLock) {
+			executor = asyncLoadExecutor();
+			for (int index : indexes) {
+				checkIndex(index);
+			}
+			for (int index : indexes) {
+				if (loadedDocuments.containsKey(index)) {
+					Document document = loadedDocuments.get(index);
+					updateLruDocument(document);
+					futures.add(CompletableFuture.completedFuture(document));
+					continue;
+				}
+				CompletableFuture<Document> loading = loadingDocuments.get(index);
+				if (loading != null) {
+					// registered by the loading thread or loaded again after a modification
+					futures.add(loading.thenApplyAsync(document -> document != null ? get(index) : null, executor));
+					continue;
+				}
+				CompletableFuture<Void> saving = savingDocuments.get(index);
+				if (saving != null) {
+					// loaded again when the unloaded document is saved
+					futures.add(saving.thenApplyAsync(ignored -> get(index), executor));
+					continue;
 				}
+				loading = new CompletableFuture<>();
+				loadingDocuments.put(index, loading);
+				CompletableFuture<Document> result = new CompletableFuture<>();
+				loadIndexes.add(index);
+				loadings.add(loading);
+				results.add(result);
+				futures.add(result);
+			}
+			expectedModCount = modCount;
+		}
+		int batchSize = asyncLoadBatchSize != null && asyncLoadBatchSize > 0 ? asyncLoadBatchSize : 1;
+		for (int from = 0; from < loadIndexes.size(); from += batchSize) {
+			int to = Math.min(from + batchSize, loadIndexes.size());
+			int[] batchIndexes = loadIndexes.subList(from, to).stream().mapToInt(Integer::intValue).toArray();
+			List<CompletableFuture<Document>> batchLoadings = loadings.subList(from, to);
+			List<CompletableFuture<Document>> batchResults = results.subList(from, to);
+			try {
+				executor.execute(() -> loadBatch(batchIndexes, batchLoadings, batchResults, expectedModCount));
+			} catch (RuntimeException e) {
+				failBatch(batchIndexes, batchLoadings, batchResults, e);
 			}
-			int index = this.indexOf(document);
-			loadedDocuments.remove(index);
-			documentChangeObservers.remove(document).unregisterDocument();
-			documentUnloaded(index, document);
 		}
+		return futures;
 	}
 
-	@Override
-	public final List<String> getDocumentNames() {
+	/**
+	 * loads the documents from fromIndex (inclusive) to toIndex (exclusive) in
+	 * background, see {@link #loadAsync(int...)}
+	 */
+	public final CompletableFuture<List<Document>> loadRange(int fromIndex, int toIndex) {
 		checkLoaded();
-		List<String> documentNames = new ArrayList<>();
-		for (int i = 0; i < size(); i++) {
-			String documentName = getDocumentName(i);
-			documentNames.add(documentName);
+		if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", Size: " + size());
 		}
-		return documentNames;
+		List<CompletableFuture<Document>> futures = loadAsync(IntStream.range(fromIndex, toIndex).toArray());
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]))
+				.thenApply(ignored -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
 	}
 
-	@Override
-	public final String getDocumentName(int index) {
+	/**
+	 * publishes the documents of the corpus (from index 0 to the size at
+	 * subscription) as reactive stream, loading at most asyncLoadBatchSize
+	 * documents ahead and releasing each document (saved if changed and
+	 * unloaded) when onNext of the subscriber returns
+	 */
+	public final Publisher<Document> publisher() {
+		return publisher(asyncLoadBatchSize != null && asyncLoadBatchSize > 0 ? asyncLoadBatchSize : 1, true);
+	}
+
+	/**
+	 * @param maxLoadAhead     documents loaded ahead, bounded by the demand of
+	 *                         the subscriber
+	 * @param releaseDocuments release each document when onNext returns, false
+	 *                         if the subscriber releases documents by
+	 *                         {@link #releaseDocument(Document)}
+	 */
+	public final Publisher<Document> publisher(int maxLoadAhead, boolean releaseDocuments) {
 		checkLoaded();
-		checkIndex(index);
-		if (loadedDocumentNames.containsKey(index)) {
-			updateLruDocumentNameIndex(index);
-			return loadedDocumentNames.get(index);
+		if (maxLoadAhead <= 0) {
+			throw new IllegalArgumentException("maxLoadAhead must be positive");
 		}
+		return new DocumentPublisher(this, maxLoadAhead, releaseDocuments);
+	}
 
-		String documentName;
-		try {
-			documentName = loadDocumentName(index);
-		} catch (Exception e) {
-			throw new GateRuntimeException("cannot load document name " + index, e);
+	private Executor asyncLoadExecutor() {
+		if (asyncLoadExecutor != null) {
+			return asyncLoadExecutor;
 		}
-
-		if (documentName == null) {
-			return null;
+		if (asyncLoadThreadPool == null) {
+			int threads = asyncLoadThreads != null && asyncLoadThreads > 0 ? asyncLoadThreads : 1;
+			asyncLoadThreadPool = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(runnable, "load " + getName());
+				thread.setDaemon(true);
+				return thread;
+			});
 		}
-		documentNameLoaded(index, documentName);
-		return documentName;
+		return asyncLoadThreadPool;
 	}
 
-	@Override
-	public final Document get(int index) {
-		checkLoaded();
-		checkIndex(index);
-		if (loadedDocuments.containsKey(index)) {
-			return loadedDocuments.get(index);
+	private void loadBatch(int[] indexes, List<CompletableFuture<Document>> loadings,
+			List<CompletableFuture<Document>> results, int expectedModCount) {
+		Document[] documents = new Document[indexes.length];
+		try {
+			List<Integer> missing = new ArrayList<>();
+			for (int i = 0; i < indexes.length; i++) {
+				if (prefetcher != null) {
+					documents[i] = prefetcher.take(indexes[i]);
+				}
+				if (documents[i] == null) {
+					missing.add(i);
+				}
+			}
+			if (!missing.isEmpty()) {
+				List<Document> batchDocuments = lockedLoadDocuments(
+						missing.stream().mapToInt(i -> indexes[i]).toArray());
+				for (int i = 0; i < missing.size(); i++) {
+					documents[missing.get(i)] = batchDocuments.get(i);
+				}
+			}
+		} catch (Exception | Error e) {
+			for (Document document : documents) {
+				if (document != null) {
+					deleteDocument(document);
+				}
+			}
+			failBatch(indexes, loadings, results, e);
+			return;
+		}
+		for (int i = 0; i < indexes.length; i++) {
+			int index = indexes[i];
+			Document document = documents[i];
+			setSourceUrl(document);
+			DocumentChangeTracker changeTracker = document != null ? trackDocument(document) : null;
+			boolean registered = false;
+			synchronized (stateLock) {
+				loadingDocuments.remove(index, loadings.get(i));
+				if (loaded && modCount == expectedModCount && !loadedDocuments.containsKey(index)) {
+					if (document != null) {
+						documentLoaded(index, document, changeTracker);
+						updateLruDocument(document);
+					}
+					registered = true;
+				}
+			}
+			loadings.get(i).complete(document);
+			if (registered || document == null) {
+				results.get(i).complete(document);
+				continue;
+			}
+			// corpus was modified while loading, document may belong to another index
+			changeTracker.release();
+			deleteDocument(document);
+			try {
+				results.get(i).complete(get(index));
+			} catch (RuntimeException e) {
+				results.get(i).completeExceptionally(e);
+			}
 		}
+	}
 
-		Document document;
-		try {
-			document = loadDocument(index);
-		} catch (Exception e) {
-			throw new GateRuntimeException("cannot load document " + index, e);
+	private void failBatch(int[] indexes, List<CompletableFuture<Document>> loadings,
+			List<CompletableFuture<Document>> results, Throwable cause) {
+		synchronized (stateLock) {
+			for (int i = 0; i < indexes.length; i++) {
+				loadingDocuments.remove(indexes[i], loadings.get(i));
+			}
 		}
+		GateRuntimeException exception = new GateRuntimeException(
+				"cannot load documents " + Arrays.toString(indexes), cause);
+		for (int i = 0; i < indexes.length; i++) {
+			loadings.get(i).completeExceptionally(exception);
+			results.get(i).completeExceptionally(exception);
+		}
+	}
 
-		if (document == null) {
-			return null;
+	/**
+	 * prefetches the next documents in background, if prefetching is enabled
+	 * (triggered by iterators and sequential access with {@link #get(int)})
+	 * 
+	 * @param fromIndex of the first document to prefetch
+	 */
+	private void prefetchDocuments(int fromIndex) {
+		if (prefetcher == null) {
+			return;
 		}
-		if (document.getFeatures().getOrDefault("gate.SourceURL", "created from String")
-				.equals("created from String")) {
-			document.getFeatures().put("gate.SourceURL", "created from " + this.getClass().getSimpleName());
+		synchronized (stateLock) {
+			if (fromIndex < size()) {
+				prefetcher.prefetch(fromIndex, Math.min(fromIndex + prefetchDepth, size()));
+			}
 		}
-		documentLoaded(index, document);
-		return document;
+	}
+
+	/**
+	 * discards prefetched documents and writes unloaded and queued documents,
+	 * since indexes of the backend change
+	 */
+	private void beforeBackendModification() {
+		copyDocumentNameViews();
+		if (prefetcher != null) {
+			prefetcher.discard();
+		}
+		awaitSavedDocuments();
+		flushDocuments();
 	}
 
 	@Override
 	public final int size() {
 		checkLoaded();
-		if (size == null) {
+		synchronized (stateLock) {
+			if (size == null) {
+				try {
+					backendSize = writeBackend(() -> metrics.loadSize.time(() -> loadSize()));
+				} catch (Exception e) {
+					throw new GateRuntimeException("cannot load corpus size", e);
+				}
+				size = pendingSize(shardSize(backendSize));
+				sizeCheckedNanos = System.nanoTime();
+			} else if (isFollowing()
+					&& System.nanoTime() - sizeCheckedNanos >= TimeUnit.MILLISECONDS.toNanos(followInterval)) {
+				followBackend();
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * re-checks the backend size of a followed corpus and appends new documents
+	 * to the index space (loaded documents stay valid, since documents are only
+	 * appended)
+	 */
+	private void followBackend() {
+		synchronized (stateLock) {
+			sizeCheckedNanos = System.nanoTime();
+			int previousSize = size;
 			try {
-				size = loadSize();
+				writeBackend(() -> {
+					int loadedBackendSize = metrics.loadSize.time(() -> loadSize());
+					if (loadedBackendSize > backendSize) {
+						backendSizeGrown(backendSize, loadedBackendSize);
+						backendSize = loadedBackendSize;
+					} else if (loadedBackendSize < backendSize) {
+						logger.warn("backend of followed corpus " + getName() + " shrank from " + backendSize
+								+ " to " + loadedBackendSize + " documents, ignored");
+					}
+					return null;
+				});
 			} catch (Exception e) {
 				throw new GateRuntimeException("cannot load corpus size", e);
 			}
+			size = pendingSize(shardSize(backendSize));
+			if (logger.isDebugEnabled() && size > previousSize) {
+				logger.debug("followed corpus " + getName() + " grew from " + previousSize + " to " + size);
+			}
+			if (size > previousSize) {
+				fireDocumentsAdded(previousSize, Collections.<Document>nCopies(size - previousSize, null));
+			}
+		}
+	}
+
+	/**
+	 * waits until a followed corpus contains at least a count of documents,
+	 * polling the backend every followInterval
+	 * 
+	 * @return false, if the corpus is not followed, the followTimeout elapsed or
+	 *         the thread was interrupted
+	 */
+	final boolean awaitFollowedSize(int minimumSize) {
+		if (!isFollowing()) {
+			return false;
+		}
+		long deadline = followTimeout != null && followTimeout > 0
+				? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(followTimeout)
+				: 0;
+		while (true) {
+			synchronized (stateLock) {
+				size();
+				if (size >= minimumSize) {
+					return true;
+				}
+				followBackend();
+				if (size >= minimumSize) {
+					return true;
+				}
+			}
+			long waitMillis = followInterval;
+			if (deadline != 0) {
+				long remainingNanos = deadline - System.nanoTime();
+				if (remainingNanos <= 0) {
+					return false;
+				}
+				waitMillis = Math.min(waitMillis, Math.max(TimeUnit.NANOSECONDS.toMillis(remainingNanos), 1));
+			}
+			try {
+				Thread.sleep(waitMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
 		}
-		return size;
 	}
 
 	@Override
@@ -668,27 +2921,25 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 	public final int indexOf(Object object) {
 		checkLoaded();
 		if (object instanceof Document) {
-			return loadedDocuments.entrySet().stream().filter(e -> e.getValue().equals(object)).map(e -> e.getKey())
-					.min(Integer::compareTo).orElse(-1);
+			synchronized (stateLock) {
+				return loadedDocuments.indexOfDocument(object);
+			}
 		}
 		return -1;
 	}
 
 	@Override
 	public final int lastIndexOf(Object object) {
-		checkLoaded();
-		if (object instanceof Document) {
-			return loadedDocuments.entrySet().stream().filter(e -> e.getValue().equals(object)).map(e -> e.getKey())
-					.max(Integer::compareTo).orElse(-1);
-		}
-		return -1;
+		return indexOf(object);
 	}
 
 	@Override
 	public final boolean contains(Object object) {
 		checkLoaded();
 		if (object instanceof Document) {
-			return loadedDocuments.containsValue(object);
+			synchronized (stateLock) {
+				return loadedDocuments.containsDocument(object);
+			}
 		}
 		return false;
 	}
@@ -696,7 +2947,12 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 	@Override
 	public final boolean containsAll(Collection<?> collection) {
 		checkLoaded();
-		return loadedDocuments.values().containsAll(collection);
+		for (Object object : collection) {
+			if (!contains(object)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	@Override
@@ -716,31 +2972,45 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 	}
 
 	@Override
-	public final boolean addAll(int index, Collection<? extends Document> documents) {
-		checkMutable();
-		checkLoaded();
-		checkIndexAdd(index);
-		if (documents.isEmpty()) {
-			return false;
-		}
-
-		try {
-			addDocuments(index, documents);
-		} catch (Exception e) {
-			throw new GateRuntimeException("cannot add documents " + index + " " + documents, e);
-		}
+	public final boolean addAll(int index, Collection<? extends Document> documents) {
+		checkMutable();
+		checkLoaded();
+		List<DetachedDocument> evictedDocuments;
+		synchronized (stateLock) {
+			checkIndexAdd(index);
+			if (documents.isEmpty()) {
+				return false;
+			}
 
-		if (index < size() && !loadedDocumentNames.isEmpty()) {
-			shiftIndexMap(loadedDocumentNames, index, loadedDocumentNames.lastKey() + 1, documents.size());
-		}
-		addAllToIndexMap(loadedDocuments, index, documents);
-		size += documents.size();
-		modCount++;
+			beforeBackendModification();
+			try {
+				writeBackend(() -> {
+					addDocuments(index, documents);
+					return null;
+				});
+			} catch (Exception e) {
+				throw new GateRuntimeException("cannot add documents " + index + " " + documents, e);
+			}
 
-		for (Document document : documents) {
-			fireDocumentAdded(index++, document);
-			documentChangeObservers.put(document, new DocumentChangeObserver(document));
+			if (index < size() && !loadedDocumentNames.isEmpty()) {
+				loadedDocumentNames.shift(index, documents.size());
+			}
+			addAllToIndexMap(loadedDocuments, index, documents);
+			size += documents.size();
+			modCount++;
+			invalidateNameIndex();
+
+			Document lastDocument = null;
+			for (Document document : documents) {
+				documentChangeTrackers.put(document, trackDocument(document));
+				updateLruDocument(document);
+				lastDocument = document;
+			}
+			fireDocumentsAdded(index, new ArrayList<>(documents));
+			documentReturned(lastDocument);
+			evictedDocuments = evictLruDocuments();
 		}
+		releaseEvictedDocuments(evictedDocuments);
 		return true;
 	}
 
@@ -748,24 +3018,42 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 	public final Document set(int index, Document document) {
 		checkWritableDocuments();
 		checkLoaded();
-		checkIndex(index);
+		List<DetachedDocument> evictedDocuments = Collections.emptyList();
+		Document oldDocument;
+		synchronized (stateLock) {
+			checkIndex(index);
 
-		try {
-			setDocument(index, document);
-		} catch (Exception e) {
-			throw new GateRuntimeException("cannot set document " + index + " " + document, e);
-		}
+			beforeBackendModification();
+			try {
+				writeBackend(() -> metrics.setDocument.time(() -> {
+					setDocument(backendIndex(index), document);
+					return null;
+				}));
+			} catch (Exception e) {
+				throw new GateRuntimeException("cannot set document " + index + " " + document, e);
+			}
 
-		Document oldDocument;
-		if (document != null) {
-			oldDocument = loadedDocuments.put(index, document);
-			loadedDocumentNames.put(index, document.getName());
-		} else {
-			oldDocument = loadedDocuments.remove(index);
-			loadedDocumentNames.remove(index);
+			if (document != null) {
+				oldDocument = loadedDocuments.put(index, document);
+				loadedDocumentNames.put(index, document.getName());
+				invalidateNameIndex();
+			} else {
+				oldDocument = loadedDocuments.remove(index);
+				loadedDocumentNames.remove(index);
+			}
+			if (oldDocument != null && oldDocument != document) {
+				documentReleased(oldDocument);
+			}
+			if (document != null && !documentChangeTrackers.containsKey(document)) {
+				documentChangeTrackers.put(document, trackDocument(document));
+				updateLruDocument(document);
+				documentReturned(document);
+				evictedDocuments = evictLruDocuments();
+			}
+			fireDocumentRemoved(index, oldDocument);
+			fireDocumentAdded(index, document);
 		}
-		fireDocumentRemoved(index, oldDocument);
-		fireDocumentAdded(index, document);
+		releaseEvictedDocuments(evictedDocuments);
 		return oldDocument;
 	}
 
@@ -773,37 +3061,50 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 	public final Document remove(int index) {
 		checkMutable();
 		checkLoaded();
-		checkIndex(index);
 		Document document = get(index);
+		synchronized (stateLock) {
+			checkIndex(index);
+			if (loadedDocuments.get(index) != document) {
+				throw new ConcurrentModificationException("document " + index + " changed while removing");
+			}
 
-		Set<Integer> indexes = Collections.unmodifiableSet(Stream.of(index).collect(Collectors.toSet()));
-		try {
-			deleteDocuments(indexes);
-		} catch (Exception e) {
-			throw new GateRuntimeException("cannot delete document " + index + " " + document, e);
-		}
+			Set<Integer> indexes = Collections.unmodifiableSet(Stream.of(index).collect(Collectors.toSet()));
+			beforeBackendModification();
+			try {
+				writeBackend(() -> {
+					deleteDocuments(indexes);
+					return null;
+				});
+			} catch (Exception e) {
+				throw new GateRuntimeException("cannot delete document " + index + " " + document, e);
+			}
 
-		if (!loadedDocumentNames.isEmpty()) {
-			removeFromIndexMap(loadedDocumentNames, index, loadedDocumentNames.lastKey() + 1, indexes);
-		}
-		if (!loadedDocuments.isEmpty()) {
-			removeFromIndexMap(loadedDocuments, index, loadedDocuments.lastKey() + 1, indexes);
-		}
-		size--;
-		modCount++;
+			if (!loadedDocumentNames.isEmpty()) {
+				loadedDocumentNames.removeAndShift(indexes);
+			}
+			if (!loadedDocuments.isEmpty()) {
+				removeFromIndexMap(loadedDocuments, index, loadedDocuments.lastKey() + 1, indexes);
+			}
+			size--;
+			modCount++;
+			invalidateNameIndex();
 
-		fireDocumentRemoved(index, document);
-		return document;
+			if (document != null) {
+				documentReleased(document);
+			}
+			fireDocumentRemoved(index, document);
+			return document;
+		}
 	}
 
 	@Override
 	public final boolean remove(Object object) {
 		checkMutable();
 		checkLoaded();
-		if (!this.contains(object)) {
+		int index = this.indexOf(object);
+		if (index < 0) {
 			return false;
 		}
-		int index = this.indexOf(object);
 		remove(index);
 		return true;
 
@@ -813,18 +3114,23 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 	public final boolean removeAll(Collection<?> collection) {
 		checkMutable();
 		checkLoaded();
-		Set<Integer> indexes = Collections.unmodifiableSet(loadedDocuments.entrySet().stream()
-				.filter(e -> collection.contains(e.getValue())).map(e -> e.getKey()).collect(Collectors.toSet()));
-		return removeAll(indexes);
+		synchronized (stateLock) {
+			Set<Integer> indexes = Collections.unmodifiableSet(collection.stream().map(object -> indexOf(object))
+					.filter(index -> index >= 0).collect(Collectors.toSet()));
+			return removeAll(indexes);
+		}
 	}
 
 	@Override
 	public final boolean retainAll(Collection<?> collection) {
 		checkMutable();
 		checkLoaded();
-		Set<Integer> indexes = Collections.unmodifiableSet(loadedDocuments.entrySet().stream()
-				.filter(e -> !collection.contains(e.getValue())).map(e -> e.getKey()).collect(Collectors.toSet()));
-		return removeAll(indexes);
+		synchronized (stateLock) {
+			Set<Integer> indexes = Collections.unmodifiableSet(loadedDocuments.entrySet().stream()
+					.filter(e -> !collection.contains(e.getValue())).map(e -> e.getKey())
+					.collect(Collectors.toSet()));
+			return removeAll(indexes);
+		}
 	}
 
 	private boolean removeAll(Set<Integer> indexes) {
@@ -832,25 +3138,41 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 			return false;
 		}
 
+		beforeBackendModification();
 		try {
-			deleteDocuments(indexes);
+			writeBackend(() -> {
+				deleteDocuments(indexes);
+				return null;
+			});
 		} catch (Exception e) {
 			throw new GateRuntimeException("cannot delete documents " + indexes, e);
 		}
 
 		Map<Integer, Document> removeDocuments = removeFromIndexMap(loadedDocuments, indexes);
-		Integer firstIndex = removeDocuments.keySet().stream().min(Integer::compareTo).get();
-		removeFromIndexMap(loadedDocumentNames, firstIndex, loadedDocumentNames.lastKey() + 1, indexes);
+		loadedDocumentNames.removeAndShift(indexes);
 
-		for (Entry<Integer, Document> entry : removeDocuments.entrySet()) {
-			Integer index = entry.getKey();
-			Document document = entry.getValue();
-			fireDocumentRemoved(index, document);
-			documentChangeObservers.remove(document).unregisterDocument();
+		for (Document document : removeDocuments.values()) {
+			documentReleased(document);
 		}
 		size();
 		size -= indexes.size();
 		modCount++;
+		invalidateNameIndex();
+
+		// one event per contiguous range, from the last to the first range
+		List<Integer> sortedIndexes = new ArrayList<>(indexes);
+		Collections.sort(sortedIndexes);
+		int toPosition = sortedIndexes.size();
+		while (toPosition > 0) {
+			int fromPosition = toPosition - 1;
+			while (fromPosition > 0 && sortedIndexes.get(fromPosition - 1) == sortedIndexes.get(fromPosition) - 1) {
+				fromPosition--;
+			}
+			int fromIndex = sortedIndexes.get(fromPosition);
+			int toIndex = sortedIndexes.get(toPosition - 1) + 1;
+			fireDocumentsRemoved(fromIndex, indexMapRange(removeDocuments, fromIndex, toIndex));
+			toPosition = fromPosition;
+		}
 
 		return true;
 	}
@@ -859,27 +3181,34 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 	public final void clear() {
 		checkMutable();
 		checkLoaded();
+		synchronized (stateLock) {
+			int previousSize = size();
+			beforeBackendModification();
+			try {
+				writeBackend(() -> {
+					deleteAllDocuments();
+					return null;
+				});
+			} catch (Exception e) {
+				throw new GateRuntimeException("cannot delete all documents", e);
+			}
 
-		try {
-			deleteAllDocuments();
-		} catch (Exception e) {
-			throw new GateRuntimeException("cannot delete all documents", e);
-		}
+			Map<Integer, Document> removedDocuments = new HashMap<>(loadedDocuments);
 
-		TreeMap<Integer, Document> reversed = new TreeMap<>(Collections.reverseOrder());
-		reversed.putAll(loadedDocuments);
+			loadedDocuments.clear();
+			loadedDocumentNames.clear();
 
-		loadedDocuments.clear();
-		loadedDocumentNames.clear();
+			for (Document document : removedDocuments.values()) {
+				documentReleased(document);
+			}
+			size = 0;
+			modCount++;
+			invalidateNameIndex();
 
-		for (Entry<Integer, Document> entry : reversed.entrySet()) {
-			Integer index = entry.getKey();
-			Document document = entry.getValue();
-			fireDocumentRemoved(index, document);
-			documentChangeObservers.remove(document).unregisterDocument();
+			if (previousSize > 0) {
+				fireDocumentsRemoved(0, indexMapRange(removedDocuments, 0, previousSize));
+			}
 		}
-		size = 0;
-		modCount++;
 	}
 
 	public static final <E> boolean addAllToIndexMap(SortedMap<Integer, E> map, Integer index,
@@ -899,8 +3228,25 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 		return true;
 	}
 
+	/**
+	 * moves the elements of indexes from startIndex (inclusive) to endIndex
+	 * (exclusive) by shift. Sorted maps (e.g. of loaded documents) move only
+	 * their entries, other maps are probed for each index of the range.
+	 */
 	public static final <E> void shiftIndexMap(Map<Integer, E> map, Integer startIndex, Integer endIndex,
 			Integer shift) {
+		if (map instanceof SortedMap) {
+			SortedMap<Integer, E> moved = new TreeMap<>(((SortedMap<Integer, E>) map).subMap(startIndex, endIndex));
+			for (Integer index : moved.keySet()) {
+				map.remove(index);
+			}
+			for (Entry<Integer, E> entry : moved.entrySet()) {
+				if (entry.getValue() != null) {
+					map.put(entry.getKey() + shift, entry.getValue());
+				}
+			}
+			return;
+		}
 		Integer overlapping = startIndex + shift - 1;
 		for (Integer index = endIndex - 1; index >= startIndex; index--) {
 			if (map.containsKey(index)) {
@@ -928,15 +3274,38 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 		return removeElements;
 	}
 
+	/**
+	 * removes the elements of indexes and moves the following elements up to
+	 * endIndex (exclusive) down. Sorted maps move only their entries, other maps
+	 * are probed for each index of the range.
+	 */
 	public static final <E> void removeFromIndexMap(Map<Integer, E> map, Integer startIndex, Integer endIndex,
 			Set<Integer> indexes) {
+		if (map instanceof SortedMap) {
+			int[] removedIndexes = indexes.stream().mapToInt(Integer::intValue).sorted().toArray();
+			SortedMap<Integer, E> moved = new TreeMap<>(((SortedMap<Integer, E>) map).subMap(startIndex, endIndex));
+			for (Integer index : moved.keySet()) {
+				map.remove(index);
+			}
+			for (Entry<Integer, E> entry : moved.entrySet()) {
+				int position = Arrays.binarySearch(removedIndexes, entry.getKey());
+				if (position < 0 && entry.getValue() != null) {
+					map.put(entry.getKey() + position + 1, entry.getValue());
+				}
+			}
+			return;
+		}
 		Integer newIndex = startIndex;
 		Integer overlappingIndex = endIndex - indexes.size();
 		for (Integer index = startIndex; index < endIndex; index++) {
 			if (!indexes.contains(index)) {
-				E element = map.get(index);
-				if (element != null) {
-					map.put(newIndex, element);
+				if (newIndex != index) {
+					E element = map.get(index);
+					if (element != null) {
+						map.put(newIndex, element);
+					} else {
+						map.remove(newIndex);
+					}
 				}
 				newIndex++;
 			}
@@ -982,19 +3351,32 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 		}
 	}
 
+	/**
+	 * @return a readonly view of a range of this corpus, which loads documents and
+	 *         document names from this corpus (invalid after this corpus is
+	 *         modified)
+	 */
 	@Override
-	public final List<Document> subList(int fromIndex, int toIndex) {
+	public final VirtualCorpusSubList subList(int fromIndex, int toIndex) {
 		checkLoaded();
-		throw new UnsupportedOperationException();
+		if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", Size: " + size());
+		}
+		return new VirtualCorpusSubList(this, fromIndex, toIndex);
 	}
 
+	/**
+	 * loads all documents, prefer {@link #iterator()} and
+	 * {@link #releaseDocument(Document)} for large corpora
+	 */
 	@Override
 	public final Object[] toArray() {
 		checkLoaded();
-		Object[] array = new Object[size()];
-		for (int i = 0; i < size(); i++) {
-			Document document = get(i);
-			array[i] = document;
+		int size = size();
+		warnToArray(size);
+		Object[] array = new Object[size];
+		for (int i = 0; i < size; i++) {
+			array[i] = getRetained(i);
 		}
 		return array;
 	}
@@ -1003,12 +3385,14 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 	@SuppressWarnings("unchecked")
 	public <T> T[] toArray(T[] a) {
 		checkLoaded();
+		int size = size();
+		warnToArray(size);
 		if (a.length < size)
 			a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
 
 		Object[] result = a;
-		for (int i = 0; i < size(); i++) {
-			result[i] = get(i);
+		for (int i = 0; i < size; i++) {
+			result[i] = getRetained(i);
 		}
 
 		if (a.length > size)
@@ -1017,10 +3401,50 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 		return a;
 	}
 
+	/**
+	 * gets a document, which is not evicted until it is released (by
+	 * {@link #releaseDocument(Document)} or {@link #unloadDocument(Document)}),
+	 * since the caller holds it in an array
+	 */
+	private Document getRetained(int index) {
+		while (true) {
+			Document document = get(index);
+			if (document == null || !isDocumentCacheLimited()) {
+				return document;
+			}
+			synchronized (stateLock) {
+				// the document may be evicted or released by another thread since get
+				if (contains(document)) {
+					retainedDocuments.add(document);
+					Long weight = lruDocumentWeights.remove(document);
+					if (weight != null) {
+						lruDocumentsWeight -= weight;
+					}
+					return document;
+				}
+			}
+		}
+	}
+
+	/**
+	 * the array keeps all documents loaded, regardless of the document cache
+	 */
+	private void warnToArray(int size) {
+		if (cacheDocuments != null && cacheDocuments > 0 && size > cacheDocuments) {
+			logger.warn("toArray of corpus " + getName() + " loads all " + size
+					+ " documents, exceeding cacheDocuments " + cacheDocuments);
+		}
+	}
+
+	/**
+	 * iterates over all documents, with a progressJournal documents completed
+	 * since the corpus was opened are skipped (documents completed by a previous
+	 * run are not contained in the corpus)
+	 */
 	@Override
 	public final Iterator<Document> iterator() {
 		checkLoaded();
-		return new VirtualCorpusIterator(this);
+		return new VirtualCorpusIterator(this, progress != null);
 	}
 
 	@Override
@@ -1035,30 +3459,321 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 		return listIterator(0);
 	}
 
+	/**
+	 * Splits evenly by index ranges, each split loads its documents with
+	 * {@link #get(int)}, so {@link #parallelStream()} loads and processes
+	 * documents on all threads of the ForkJoin pool (loading is only parallel,
+	 * if the corpus is concurrent). To keep memory bounded, release each document
+	 * after processing, e.g.
+	 * 
+	 * <pre>
+	 * corpus.parallelStream().forEach(document -&gt; {
+	 * 	process(document);
+	 * 	corpus.releaseDocument(document);
+	 * });
+	 * </pre>
+	 */
+	@Override
+	public final Spliterator<Document> spliterator() {
+		checkLoaded();
+		return new VirtualCorpusSpliterator(this, 0, size());
+	}
+
+	/**
+	 * unloads (saves if changed) and deletes a document of this corpus, e.g. after
+	 * processing it in a stream. The document is loaded again by a later
+	 * {@link #get(int)}.
+	 */
+	public final void releaseDocument(Document document) {
+		checkLoaded();
+		if (document != null && contains(document)) {
+			unloadDocument(document);
+			deleteDocument(document);
+		}
+	}
+
+	public static final class VirtualCorpusSubList extends AbstractList<Document> implements RandomAccess {
+		private final VirtualCorpus corpus;
+		private final int fromIndex;
+		private final int size;
+		private final int expectedModCount;
+
+		private VirtualCorpusSubList(VirtualCorpus corpus, int fromIndex, int toIndex) {
+			this.corpus = corpus;
+			this.fromIndex = fromIndex;
+			this.size = toIndex - fromIndex;
+			this.expectedModCount = corpus.modCount;
+		}
+
+		@Override
+		public Document get(int index) {
+			checkIndex(index);
+			return corpus.get(fromIndex + index);
+		}
+
+		public String getDocumentName(int index) {
+			checkIndex(index);
+			return corpus.getDocumentName(fromIndex + index);
+		}
+
+		public List<String> getDocumentNames() {
+			checkForComodification();
+			return new DocumentNameList(corpus, fromIndex, fromIndex + size);
+		}
+
+		@Override
+		public int size() {
+			checkForComodification();
+			return size;
+		}
+
+		@Override
+		public int indexOf(Object object) {
+			checkForComodification();
+			int index = corpus.indexOf(object) - fromIndex;
+			return index >= 0 && index < size ? index : -1;
+		}
+
+		@Override
+		public int lastIndexOf(Object object) {
+			return indexOf(object);
+		}
+
+		@Override
+		public boolean contains(Object object) {
+			return indexOf(object) >= 0;
+		}
+
+		@Override
+		public VirtualCorpusSubList subList(int fromIndex, int toIndex) {
+			checkForComodification();
+			if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+				throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", Size: " + size);
+			}
+			return new VirtualCorpusSubList(corpus, this.fromIndex + fromIndex, this.fromIndex + toIndex);
+		}
+
+		@Override
+		public Spliterator<Document> spliterator() {
+			checkForComodification();
+			return new VirtualCorpusSpliterator(corpus, fromIndex, fromIndex + size);
+		}
+
+		private void checkIndex(int index) {
+			checkForComodification();
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+		}
+
+		private void checkForComodification() {
+			if (corpus.modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+	}
+
+	/**
+	 * lazy view of the document names of an index range. Names are loaded page by
+	 * page (through the name cache) when accessed, so only the current page is
+	 * held instead of all names. Like
+	 * {@link VirtualCorpusSubList}, the view fails after documents were added or
+	 * removed, unless it copied its names before (views of
+	 * {@link VirtualCorpus#getDocumentNames()}).
+	 */
+	public static final class DocumentNameList extends AbstractList<String> implements RandomAccess {
+		private final VirtualCorpus corpus;
+		private final int fromIndex;
+		private final int size;
+		private final int expectedModCount;
+		private volatile NamePage page;
+		private volatile List<String> copiedNames;
+
+		private DocumentNameList(VirtualCorpus corpus, int fromIndex, int toIndex) {
+			this.corpus = corpus;
+			this.fromIndex = fromIndex;
+			this.size = toIndex - fromIndex;
+			this.expectedModCount = corpus.modCount;
+		}
+
+		@Override
+		public String get(int index) {
+			List<String> copiedNames = this.copiedNames;
+			if (copiedNames != null) {
+				return copiedNames.get(index);
+			}
+			checkForComodification();
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			int corpusIndex = fromIndex + index;
+			NamePage page = this.page;
+			if (page == null || !page.contains(corpusIndex)) {
+				int pageFromIndex = corpusIndex - index % DOCUMENT_NAMES_CHUNK_SIZE;
+				int pageToIndex = Math.min(pageFromIndex + DOCUMENT_NAMES_CHUNK_SIZE, fromIndex + size);
+				page = new NamePage(pageFromIndex, corpus.getDocumentNames(pageFromIndex, pageToIndex));
+				this.page = page;
+			}
+			return page.names.get(corpusIndex - page.fromIndex);
+		}
+
+		@Override
+		public int size() {
+			if (copiedNames == null) {
+				checkForComodification();
+			}
+			return size;
+		}
+
+		/**
+		 * loads all names of the view, before the corpus is modified
+		 */
+		private void copyNames() {
+			if (copiedNames == null && corpus.modCount == expectedModCount) {
+				copiedNames = Collections.unmodifiableList(corpus.getDocumentNames(fromIndex, fromIndex + size));
+				page = null;
+			}
+		}
+
+		private void checkForComodification() {
+			if (corpus.modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+	}
+
+	private static final class NamePage {
+		private final int fromIndex;
+		private final List<String> names;
+
+		private NamePage(int fromIndex, List<String> names) {
+			this.fromIndex = fromIndex;
+			this.names = names;
+		}
+
+		private boolean contains(int index) {
+			return index >= fromIndex && index < fromIndex + names.size();
+		}
+	}
+
+	private static class VirtualCorpusSpliterator implements Spliterator<Document> {
+		private final VirtualCorpus corpus;
+		private int index;
+		private final int endIndex;
+		private final int expectedModCount;
+
+		public VirtualCorpusSpliterator(VirtualCorpus corpus, int index, int endIndex) {
+			this.corpus = corpus;
+			this.index = index;
+			this.endIndex = endIndex;
+			this.expectedModCount = corpus.modCount;
+		}
+
+		private VirtualCorpusSpliterator(VirtualCorpus corpus, int index, int endIndex, int expectedModCount) {
+			this.corpus = corpus;
+			this.index = index;
+			this.endIndex = endIndex;
+			this.expectedModCount = expectedModCount;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Document> action) {
+			if (action == null) {
+				throw new NullPointerException();
+			}
+			if (index >= endIndex) {
+				return false;
+			}
+			checkForComodification();
+			action.accept(corpus.get(index++));
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super Document> action) {
+			if (action == null) {
+				throw new NullPointerException();
+			}
+			while (index < endIndex) {
+				checkForComodification();
+				action.accept(corpus.get(index++));
+			}
+		}
+
+		@Override
+		public Spliterator<Document> trySplit() {
+			int middleIndex = (index + endIndex) >>> 1;
+			if (middleIndex <= index) {
+				return null;
+			}
+			VirtualCorpusSpliterator prefix = new VirtualCorpusSpliterator(corpus, index, middleIndex,
+					expectedModCount);
+			index = middleIndex;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return endIndex - index;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+		}
+
+		private void checkForComodification() {
+			if (corpus.modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+	}
+
 	private static class VirtualCorpusIterator implements Iterator<Document> {
 		protected VirtualCorpus corpus;
 		protected int cursor = 0;
 		protected int lastRet = -1;
 		protected int expectedModCount;
+		private final boolean skipCompleted;
 
 		public VirtualCorpusIterator(VirtualCorpus corpus) {
+			this(corpus, false);
+		}
+
+		public VirtualCorpusIterator(VirtualCorpus corpus, boolean skipCompleted) {
 			this.corpus = corpus;
 			this.expectedModCount = corpus.modCount;
+			this.skipCompleted = skipCompleted;
 		}
 
+		/**
+		 * waits at the end of a followed corpus for new documents
+		 */
 		@Override
 		public boolean hasNext() {
-			return cursor != corpus.size();
+			skipCompleted();
+			return cursor != corpus.size() || corpus.awaitFollowedSize(cursor + 1);
+		}
+
+		private void skipCompleted() {
+			if (skipCompleted) {
+				cursor = corpus.nextUncompletedIndex(cursor);
+			}
 		}
 
+		/**
+		 * waits at the end of a followed corpus like {@link #hasNext()}
+		 */
 		@Override
 		public Document next() {
 			checkForComodification();
+			skipCompleted();
+			if (cursor == corpus.size()) {
+				corpus.awaitFollowedSize(cursor + 1);
+			}
 			try {
 				int i = cursor;
 				Document next = corpus.get(i);
 				lastRet = i;
 				cursor = i + 1;
+				corpus.prefetchDocuments(cursor);
 				return next;
 			} catch (IndexOutOfBoundsException e) {
 				checkForComodification();
@@ -1156,7 +3871,7 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 
 	}
 
-	private List<CorpusListener> corpusListeners = new ArrayList<CorpusListener>();
+	private List<CorpusListener> corpusListeners = new CopyOnWriteArrayList<CorpusListener>();
 
 	@Override
 	public void removeCorpusListener(CorpusListener listener) {
@@ -1169,19 +3884,78 @@ public abstract class VirtualCorpus extends AbstractLanguageResource implements
 	}
 
 	protected void fireDocumentAdded(int index, Document document) {
-		CorpusEvent event = new CorpusEvent(this, document, index, CorpusEvent.DOCUMENT_ADDED);
-		for (CorpusListener listener : corpusListeners) {
-			listener.documentAdded(event);
-		}
+		fireDocumentsAdded(index, Collections.singletonList(document));
 	}
 
 	protected void fireDocumentRemoved(int index, Document document) {
-		CorpusEvent event = new CorpusEvent(this, document, index, CorpusEvent.DOCUMENT_REMOVED);
+		fireDocumentsRemoved(index, Collections.singletonList(document));
+	}
+
+	/**
+	 * fires one event for {@link RangeCorpusListener}s and an event per document
+	 * for other listeners
+	 * 
+	 * @param documents added from the index (null for documents not loaded)
+	 */
+	protected void fireDocumentsAdded(int fromIndex, List<Document> documents) {
+		fireRangeEvent(new CorpusRangeEvent(this, fromIndex, fromIndex + documents.size(), documents,
+				CorpusEvent.DOCUMENT_ADDED));
+	}
+
+	/**
+	 * fires one event for {@link RangeCorpusListener}s and an event per document
+	 * for other listeners
+	 * 
+	 * @param documents removed from the index (null for documents not loaded)
+	 */
+	protected void fireDocumentsRemoved(int fromIndex, List<Document> documents) {
+		fireRangeEvent(new CorpusRangeEvent(this, fromIndex, fromIndex + documents.size(), documents,
+				CorpusEvent.DOCUMENT_REMOVED));
+	}
+
+	private void fireRangeEvent(CorpusRangeEvent event) {
+		boolean added = event.getType() == CorpusEvent.DOCUMENT_ADDED;
+		List<CorpusEvent> documentEvents = null;
 		for (CorpusListener listener : corpusListeners) {
-			listener.documentAdded(event);
+			if (listener instanceof RangeCorpusListener) {
+				if (added) {
+					((RangeCorpusListener) listener).documentsAdded(event);
+				} else {
+					((RangeCorpusListener) listener).documentsRemoved(event);
+				}
+			} else {
+				if (documentEvents == null) {
+					documentEvents = event.toDocumentEvents();
+				}
+				for (CorpusEvent documentEvent : documentEvents) {
+					if (added) {
+						listener.documentAdded(documentEvent);
+					} else {
+						listener.documentRemoved(documentEvent);
+					}
+				}
+			}
 		}
 	}
 
+	/**
+	 * @return a list view of the documents of an index range in a map (null for
+	 *         missing indexes)
+	 */
+	private static List<Document> indexMapRange(Map<Integer, Document> map, int fromIndex, int toIndex) {
+		return new AbstractList<Document>() {
+			@Override
+			public Document get(int index) {
+				return map.get(fromIndex + index);
+			}
+
+			@Override
+			public int size() {
+				return toIndex - fromIndex;
+			}
+		};
+	}
+
 	@Override
 	public void populate(URL directory, FileFilter filter, String encoding, boolean recurseDirectories) {
 		throw new gate.util.MethodNotImplementedException(notImplementedMessage("populate(URL, FileFilter, boolean)"));
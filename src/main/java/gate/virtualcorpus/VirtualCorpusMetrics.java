@@ -0,0 +1,315 @@
+package gate.virtualcorpus;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Counters and latency histograms of a {@link VirtualCorpus}, registered as
+ * MBean while the corpus is loaded. Recording is lock free (LongAdder and
+ * atomic histogram buckets), so concurrent loads do not contend on metrics.
+ */
+class VirtualCorpusMetrics implements VirtualCorpusMetricsMBean {
+	private static Logger logger = Logger.getLogger(VirtualCorpusMetrics.class);
+
+	static final String DOMAIN = "gate.virtualcorpus";
+	private static final AtomicInteger nextId = new AtomicInteger();
+
+	private final VirtualCorpus corpus;
+
+	final Latency loadDocument = new Latency();
+	final Latency loadDocumentName = new Latency();
+	final Latency setDocument = new Latency();
+	final Latency loadSize = new Latency();
+	final LongAdder nameCacheHits = new LongAdder();
+	final LongAdder nameCacheMisses = new LongAdder();
+	final LongAdder bytesRead = new LongAdder();
+	final LongAdder bytesWritten = new LongAdder();
+	final LongAdder memoryPressureUnloads = new LongAdder();
+	final LongAdder memoryPressureUnloadedDocuments = new LongAdder();
+	final LongAdder memoryPressureUnloadedWeight = new LongAdder();
+
+	private ObjectName objectName;
+
+	VirtualCorpusMetrics(VirtualCorpus corpus) {
+		this.corpus = corpus;
+	}
+
+	/**
+	 * counts calls of a backend method by latency
+	 */
+	static final class Latency {
+		private static final int BUCKETS = 32;
+
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+		private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+		<T> T time(Callable<T> call) throws Exception {
+			return time(1, call);
+		}
+
+		/**
+		 * @param count of documents handled by the call, each is recorded with the
+		 *              average latency
+		 */
+		<T> T time(int count, Callable<T> call) throws Exception {
+			long start = System.nanoTime();
+			try {
+				return call.call();
+			} finally {
+				record(count, System.nanoTime() - start);
+			}
+		}
+
+		void record(int count, long nanos) {
+			if (count <= 0) {
+				return;
+			}
+			long averageNanos = nanos / count;
+			this.count.add(count);
+			totalNanos.add(nanos);
+			maxNanos.accumulate(averageNanos);
+			histogram.addAndGet(bucket(averageNanos), count);
+		}
+
+		private static int bucket(long nanos) {
+			long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+			if (micros <= 1) {
+				return 0;
+			}
+			return Math.min(63 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+		}
+
+		long count() {
+			return count.sum();
+		}
+
+		double meanMillis() {
+			long count = this.count.sum();
+			return count > 0 ? totalNanos.sum() / 1e6 / count : 0;
+		}
+
+		double maxMillis() {
+			return maxNanos.get() / 1e6;
+		}
+
+		long[] histogram() {
+			long[] buckets = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++) {
+				buckets[i] = histogram.get(i);
+			}
+			return buckets;
+		}
+
+		void reset() {
+			count.reset();
+			totalNanos.reset();
+			maxNanos.reset();
+			for (int i = 0; i < BUCKETS; i++) {
+				histogram.set(i, 0);
+			}
+		}
+	}
+
+	/**
+	 * registers the metrics at the platform MBean server, failures are logged
+	 * only (metrics must never prevent loading a corpus)
+	 */
+	synchronized void register() {
+		if (objectName != null) {
+			return;
+		}
+		try {
+			ObjectName name = new ObjectName(DOMAIN + ":type=" + corpus.getClass().getSimpleName() + ",name="
+					+ ObjectName.quote(String.valueOf(corpus.getName())) + ",id=" + nextId.incrementAndGet());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			objectName = name;
+		} catch (JMException | RuntimeException e) {
+			logger.warn("cannot register metrics of corpus " + corpus.getName(), e);
+		}
+	}
+
+	synchronized void unregister() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (JMException | RuntimeException e) {
+			logger.warn("cannot unregister metrics of corpus " + corpus.getName(), e);
+		}
+		objectName = null;
+	}
+
+	synchronized ObjectName getObjectName() {
+		return objectName;
+	}
+
+	@Override
+	public long getLoadDocumentCount() {
+		return loadDocument.count();
+	}
+
+	@Override
+	public double getLoadDocumentMeanMillis() {
+		return loadDocument.meanMillis();
+	}
+
+	@Override
+	public double getLoadDocumentMaxMillis() {
+		return loadDocument.maxMillis();
+	}
+
+	@Override
+	public long[] getLoadDocumentLatencyHistogram() {
+		return loadDocument.histogram();
+	}
+
+	@Override
+	public long getLoadDocumentNameCount() {
+		return loadDocumentName.count();
+	}
+
+	@Override
+	public double getLoadDocumentNameMeanMillis() {
+		return loadDocumentName.meanMillis();
+	}
+
+	@Override
+	public double getLoadDocumentNameMaxMillis() {
+		return loadDocumentName.maxMillis();
+	}
+
+	@Override
+	public long[] getLoadDocumentNameLatencyHistogram() {
+		return loadDocumentName.histogram();
+	}
+
+	@Override
+	public long getSetDocumentCount() {
+		return setDocument.count();
+	}
+
+	@Override
+	public double getSetDocumentMeanMillis() {
+		return setDocument.meanMillis();
+	}
+
+	@Override
+	public double getSetDocumentMaxMillis() {
+		return setDocument.maxMillis();
+	}
+
+	@Override
+	public long[] getSetDocumentLatencyHistogram() {
+		return setDocument.histogram();
+	}
+
+	@Override
+	public long getLoadSizeCount() {
+		return loadSize.count();
+	}
+
+	@Override
+	public double getLoadSizeMeanMillis() {
+		return loadSize.meanMillis();
+	}
+
+	@Override
+	public double getLoadSizeMaxMillis() {
+		return loadSize.maxMillis();
+	}
+
+	@Override
+	public long[] getLoadSizeLatencyHistogram() {
+		return loadSize.histogram();
+	}
+
+	@Override
+	public long getNameCacheHits() {
+		return nameCacheHits.sum();
+	}
+
+	@Override
+	public long getNameCacheMisses() {
+		return nameCacheMisses.sum();
+	}
+
+	@Override
+	public double getNameCacheHitRate() {
+		long hits = nameCacheHits.sum();
+		long requests = hits + nameCacheMisses.sum();
+		return requests > 0 ? (double) hits / requests : 0;
+	}
+
+	@Override
+	public int getLoadedDocuments() {
+		return corpus.loadedDocumentCount();
+	}
+
+	@Override
+	public int getObservedDocuments() {
+		return corpus.observedDocumentCount();
+	}
+
+	@Override
+	public int getLeasedDocuments() {
+		return corpus.leasedDocumentCount();
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten.sum();
+	}
+
+	@Override
+	public long getMemoryPressureUnloads() {
+		return memoryPressureUnloads.sum();
+	}
+
+	@Override
+	public long getMemoryPressureUnloadedDocuments() {
+		return memoryPressureUnloadedDocuments.sum();
+	}
+
+	@Override
+	public long getMemoryPressureUnloadedWeight() {
+		return memoryPressureUnloadedWeight.sum();
+	}
+
+	@Override
+	public void reset() {
+		loadDocument.reset();
+		loadDocumentName.reset();
+		setDocument.reset();
+		loadSize.reset();
+		nameCacheHits.reset();
+		nameCacheMisses.reset();
+		bytesRead.reset();
+		bytesWritten.reset();
+		memoryPressureUnloads.reset();
+		memoryPressureUnloadedDocuments.reset();
+		memoryPressureUnloadedWeight.reset();
+	}
+
+}
@@ -0,0 +1,103 @@
+package gate.virtualcorpus;
+
+/**
+ * JMX interface of the metrics registered for each {@link VirtualCorpus} as
+ * <code>gate.virtualcorpus:type=&lt;class&gt;,name=&lt;corpus name&gt;,id=&lt;n&gt;</code>.
+ *
+ * Latencies are measured around the backend calls only (without waiting for
+ * locks), so slow backends can be told apart from slow pipelines. Histograms
+ * count calls by latency, element i counts latencies from 2^i to 2^(i+1)
+ * microseconds (element 0 below 2 microseconds).
+ */
+public interface VirtualCorpusMetricsMBean {
+
+	long getLoadDocumentCount();
+
+	double getLoadDocumentMeanMillis();
+
+	double getLoadDocumentMaxMillis();
+
+	long[] getLoadDocumentLatencyHistogram();
+
+	/**
+	 * @return count of calls loading document names (a call may load a range of
+	 *         names)
+	 */
+	long getLoadDocumentNameCount();
+
+	double getLoadDocumentNameMeanMillis();
+
+	double getLoadDocumentNameMaxMillis();
+
+	long[] getLoadDocumentNameLatencyHistogram();
+
+	/**
+	 * @return count of saved documents (a batch counts each document)
+	 */
+	long getSetDocumentCount();
+
+	double getSetDocumentMeanMillis();
+
+	double getSetDocumentMaxMillis();
+
+	long[] getSetDocumentLatencyHistogram();
+
+	long getLoadSizeCount();
+
+	double getLoadSizeMeanMillis();
+
+	double getLoadSizeMaxMillis();
+
+	long[] getLoadSizeLatencyHistogram();
+
+	long getNameCacheHits();
+
+	long getNameCacheMisses();
+
+	/**
+	 * @return hits divided by requests of the document name cache, 0 without
+	 *         requests
+	 */
+	double getNameCacheHitRate();
+
+	int getLoadedDocuments();
+
+	/**
+	 * @return count of documents observed for changes
+	 */
+	int getObservedDocuments();
+
+	/**
+	 * @return count of documents pinned by open leases
+	 */
+	int getLeasedDocuments();
+
+	/**
+	 * @return bytes read from the backend (characters for text values)
+	 */
+	long getBytesRead();
+
+	/**
+	 * @return bytes written to the backend
+	 */
+	long getBytesWritten();
+
+	/**
+	 * @return count of heap threshold notifications, which unloaded documents
+	 */
+	long getMemoryPressureUnloads();
+
+	long getMemoryPressureUnloadedDocuments();
+
+	/**
+	 * @return estimated weight in bytes of the documents unloaded on memory
+	 *         pressure
+	 */
+	long getMemoryPressureUnloadedWeight();
+
+	/**
+	 * resets all counters and histograms
+	 */
+	void reset();
+
+}
@@ -0,0 +1,166 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.Gate;
+import gate.Utils;
+import gate.corpora.DocumentContentImpl;
+import gate.creole.Plugin;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.JdbcCorpus;
+import gate.virtualcorpus.MapDbCorpus;
+
+/**
+ * changed documents still loaded when a JDBC corpus is closed are saved by
+ * one batch update, into the rows of their backend indexes, MapDB corpora save
+ * the documents with changed content by one batch and the others as deltas
+ */
+public class BatchSaveTest extends GATEPluginTests {
+	private static final int SIZE = 9;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Plugin plugin;
+
+	private FeatureMap table;
+
+	@BeforeClass
+	public static void registerCorpus() throws Exception {
+		plugin = new Plugin.Component(CountingMapDbCorpus.class);
+		Gate.getCreoleRegister().registerPlugin(plugin);
+	}
+
+	/**
+	 * component plugins are equal in GATE 8.6, a registered one hides the
+	 * components of other tests
+	 */
+	@AfterClass
+	public static void unregisterCorpus() {
+		Gate.getCreoleRegister().unregisterPlugin(plugin);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		table = CorpusFixtures.createH2Table(new File(folder.getRoot(), "h2"), SIZE);
+	}
+
+	private List<String> contents() throws Exception {
+		List<String> contents = new ArrayList<>();
+		try (Connection connection = DriverManager.getConnection((String) table.get("jdbcUrl"));
+				Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery("SELECT CONTENT FROM DOCUMENTS ORDER BY ID")) {
+			while (resultSet.next()) {
+				contents.add(new String(resultSet.getBytes(1), StandardCharsets.UTF_8));
+			}
+		}
+		return contents;
+	}
+
+	private static void prepend(Document document, String text) throws Exception {
+		document.edit(0L, 0L, new DocumentContentImpl(text));
+	}
+
+	@Test
+	public void testChangedDocumentsSavedOnClose() throws Exception {
+		JdbcCorpus corpus = CorpusFixtures.openJdbcCorpus(table, Utils.featureMap("readonlyDocuments", false));
+		try {
+			prepend(corpus.get(1), "changed ");
+			prepend(corpus.get(5), "changed ");
+			prepend(corpus.get(3), "changed ");
+			corpus.get(2);
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+
+		List<String> contents = contents();
+		for (int i = 0; i < SIZE; i++) {
+			String expected = CorpusFixtures.documentContent(i);
+			if (i == 1 || i == 3 || i == 5) {
+				expected = "changed " + expected;
+			}
+			assertEquals(expected, contents.get(i));
+		}
+	}
+
+	@Test
+	public void testShardSavedToBackendIndexes() throws Exception {
+		JdbcCorpus corpus = CorpusFixtures.openJdbcCorpus(table, Utils.featureMap("readonlyDocuments", false,
+				"shardCount", 3, "shardIndex", 1, "shardStrided", true));
+		try {
+			for (int i = 0; i < corpus.size(); i++) {
+				prepend(corpus.get(i), "shard ");
+			}
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+
+		List<String> contents = contents();
+		for (int i = 0; i < SIZE; i++) {
+			String expected = CorpusFixtures.documentContent(i);
+			if (i % 3 == 1) {
+				expected = "shard " + expected;
+			}
+			assertEquals(expected, contents.get(i));
+		}
+	}
+
+	@Test
+	public void testMapDbBatchWithDeltas() throws Exception {
+		File file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+		CountingMapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(CountingMapDbCorpus.class, file,
+				Utils.featureMap());
+		try {
+			prepend(corpus.get(1), "changed ");
+			prepend(corpus.get(5), "changed ");
+			corpus.get(2).getFeatures().put("changed", true);
+			corpus.get(3).getAnnotations("Changed").add(0L, 7L, "Token", Factory.newFeatureMap());
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+		assertEquals(1, corpus.setDocumentsCalls.get());
+		assertEquals(0, corpus.setDocumentCalls.get());
+
+		MapDbCorpus reopened = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap());
+		try {
+			for (int i = 0; i < SIZE; i++) {
+				Document document = reopened.get(i);
+				String expected = CorpusFixtures.documentContent(i);
+				if (i == 1 || i == 5) {
+					expected = "changed " + expected;
+				}
+				assertEquals(expected, document.getContent().toString());
+				assertEquals(i == 2 ? true : null, document.getFeatures().get("changed"));
+				if (i == 3) {
+					assertEquals(1, document.getAnnotations("Changed").size());
+				} else {
+					assertNull(document.getNamedAnnotationSets().get("Changed"));
+				}
+			}
+		} finally {
+			Factory.deleteResource(reopened);
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package at.ofai.gate.virtualcorpus;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import gate.Document;
+import gate.creole.metadata.CreoleResource;
+import gate.virtualcorpus.DocumentChanges;
+import gate.virtualcorpus.MapDbCorpus;
+
+/**
+ * MapDB corpus, whose saves wait until they are unblocked, to test which
+ * operations wait for saving documents
+ */
+@CreoleResource(name = "BlockingMapDbCorpus", interfaceName = "gate.Corpus", comment = "MapDB corpus blocking saves for tests")
+public class BlockingMapDbCorpus extends MapDbCorpus {
+	private static final long serialVersionUID = 1L;
+
+	transient volatile CountDownLatch saving = new CountDownLatch(1);
+	transient volatile CountDownLatch unblocked = new CountDownLatch(0);
+
+	/**
+	 * blocks the next saves until {@link #unblock()}
+	 */
+	void block() {
+		saving = new CountDownLatch(1);
+		unblocked = new CountDownLatch(1);
+	}
+
+	void unblock() {
+		unblocked.countDown();
+	}
+
+	boolean awaitSaving() throws InterruptedException {
+		return saving.await(10, TimeUnit.SECONDS);
+	}
+
+	@Override
+	protected void setDocumentChanges(int index, Document document, DocumentChanges changes) throws Exception {
+		saving.countDown();
+		unblocked.await(10, TimeUnit.SECONDS);
+		super.setDocumentChanges(index, document, changes);
+	}
+
+}
@@ -0,0 +1,97 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.Utils;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.ChangeTracking;
+import gate.virtualcorpus.MapDbCorpus;
+
+/**
+ * documents still loaded when the corpus is closed are saved if their change
+ * tracking detected changes
+ */
+public class ChangeTrackingTest extends GATEPluginTests {
+	private static final int SIZE = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+	}
+
+	/**
+	 * changes a feature of document 0 and an annotation of document 1, then
+	 * closes the corpus with both documents loaded
+	 */
+	private void changeDocuments(ChangeTracking changeTracking) throws Exception {
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file,
+				Utils.featureMap("changeTracking", changeTracking));
+		try {
+			corpus.get(0).getFeatures().put("changed", true);
+			Utils.addAnn(corpus.get(1).getAnnotations(), 0, 7, "Token", Utils.featureMap());
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	private Document[] reopenDocuments() throws Exception {
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap());
+		try {
+			Document[] documents = new Document[2];
+			for (int i = 0; i < documents.length; i++) {
+				documents[i] = corpus.get(i);
+				documents[i].getAnnotations().size();
+			}
+			return documents;
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	private void assertChangesSaved(ChangeTracking changeTracking) throws Exception {
+		changeDocuments(changeTracking);
+		Document[] documents = reopenDocuments();
+		assertEquals(true, documents[0].getFeatures().get("changed"));
+		assertEquals(1, documents[1].getAnnotations().get("Token").size());
+	}
+
+	@Test
+	public void testAnnotationsChangesSavedOnClose() throws Exception {
+		assertChangesSaved(ChangeTracking.ANNOTATIONS);
+	}
+
+	@Test
+	public void testAnnotationSetsChangesSavedOnClose() throws Exception {
+		assertChangesSaved(ChangeTracking.ANNOTATION_SETS);
+	}
+
+	@Test
+	public void testFingerprintChangesSavedOnClose() throws Exception {
+		assertChangesSaved(ChangeTracking.FINGERPRINT);
+	}
+
+	@Test
+	public void testUntrackedChangesNotSaved() throws Exception {
+		changeDocuments(ChangeTracking.NONE);
+		Document[] documents = reopenDocuments();
+		assertNull(documents[0].getFeatures().get("changed"));
+		assertEquals(0, documents[1].getAnnotations().size());
+	}
+
+}
@@ -0,0 +1,148 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.Gate;
+import gate.Utils;
+import gate.creole.Plugin;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.MapDbCorpus;
+
+/**
+ * documents are saved without holding the state lock of the corpus, threads
+ * only wait for saves of the documents they load
+ */
+public class ConcurrencyTest extends GATEPluginTests {
+	private static final int SIZE = 40;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Plugin plugin;
+
+	private File file;
+	private ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@BeforeClass
+	public static void registerCorpus() throws Exception {
+		plugin = new Plugin.Component(BlockingMapDbCorpus.class);
+		Gate.getCreoleRegister().registerPlugin(plugin);
+	}
+
+	/**
+	 * component plugins are equal in GATE 8.6, a registered one hides the
+	 * components of other tests
+	 */
+	@AfterClass
+	public static void unregisterCorpus() {
+		Gate.getCreoleRegister().unregisterPlugin(plugin);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testSaveDoesNotBlockCorpus() throws Exception {
+		BlockingMapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(BlockingMapDbCorpus.class, file,
+				Utils.featureMap("concurrent", true));
+		try {
+			Document document = corpus.get(0);
+			document.getFeatures().put("saved", true);
+			Document otherDocument = corpus.get(1);
+			corpus.block();
+			Future<?> release = executor.submit(() -> corpus.releaseDocument(document));
+			assertTrue(corpus.awaitSaving());
+
+			// loaded documents are returned while the document is saved (the backend
+			// is locked only for loading other documents)
+			assertTrue(otherDocument == executor.submit(() -> corpus.get(1)).get(5, TimeUnit.SECONDS));
+			assertEquals(SIZE, (int) executor.submit(() -> corpus.size()).get(5, TimeUnit.SECONDS));
+			assertFalse(executor.submit(() -> corpus.isDocumentLoaded(0)).get(5, TimeUnit.SECONDS));
+
+			// the saved document is loaded again after it is saved
+			Future<Document> reload = executor.submit(() -> corpus.get(0));
+			try {
+				reload.get(200, TimeUnit.MILLISECONDS);
+				throw new AssertionError("document loaded while it is saved");
+			} catch (TimeoutException e) {
+				// expected
+			}
+			corpus.unblock();
+			release.get(5, TimeUnit.SECONDS);
+			assertEquals(true, reload.get(5, TimeUnit.SECONDS).getFeatures().get("saved"));
+		} finally {
+			corpus.unblock();
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testConcurrentChangesSaved() throws Exception {
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file,
+				Utils.featureMap("concurrent", true, "cacheDocuments", 4));
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int thread = 0; thread < 4; thread++) {
+				int firstIndex = thread;
+				futures.add(executor.submit(() -> {
+					for (int round = 0; round < 3; round++) {
+						for (int i = firstIndex; i < SIZE; i += 4) {
+							Document document = corpus.get(i);
+							Integer count = (Integer) document.getFeatures().getOrDefault("count", 0);
+							document.getFeatures().put("count", count + 1);
+							if (i % 8 < 4) {
+								corpus.releaseDocument(document);
+							}
+							// reads of documents of other threads
+							corpus.get((i + 1) % SIZE).getName();
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+
+		MapDbCorpus reopened = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap());
+		try {
+			for (int i = 0; i < SIZE; i++) {
+				assertEquals("changes of document " + i, 3, reopened.get(i).getFeatures().get("count"));
+			}
+		} finally {
+			Factory.deleteResource(reopened);
+		}
+	}
+
+}
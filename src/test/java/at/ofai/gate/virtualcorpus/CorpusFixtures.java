@@ -0,0 +1,130 @@
+package at.ofai.gate.virtualcorpus;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.Utils;
+import gate.creole.ResourceInstantiationException;
+import gate.virtualcorpus.JdbcCorpus;
+import gate.virtualcorpus.MapDbCorpus;
+import gate.virtualcorpus.VirtualCorpus;
+import gate.virtualcorpus.VirtualCorpusMetricsMBean;
+
+/**
+ * creates MapDB corpora with generated documents for the tests
+ */
+final class CorpusFixtures {
+
+	private CorpusFixtures() {
+	}
+
+	static String documentName(int index) {
+		return "document" + index;
+	}
+
+	static String documentContent(int index) {
+		return "content of document " + index;
+	}
+
+	/**
+	 * creates a MapDB file with documents named document0, document1, ...
+	 */
+	static void createMapDbFile(File file, int size) throws ResourceInstantiationException {
+		MapDbCorpus corpus = openMapDbCorpus(file, Utils.featureMap("immutableCorpus", false));
+		try {
+			for (int i = 0; i < size; i++) {
+				Document document = Factory.newDocument(documentContent(i));
+				document.setName(documentName(i));
+				corpus.add(document);
+				Factory.deleteResource(document);
+			}
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	/**
+	 * opens a writable MapDB corpus, the parameters override the defaults
+	 */
+	static MapDbCorpus openMapDbCorpus(File file, FeatureMap parameters) throws ResourceInstantiationException {
+		return openMapDbCorpus(MapDbCorpus.class, file, parameters);
+	}
+
+	static <T extends MapDbCorpus> T openMapDbCorpus(Class<T> corpusClass, File file, FeatureMap parameters)
+			throws ResourceInstantiationException {
+		FeatureMap corpusParameters = Utils.featureMap("readonlyDocuments", false);
+		try {
+			corpusParameters.put("mapDbFile", file.toURI().toURL());
+		} catch (MalformedURLException e) {
+			throw new ResourceInstantiationException(e);
+		}
+		corpusParameters.putAll(parameters);
+		return corpusClass.cast(Factory.createResource(corpusClass.getName(), corpusParameters));
+	}
+
+	/**
+	 * creates an H2 table DOCUMENTS with UTF-8 encoded documents named
+	 * document0, document1, ... (upper case identifiers, since H2 reports
+	 * unquoted identifiers in upper case)
+	 *
+	 * @return the parameters of a JDBC corpus on the table
+	 */
+	static FeatureMap createH2Table(File file, int size) throws SQLException {
+		String url = "jdbc:h2:" + file.getAbsolutePath();
+		try (Connection connection = DriverManager.getConnection(url)) {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("CREATE TABLE DOCUMENTS (ID INTEGER PRIMARY KEY, NAME VARCHAR(255), CONTENT VARBINARY)");
+			}
+			try (PreparedStatement statement = connection
+					.prepareStatement("INSERT INTO DOCUMENTS (ID, NAME, CONTENT) VALUES (?, ?, ?)")) {
+				for (int i = 0; i < size; i++) {
+					statement.setInt(1, i);
+					statement.setString(2, documentName(i));
+					statement.setBytes(3, documentContent(i).getBytes(StandardCharsets.UTF_8));
+					statement.executeUpdate();
+				}
+			}
+		}
+		return Utils.featureMap("jdbcDriver", "org.h2.Driver", "jdbcUrl", url, "tableName", "DOCUMENTS",
+				"idColumn", "ID", "nameColumns", "NAME", "contentColumns", "CONTENT", "encoding", "UTF-8",
+				"mimeType", "text/plain");
+	}
+
+	static JdbcCorpus openJdbcCorpus(FeatureMap tableParameters, FeatureMap parameters)
+			throws ResourceInstantiationException {
+		FeatureMap corpusParameters = Factory.newFeatureMap();
+		corpusParameters.putAll(tableParameters);
+		corpusParameters.putAll(parameters);
+		return (JdbcCorpus) Factory.createResource(JdbcCorpus.class.getName(), corpusParameters);
+	}
+
+	/**
+	 * @return the JMX metrics registered for the corpus
+	 */
+	static VirtualCorpusMetricsMBean metrics(VirtualCorpus corpus) throws MalformedObjectNameException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		Set<ObjectName> names = server.queryNames(new ObjectName("gate.virtualcorpus:type="
+				+ corpus.getClass().getSimpleName() + ",name=" + ObjectName.quote(corpus.getName()) + ",*"), null);
+		if (names.size() != 1) {
+			throw new IllegalStateException("metrics of corpus " + corpus.getName() + " not registered: " + names);
+		}
+		return JMX.newMBeanProxy(server, names.iterator().next(), VirtualCorpusMetricsMBean.class);
+	}
+
+}
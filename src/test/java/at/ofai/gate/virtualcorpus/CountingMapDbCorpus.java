@@ -0,0 +1,40 @@
+package at.ofai.gate.virtualcorpus;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gate.Document;
+import gate.creole.metadata.CreoleResource;
+import gate.virtualcorpus.MapDbCorpus;
+
+/**
+ * MapDB corpus counting the documents loaded from the backend and the calls
+ * saving documents, to test which operations load or save documents
+ */
+@CreoleResource(name = "CountingMapDbCorpus", interfaceName = "gate.Corpus", comment = "MapDB corpus counting loads and saves for tests")
+public class CountingMapDbCorpus extends MapDbCorpus {
+	private static final long serialVersionUID = 1L;
+
+	final transient AtomicInteger loadedDocuments = new AtomicInteger();
+	final transient AtomicInteger setDocumentCalls = new AtomicInteger();
+	final transient AtomicInteger setDocumentsCalls = new AtomicInteger();
+
+	@Override
+	protected Document loadDocument(int index) throws Exception {
+		loadedDocuments.incrementAndGet();
+		return super.loadDocument(index);
+	}
+
+	@Override
+	protected void setDocument(int index, Document document) throws Exception {
+		setDocumentCalls.incrementAndGet();
+		super.setDocument(index, document);
+	}
+
+	@Override
+	protected void setDocuments(Map<Integer, Document> documents) throws Exception {
+		setDocumentsCalls.incrementAndGet();
+		super.setDocuments(documents);
+	}
+
+}
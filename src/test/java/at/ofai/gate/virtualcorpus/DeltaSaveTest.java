@@ -0,0 +1,161 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+
+import gate.AnnotationSet;
+import gate.Document;
+import gate.Factory;
+import gate.Utils;
+import gate.corpora.DocumentContentImpl;
+import gate.creole.ResourceInstantiationException;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.MapDbCorpus;
+import gate.virtualcorpus.VirtualCorpusMetricsMBean;
+
+/**
+ * a MapDB corpus saves only changed features and annotation sets as delta of
+ * a document, deltas of later saves are merged, content changes and relations
+ * save the whole document, files of unknown format versions are refused
+ */
+public class DeltaSaveTest extends GATEPluginTests {
+	private static final int TOKENS = 200;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = new File(folder.getRoot(), "corpus.db");
+		// added as whole document, so no delta contains the tokens
+		Document document = Factory.newDocument(CorpusFixtures.documentContent(0));
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap("immutableCorpus", false));
+		try {
+			document.setName(CorpusFixtures.documentName(0));
+			AnnotationSet tokens = document.getAnnotations("Tokens");
+			for (int i = 0; i < TOKENS; i++) {
+				Utils.addAnn(tokens, 0, 7, "Token", Utils.featureMap("index", i));
+			}
+			Utils.addAnn(document.getAnnotations("Removed"), 0, 7, "Removed", Utils.featureMap());
+			Utils.addAnn(document.getAnnotations("Changed"), 0, 7, "First", Utils.featureMap());
+			corpus.add(document);
+		} finally {
+			Factory.deleteResource(corpus);
+			Factory.deleteResource(document);
+		}
+	}
+
+	private MapDbCorpus openCorpus() throws Exception {
+		return CorpusFixtures.openMapDbCorpus(file, Utils.featureMap());
+	}
+
+	/**
+	 * @return bytes written to save the document 0 after the change
+	 */
+	private long saveChange(DocumentChange change) throws Exception {
+		MapDbCorpus corpus = openCorpus();
+		try {
+			VirtualCorpusMetricsMBean metrics = CorpusFixtures.metrics(corpus);
+			Document document = corpus.get(0);
+			metrics.reset();
+			change.apply(document);
+			corpus.unloadDocument(document);
+			return metrics.getBytesWritten();
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	private interface DocumentChange {
+		void apply(Document document) throws Exception;
+	}
+
+	@Test
+	public void testDeltasMerged() throws Exception {
+		long featureBytes = saveChange(document -> document.getFeatures().put("feature", "value"));
+		saveChange(document -> document.removeAnnotationSet("Removed"));
+		long annotationSetBytes = saveChange(
+				document -> Utils.addAnn(document.getAnnotations("Changed"), 8, 10, "Second", Utils.featureMap()));
+
+		MapDbCorpus corpus = openCorpus();
+		try {
+			Document document = corpus.get(0);
+			assertEquals("value", document.getFeatures().get("feature"));
+			assertEquals(TOKENS, document.getAnnotations("Tokens").size());
+			assertFalse(document.getAnnotationSetNames().contains("Removed"));
+			assertEquals(2, document.getAnnotations("Changed").size());
+			assertEquals(1, document.getAnnotations("Changed").get("Second").size());
+			assertEquals(CorpusFixtures.documentContent(0), document.getContent().toString());
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+
+		long wholeBytes = saveChange(document -> document.edit(0L, 0L, new DocumentContentImpl("changed ")));
+		assertTrue(featureBytes > 0);
+		assertTrue(featureBytes * 10 < wholeBytes);
+		assertTrue(annotationSetBytes * 10 < wholeBytes);
+	}
+
+	@Test
+	public void testContentChangeSavesWholeDocument() throws Exception {
+		saveChange(document -> document.getFeatures().put("feature", "value"));
+		long wholeBytes = saveChange(document -> document.edit(0L, 0L, new DocumentContentImpl("changed ")));
+		assertTrue(saveChange(document -> document.getFeatures().put("other", "value")) * 10 < wholeBytes);
+
+		MapDbCorpus corpus = openCorpus();
+		try {
+			Document document = corpus.get(0);
+			assertEquals("changed " + CorpusFixtures.documentContent(0), document.getContent().toString());
+			assertEquals("value", document.getFeatures().get("feature"));
+			assertEquals("value", document.getFeatures().get("other"));
+			assertEquals(TOKENS, document.getAnnotations("Tokens").size());
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testRelationsSaveWholeDocument() throws Exception {
+		long featureBytes = saveChange(document -> document.getFeatures().put("feature", "value"));
+		long relationBytes = saveChange(document -> {
+			AnnotationSet annotationSet = document.getAnnotations("Changed");
+			int second = Utils.addAnn(annotationSet, 8, 10, "Second", Utils.featureMap());
+			int first = annotationSet.get("First").iterator().next().getId();
+			annotationSet.getRelations().addRelation("follows", second, first);
+		});
+		assertTrue(relationBytes > featureBytes * 10);
+
+		MapDbCorpus corpus = openCorpus();
+		try {
+			Document document = corpus.get(0);
+			assertEquals(1, document.getAnnotations("Changed").getRelations().size());
+			assertEquals("value", document.getFeatures().get("feature"));
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test(expected = ResourceInstantiationException.class)
+	public void testNewerFormatVersionRefused() throws Exception {
+		DB mapDb = DBMaker.fileDB(file).make();
+		try {
+			mapDb.atomicInteger("formatVersion").createOrOpen().set(Integer.MAX_VALUE);
+		} finally {
+			mapDb.close();
+		}
+		Factory.deleteResource(openCorpus());
+	}
+
+}
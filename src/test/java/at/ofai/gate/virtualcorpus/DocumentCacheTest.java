@@ -0,0 +1,113 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.Utils;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.MapDbCorpus;
+
+/**
+ * eviction of least recently used documents by cacheDocuments, documents in
+ * use are never evicted
+ */
+public class DocumentCacheTest extends GATEPluginTests {
+	private static final int SIZE = 10;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MapDbCorpus corpus;
+
+	@Before
+	public void setUp() throws Exception {
+		File file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+		corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap("cacheDocuments", 2));
+	}
+
+	@After
+	public void tearDown() {
+		Factory.deleteResource(corpus);
+	}
+
+	private int loadedDocumentCount() {
+		int count = 0;
+		for (int i = 0; i < corpus.size(); i++) {
+			if (corpus.isDocumentLoaded(i)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void testLeastRecentlyUsedDocumentsEvicted() {
+		for (int i = 0; i < SIZE; i++) {
+			corpus.get(i);
+		}
+		assertEquals(2, loadedDocumentCount());
+		assertTrue(corpus.isDocumentLoaded(SIZE - 1));
+		assertTrue(corpus.isDocumentLoaded(SIZE - 2));
+	}
+
+	@Test
+	public void testChangedDocumentSavedBeforeEviction() {
+		corpus.get(0).getFeatures().put("changed", true);
+		for (int i = 1; i < SIZE; i++) {
+			corpus.get(i);
+		}
+		assertFalse(corpus.isDocumentLoaded(0));
+		assertEquals(true, corpus.get(0).getFeatures().get("changed"));
+	}
+
+	@Test
+	public void testToArrayDocumentsNotEvicted() {
+		Object[] documents = corpus.toArray();
+		for (int i = 0; i < SIZE; i++) {
+			assertTrue(corpus.contains(documents[i]));
+			assertEquals(CorpusFixtures.documentContent(i), ((Document) documents[i]).getContent().toString());
+		}
+		corpus.get(0);
+		assertEquals(SIZE, loadedDocumentCount());
+		for (Object document : documents) {
+			corpus.releaseDocument((Document) document);
+		}
+		assertEquals(0, loadedDocumentCount());
+	}
+
+	@Test
+	public void testCurrentDocumentOfOtherThreadNotEvicted() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Document document = executor.submit(() -> corpus.get(0)).get();
+			for (int i = 1; i < SIZE; i++) {
+				corpus.get(i);
+			}
+			assertTrue(corpus.contains(document));
+			Future<Document> next = executor.submit(() -> corpus.get(1));
+			next.get();
+			for (int i = 2; i < SIZE; i++) {
+				corpus.get(i);
+			}
+			assertFalse(corpus.isDocumentLoaded(0));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
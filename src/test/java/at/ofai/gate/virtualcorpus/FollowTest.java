@@ -0,0 +1,142 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.Utils;
+import gate.creole.ResourceInstantiationException;
+import gate.event.CorpusEvent;
+import gate.event.CorpusListener;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.JdbcCorpus;
+
+/**
+ * a followed corpus grows with rows appended to its table, and its iterators
+ * wait at the end for new documents until the followTimeout elapses
+ */
+public class FollowTest extends GATEPluginTests {
+	private static final int SIZE = 5;
+	private static final int FOLLOW_INTERVAL = 10;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FeatureMap table;
+	private ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	@Before
+	public void setUp() throws Exception {
+		table = CorpusFixtures.createH2Table(new File(folder.getRoot(), "h2"), SIZE);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private void appendRows(int fromIndex, int toIndex) throws Exception {
+		try (Connection connection = DriverManager.getConnection((String) table.get("jdbcUrl"));
+				PreparedStatement statement = connection
+						.prepareStatement("INSERT INTO DOCUMENTS (ID, NAME, CONTENT) VALUES (?, ?, ?)")) {
+			for (int i = fromIndex; i < toIndex; i++) {
+				statement.setInt(1, i);
+				statement.setString(2, CorpusFixtures.documentName(i));
+				statement.setBytes(3, CorpusFixtures.documentContent(i).getBytes(StandardCharsets.UTF_8));
+				statement.executeUpdate();
+			}
+		}
+	}
+
+	@Test
+	public void testSizeGrows() throws Exception {
+		JdbcCorpus corpus = CorpusFixtures.openJdbcCorpus(table, Utils.featureMap("followInterval", FOLLOW_INTERVAL));
+		try {
+			List<Integer> addedIndexes = new ArrayList<>();
+			corpus.addCorpusListener(new CorpusListener() {
+				@Override
+				public void documentAdded(CorpusEvent e) {
+					addedIndexes.add(e.getDocumentIndex());
+				}
+
+				@Override
+				public void documentRemoved(CorpusEvent e) {
+				}
+			});
+			assertEquals(SIZE, corpus.size());
+			assertEquals(CorpusFixtures.documentName(SIZE - 1), corpus.get(SIZE - 1).getName());
+
+			appendRows(SIZE, SIZE + 3);
+			Thread.sleep(FOLLOW_INTERVAL * 2);
+			assertEquals(SIZE + 3, corpus.size());
+			assertEquals(IntStream.range(SIZE, SIZE + 3).boxed().collect(Collectors.toList()), addedIndexes);
+			for (int i = 0; i < SIZE + 3; i++) {
+				assertEquals(CorpusFixtures.documentName(i), corpus.getDocumentName(i));
+				assertEquals(CorpusFixtures.documentContent(i), corpus.get(i).getContent().toString());
+			}
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testIteratorWaitsForNewDocuments() throws Exception {
+		JdbcCorpus corpus = CorpusFixtures.openJdbcCorpus(table,
+				Utils.featureMap("followInterval", FOLLOW_INTERVAL, "followTimeout", 500));
+		try {
+			Iterator<Document> iterator = corpus.iterator();
+			for (int i = 0; i < SIZE; i++) {
+				corpus.unloadDocument(iterator.next());
+			}
+			Future<?> append = executor.submit(() -> {
+				Thread.sleep(100);
+				appendRows(SIZE, SIZE + 2);
+				return null;
+			});
+			for (int i = SIZE; i < SIZE + 2; i++) {
+				Document document = iterator.next();
+				assertEquals(CorpusFixtures.documentName(i), document.getName());
+				corpus.unloadDocument(document);
+			}
+			append.get(5, TimeUnit.SECONDS);
+			long start = System.nanoTime();
+			assertFalse(iterator.hasNext());
+			assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(500));
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test(expected = ResourceInstantiationException.class)
+	public void testMutableCorpusFails() throws Exception {
+		File file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+		Factory.deleteResource(CorpusFixtures.openMapDbCorpus(file,
+				Utils.featureMap("followInterval", FOLLOW_INTERVAL, "immutableCorpus", false)));
+	}
+
+}
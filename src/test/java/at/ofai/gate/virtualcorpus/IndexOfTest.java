@@ -0,0 +1,102 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.Utils;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.MapDbCorpus;
+
+/**
+ * indexOf, contains and unloadDocument find loaded documents by identity, also
+ * after inserts and removes shifted their indexes
+ */
+public class IndexOfTest extends GATEPluginTests {
+	private static final int SIZE = 10;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MapDbCorpus corpus;
+
+	@Before
+	public void setUp() throws Exception {
+		File file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+		corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap("immutableCorpus", false));
+	}
+
+	@After
+	public void tearDown() {
+		Factory.deleteResource(corpus);
+	}
+
+	@Test
+	public void testLoadedDocuments() throws Exception {
+		Document document = corpus.get(3);
+		assertEquals(3, corpus.indexOf(document));
+		assertEquals(3, corpus.lastIndexOf(document));
+		assertTrue(corpus.contains(document));
+		assertTrue(corpus.subList(2, 5).contains(document));
+		assertEquals(1, corpus.subList(2, 5).indexOf(document));
+
+		corpus.unloadDocument(document);
+		assertEquals(-1, corpus.indexOf(document));
+		assertFalse(corpus.contains(document));
+	}
+
+	@Test
+	public void testOtherObjects() throws Exception {
+		corpus.get(0);
+		Document document = Factory.newDocument(CorpusFixtures.documentContent(0));
+		document.setName(CorpusFixtures.documentName(0));
+		try {
+			assertEquals(-1, corpus.indexOf(document));
+			assertFalse(corpus.contains(document));
+			assertEquals(-1, corpus.indexOf(CorpusFixtures.documentName(0)));
+			assertFalse(corpus.contains(null));
+		} finally {
+			Factory.deleteResource(document);
+		}
+	}
+
+	@Test
+	public void testShiftedIndexes() throws Exception {
+		Document first = corpus.get(2);
+		Document second = corpus.get(6);
+
+		corpus.remove(4);
+		assertEquals(2, corpus.indexOf(first));
+		assertEquals(5, corpus.indexOf(second));
+
+		Document added = Factory.newDocument("added");
+		try {
+			corpus.add(0, added);
+		} finally {
+			Factory.deleteResource(added);
+		}
+		assertEquals(3, corpus.indexOf(first));
+		assertEquals(6, corpus.indexOf(second));
+		assertEquals(CorpusFixtures.documentName(6), corpus.get(6).getName());
+
+		corpus.unloadDocument(second);
+		assertFalse(corpus.isDocumentLoaded(6));
+		assertEquals(-1, corpus.indexOf(second));
+		assertEquals(3, corpus.indexOf(first));
+		Document reloaded = corpus.get(6);
+		assertEquals(CorpusFixtures.documentName(6), reloaded.getName());
+		assertEquals(6, corpus.indexOf(reloaded));
+	}
+
+}
@@ -0,0 +1,90 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Factory;
+import gate.FeatureMap;
+import gate.Utils;
+import gate.test.GATEPluginTests;
+import gate.util.GateRuntimeException;
+import gate.virtualcorpus.JdbcCorpus;
+
+/**
+ * document names of a JDBC corpus are loaded in ranges, sequentially and in
+ * random order, and missing rows fail instead of returning no name
+ */
+public class JdbcNamesTest extends GATEPluginTests {
+	private static final int SIZE = 2500;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FeatureMap table;
+
+	@Before
+	public void setUp() throws Exception {
+		table = CorpusFixtures.createH2Table(new File(folder.getRoot(), "h2"), SIZE);
+	}
+
+	@Test
+	public void testAllNamesInChunks() throws Exception {
+		JdbcCorpus corpus = CorpusFixtures.openJdbcCorpus(table, Utils.featureMap());
+		try {
+			List<String> documentNames = corpus.getDocumentNames();
+			assertEquals(SIZE, documentNames.size());
+			for (int i = 0; i < SIZE; i++) {
+				assertEquals(CorpusFixtures.documentName(i), documentNames.get(i));
+			}
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testNamesInRandomOrder() throws Exception {
+		JdbcCorpus corpus = CorpusFixtures.openJdbcCorpus(table, Utils.featureMap("cacheDocumentNames", 0));
+		try {
+			for (int i = SIZE - 1; i >= 0; i -= 7) {
+				assertEquals(CorpusFixtures.documentName(i), corpus.getDocumentName(i));
+			}
+			assertEquals(CorpusFixtures.documentName(1234), corpus.getDocumentName(1234));
+			assertEquals(CorpusFixtures.documentName(0), corpus.getDocumentName(0));
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testMissingRowsFail() throws Exception {
+		JdbcCorpus corpus = CorpusFixtures.openJdbcCorpus(table, Utils.featureMap("cacheDocumentNames", 0));
+		try {
+			assertEquals(SIZE, corpus.size());
+			try (Connection connection = DriverManager.getConnection((String) table.get("jdbcUrl"));
+					Statement statement = connection.createStatement()) {
+				statement.executeUpdate("DELETE FROM DOCUMENTS WHERE ID = " + (SIZE - 1));
+			}
+			try {
+				corpus.getDocumentName(SIZE - 1);
+				fail("name of a removed row loaded");
+			} catch (GateRuntimeException e) {
+				assertTrue(e.getCause().getMessage().contains("missing"));
+			}
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.Utils;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.JdbcCorpus;
+import gate.virtualcorpus.MapDbCorpus;
+import gate.virtualcorpus.VirtualCorpusMetricsMBean;
+
+/**
+ * document names are views loading names page by page when accessed, which
+ * copy their names before the corpus is modified (name iterators fail), arrays
+ * of documents keep their documents loaded regardless of the document cache
+ */
+public class LazyNamesTest extends GATEPluginTests {
+	private static final int SIZE = 2500;
+	private static final int PAGE_SIZE = 1000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testNamesLoadedByPage() throws Exception {
+		FeatureMap table = CorpusFixtures.createH2Table(new File(folder.getRoot(), "h2"), SIZE);
+		JdbcCorpus corpus = CorpusFixtures.openJdbcCorpus(table, Utils.featureMap("cacheDocumentNames", 0));
+		try {
+			VirtualCorpusMetricsMBean metrics = CorpusFixtures.metrics(corpus);
+			List<String> documentNames = corpus.getDocumentNames();
+			assertEquals(SIZE, documentNames.size());
+			assertEquals(0, metrics.getLoadDocumentNameCount());
+
+			assertEquals(CorpusFixtures.documentName(1500), documentNames.get(1500));
+			assertEquals(CorpusFixtures.documentName(1999), documentNames.get(1999));
+			assertEquals(1, metrics.getLoadDocumentNameCount());
+
+			metrics.reset();
+			Iterator<String> iterator = corpus.documentNameIterator();
+			for (int i = 0; i < SIZE; i++) {
+				assertEquals(CorpusFixtures.documentName(i), iterator.next());
+			}
+			assertEquals((SIZE + PAGE_SIZE - 1) / PAGE_SIZE, metrics.getLoadDocumentNameCount());
+
+			List<String> subListNames = corpus.subList(990, 1010).getDocumentNames();
+			assertEquals(20, subListNames.size());
+			for (int i = 0; i < subListNames.size(); i++) {
+				assertEquals(CorpusFixtures.documentName(990 + i), subListNames.get(i));
+			}
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testNamesKeptAfterModification() throws Exception {
+		File file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, 5);
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap("immutableCorpus", false));
+		try {
+			for (String documentName : corpus.getDocumentNames()) {
+				if (!documentName.equals(CorpusFixtures.documentName(2))) {
+					corpus.remove(corpus.indexOfName(documentName));
+				}
+			}
+			assertEquals(1, corpus.size());
+			assertEquals(CorpusFixtures.documentName(2), corpus.getDocumentName(0));
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void testIteratorFailsAfterModification() throws Exception {
+		File file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, 5);
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap("immutableCorpus", false));
+		try {
+			Iterator<String> iterator = corpus.documentNameIterator();
+			iterator.next();
+			corpus.remove(0);
+			iterator.next();
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testArrayKeepsDocumentsLoaded() throws Exception {
+		File file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, 5);
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap("cacheDocuments", 2));
+		try {
+			Document[] documents = corpus.toArray(new Document[0]);
+			assertEquals(5, documents.length);
+			corpus.get(4);
+			for (int i = 0; i < documents.length; i++) {
+				assertEquals(CorpusFixtures.documentName(i), documents[i].getName());
+				assertTrue(corpus.isDocumentLoaded(i));
+				assertEquals(i, corpus.indexOf(documents[i]));
+			}
+			Object[] objects = corpus.toArray();
+			for (int i = 0; i < objects.length; i++) {
+				assertSame(documents[i], objects[i]);
+			}
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+}
@@ -0,0 +1,108 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.Utils;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.DocumentLease;
+import gate.virtualcorpus.MapDbCorpus;
+import gate.virtualcorpus.VirtualCorpusMetricsMBean;
+
+/**
+ * leased documents stay loaded until their last lease is closed, which saves
+ * and unloads them, and are never evicted by the document cache
+ */
+public class LeaseTest extends GATEPluginTests {
+	private static final int SIZE = 5;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+	}
+
+	@Test
+	public void testClosingSavesAndUnloads() throws Exception {
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap());
+		try {
+			VirtualCorpusMetricsMBean metrics = CorpusFixtures.metrics(corpus);
+			try (DocumentLease lease = corpus.lease(2)) {
+				assertEquals(CorpusFixtures.documentName(2), lease.getDocument().getName());
+				assertEquals(1, metrics.getLeasedDocuments());
+				lease.getDocument().getFeatures().put("leased", true);
+			}
+			assertFalse(corpus.isDocumentLoaded(2));
+			assertEquals(0, metrics.getLeasedDocuments());
+			assertEquals(true, corpus.get(2).getFeatures().get("leased"));
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testLeasesCounted() throws Exception {
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap());
+		try {
+			DocumentLease first = corpus.lease(1);
+			DocumentLease second = corpus.lease(1);
+			assertSame(first.getDocument(), second.getDocument());
+			first.close();
+			first.close();
+			assertTrue(first.isClosed());
+			assertTrue(corpus.isDocumentLoaded(1));
+			second.close();
+			assertFalse(corpus.isDocumentLoaded(1));
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testClosedLeaseFails() throws Exception {
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap());
+		try {
+			DocumentLease lease = corpus.lease(0);
+			lease.close();
+			lease.getDocument();
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testLeasedDocumentsNotEvicted() throws Exception {
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap("cacheDocuments", 1));
+		try {
+			try (DocumentLease lease = corpus.lease(0)) {
+				for (int i = 1; i < SIZE; i++) {
+					corpus.get(i);
+				}
+				assertTrue(corpus.isDocumentLoaded(0));
+				assertTrue(corpus.isDocumentLoaded(SIZE - 1));
+				assertFalse(corpus.isDocumentLoaded(1));
+				assertSame(lease.getDocument(), corpus.get(0));
+			}
+			assertFalse(corpus.isDocumentLoaded(0));
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.Utils;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.MapDbCorpus;
+
+/**
+ * loadAsync and loadRange load asyncLoadBatchSize documents per task of the
+ * executor, the loaded documents belong to the corpus like documents
+ * returned by get
+ */
+public class LoadAsyncTest extends GATEPluginTests {
+	private static final int SIZE = 7;
+	private static final int BATCH_SIZE = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Queue<Runnable> tasks = new ArrayDeque<>();
+	private MapDbCorpus corpus;
+
+	@Before
+	public void setUp() throws Exception {
+		File file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+		corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap("asyncLoadBatchSize", BATCH_SIZE));
+		corpus.setAsyncLoadExecutor(tasks::add);
+	}
+
+	@After
+	public void tearDown() {
+		Factory.deleteResource(corpus);
+	}
+
+	private void runTasks() {
+		for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+			task.run();
+		}
+	}
+
+	@Test
+	public void testLoadRangeInBatches() throws Exception {
+		CompletableFuture<List<Document>> future = corpus.loadRange(0, SIZE);
+		assertEquals((SIZE + BATCH_SIZE - 1) / BATCH_SIZE, tasks.size());
+		assertFalse(future.isDone());
+		assertFalse(corpus.isDocumentLoaded(0));
+		runTasks();
+
+		List<Document> documents = future.get();
+		assertEquals(SIZE, documents.size());
+		assertEquals(SIZE, CorpusFixtures.metrics(corpus).getLoadDocumentCount());
+		for (int i = 0; i < SIZE; i++) {
+			assertEquals(CorpusFixtures.documentName(i), documents.get(i).getName());
+			assertEquals(CorpusFixtures.documentContent(i), documents.get(i).getContent().toString());
+			assertTrue(corpus.isDocumentLoaded(i));
+			assertSame(documents.get(i), corpus.get(i));
+		}
+		assertEquals(SIZE, CorpusFixtures.metrics(corpus).getLoadDocumentCount());
+	}
+
+	@Test
+	public void testLoadedDocumentsCompleteImmediately() throws Exception {
+		Document document = corpus.get(2);
+		List<CompletableFuture<Document>> futures = corpus.loadAsync(2, 4, 5);
+		assertTrue(futures.get(0).isDone());
+		assertSame(document, futures.get(0).get());
+		assertEquals(1, tasks.size());
+		runTasks();
+
+		assertSame(corpus.get(4), futures.get(1).get());
+		assertSame(corpus.get(5), futures.get(2).get());
+		assertEquals(3, CorpusFixtures.metrics(corpus).getLoadDocumentCount());
+	}
+
+	@Test
+	public void testDocumentsLoadingAreNotLoadedTwice() throws Exception {
+		List<CompletableFuture<Document>> first = corpus.loadAsync(0, 1);
+		List<CompletableFuture<Document>> second = corpus.loadAsync(1);
+		assertEquals(1, tasks.size());
+		runTasks();
+		runTasks();
+
+		assertSame(first.get(1).get(), second.get(0).get());
+		assertEquals(2, CorpusFixtures.metrics(corpus).getLoadDocumentCount());
+	}
+
+	@Test
+	public void testReleaseLoadedDocument() throws Exception {
+		CompletableFuture<Document> future = corpus.loadAsync(3).get(0);
+		runTasks();
+		corpus.releaseDocument(future.get());
+		assertFalse(corpus.isDocumentLoaded(3));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testLoadRangeOutOfBounds() throws Exception {
+		corpus.loadRange(2, SIZE + 1);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testLoadAsyncOutOfBounds() throws Exception {
+		corpus.loadAsync(0, SIZE);
+	}
+
+}
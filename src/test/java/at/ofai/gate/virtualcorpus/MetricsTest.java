@@ -0,0 +1,105 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.stream.LongStream;
+
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.Utils;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.MapDbCorpus;
+import gate.virtualcorpus.VirtualCorpusMetricsMBean;
+
+/**
+ * each loaded corpus registers an MBean counting backend calls, name cache
+ * requests, loaded documents and bytes, which is unregistered when the corpus
+ * is deleted
+ */
+public class MetricsTest extends GATEPluginTests {
+	private static final int SIZE = 10;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+	}
+
+	private static ObjectName corpusNames(MapDbCorpus corpus) throws Exception {
+		return new ObjectName(
+				"gate.virtualcorpus:type=MapDbCorpus,name=" + ObjectName.quote(corpus.getName()) + ",*");
+	}
+
+	@Test
+	public void testRegisteredWhileLoaded() throws Exception {
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap());
+		ObjectName names = corpusNames(corpus);
+		try {
+			assertEquals(1, ManagementFactory.getPlatformMBeanServer().queryNames(names, null).size());
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+		assertEquals(0, ManagementFactory.getPlatformMBeanServer().queryNames(names, null).size());
+	}
+
+	@Test
+	public void testCounters() throws Exception {
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap());
+		try {
+			VirtualCorpusMetricsMBean metrics = CorpusFixtures.metrics(corpus);
+			corpus.size();
+			metrics.reset();
+
+			Document first = corpus.get(0);
+			Document second = corpus.get(1);
+			corpus.get(0);
+			assertEquals(2, metrics.getLoadDocumentCount());
+			assertEquals(2, LongStream.of(metrics.getLoadDocumentLatencyHistogram()).sum());
+			assertTrue(metrics.getLoadDocumentMaxMillis() >= metrics.getLoadDocumentMeanMillis());
+			assertEquals(2, metrics.getLoadedDocuments());
+			assertEquals(2, metrics.getObservedDocuments());
+			assertTrue(metrics.getBytesRead() > 0);
+
+			first.getFeatures().put("changed", true);
+			corpus.unloadDocument(first);
+			corpus.unloadDocument(second);
+			assertEquals(1, metrics.getSetDocumentCount());
+			assertTrue(metrics.getBytesWritten() > 0);
+			assertEquals(0, metrics.getLoadedDocuments());
+			assertEquals(0, metrics.getObservedDocuments());
+
+			corpus.getDocumentName(5);
+			corpus.getDocumentName(5);
+			corpus.getDocumentName(6);
+			assertEquals(1, metrics.getLoadDocumentNameCount());
+			assertEquals(1, metrics.getNameCacheMisses());
+			assertEquals(2, metrics.getNameCacheHits());
+			assertEquals(2.0 / 3, metrics.getNameCacheHitRate(), 1e-9);
+
+			metrics.reset();
+			assertEquals(0, metrics.getLoadDocumentCount());
+			assertEquals(0, LongStream.of(metrics.getLoadDocumentLatencyHistogram()).sum());
+			assertEquals(0, metrics.getSetDocumentCount());
+			assertEquals(0, metrics.getBytesRead());
+			assertEquals(0.0, metrics.getNameCacheHitRate(), 0.0);
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+}
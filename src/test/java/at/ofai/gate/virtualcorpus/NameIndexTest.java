@@ -0,0 +1,100 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.Gate;
+import gate.Utils;
+import gate.corpora.DocumentContentImpl;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.MapDbCorpus;
+import gate.virtualcorpus.VirtualCorpusMetricsMBean;
+
+/**
+ * the persistent name index of a MapDB corpus is reused after documents were
+ * saved, and rebuilt after documents were renamed (by the creole register,
+ * like GATE Developer)
+ */
+public class NameIndexTest extends GATEPluginTests {
+	private static final int SIZE = 10;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+	private File nameIndexFile;
+
+	@Before
+	public void setUp() throws Exception {
+		file = new File(folder.getRoot(), "corpus.db");
+		nameIndexFile = new File(folder.getRoot(), "names.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+	}
+
+	private MapDbCorpus openCorpus() throws Exception {
+		return CorpusFixtures.openMapDbCorpus(file, Utils.featureMap("nameIndex", nameIndexFile.toURI().toURL()));
+	}
+
+	/**
+	 * @return count of backend calls loading names during the lookup
+	 */
+	private long lookupDocument(String documentName, int expectedIndex) throws Exception {
+		MapDbCorpus corpus = openCorpus();
+		try {
+			VirtualCorpusMetricsMBean metrics = CorpusFixtures.metrics(corpus);
+			metrics.reset();
+			assertEquals(expectedIndex, corpus.indexOfName(documentName));
+			return metrics.getLoadDocumentNameCount();
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testSavedDocumentsDoNotRebuildIndex() throws Exception {
+		lookupDocument(CorpusFixtures.documentName(3), 3);
+
+		MapDbCorpus corpus = openCorpus();
+		try {
+			// saved as delta
+			Document document = corpus.get(0);
+			document.getFeatures().put("changed", true);
+			corpus.releaseDocument(document);
+			// saved as whole document
+			document = corpus.get(1);
+			document.edit(0L, 0L, new DocumentContentImpl("changed "));
+			corpus.releaseDocument(document);
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+
+		assertEquals(0, lookupDocument(CorpusFixtures.documentName(3), 3));
+	}
+
+	@Test
+	public void testRenamedDocumentRebuildsIndex() throws Exception {
+		lookupDocument(CorpusFixtures.documentName(3), 3);
+
+		MapDbCorpus corpus = openCorpus();
+		try {
+			Document document = corpus.get(3);
+			Gate.getCreoleRegister().setResourceName(document, "renamed");
+			corpus.releaseDocument(document);
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+
+		assertTrue(lookupDocument("renamed", 3) > 0);
+		assertEquals(0, lookupDocument(CorpusFixtures.documentName(3), -1));
+	}
+
+}
@@ -0,0 +1,119 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.util.Iterator;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.Gate;
+import gate.Utils;
+import gate.creole.Plugin;
+import gate.test.GATEPluginTests;
+
+/**
+ * iterators load the next prefetchDepth documents in background, prefetched
+ * documents are neither loaded twice nor registered before they are returned,
+ * and are discarded when the corpus is modified
+ */
+public class PrefetchTest extends GATEPluginTests {
+	private static final int SIZE = 12;
+	private static final int DEPTH = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Plugin plugin;
+
+	private File file;
+
+	@BeforeClass
+	public static void registerCorpus() throws Exception {
+		plugin = new Plugin.Component(CountingMapDbCorpus.class);
+		Gate.getCreoleRegister().registerPlugin(plugin);
+	}
+
+	/**
+	 * component plugins are equal in GATE 8.6, a registered one hides the
+	 * components of other tests
+	 */
+	@AfterClass
+	public static void unregisterCorpus() {
+		Gate.getCreoleRegister().unregisterPlugin(plugin);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+	}
+
+	private static void awaitLoadedDocuments(CountingMapDbCorpus corpus, int count) throws Exception {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (corpus.loadedDocuments.get() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(count, corpus.loadedDocuments.get());
+	}
+
+	@Test
+	public void testIteratorPrefetchesNextDocuments() throws Exception {
+		CountingMapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(CountingMapDbCorpus.class, file,
+				Utils.featureMap("prefetchDepth", DEPTH));
+		try {
+			Iterator<Document> iterator = corpus.iterator();
+			Document document = iterator.next();
+			assertEquals(CorpusFixtures.documentName(0), document.getName());
+			awaitLoadedDocuments(corpus, 1 + DEPTH);
+			for (int i = 1; i <= DEPTH; i++) {
+				assertFalse(corpus.isDocumentLoaded(i));
+			}
+			corpus.unloadDocument(document);
+
+			for (int i = 1; i < SIZE; i++) {
+				document = iterator.next();
+				assertEquals(CorpusFixtures.documentName(i), document.getName());
+				assertEquals(CorpusFixtures.documentContent(i), document.getContent().toString());
+				corpus.unloadDocument(document);
+			}
+			assertFalse(iterator.hasNext());
+			assertEquals(SIZE, corpus.loadedDocuments.get());
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testModificationDiscardsPrefetchedDocuments() throws Exception {
+		CountingMapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(CountingMapDbCorpus.class, file,
+				Utils.featureMap("prefetchDepth", DEPTH, "immutableCorpus", false));
+		try {
+			Iterator<Document> iterator = corpus.iterator();
+			iterator.next();
+			awaitLoadedDocuments(corpus, 1 + DEPTH);
+
+			corpus.remove(1);
+			iterator = corpus.iterator();
+			assertEquals(CorpusFixtures.documentName(0), iterator.next().getName());
+			for (int i = 2; i < SIZE; i++) {
+				Document document = iterator.next();
+				assertEquals(CorpusFixtures.documentName(i), document.getName());
+				assertEquals(CorpusFixtures.documentContent(i), document.getContent().toString());
+				corpus.unloadDocument(document);
+			}
+			assertFalse(iterator.hasNext());
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+}
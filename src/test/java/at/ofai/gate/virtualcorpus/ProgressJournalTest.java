@@ -0,0 +1,179 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import gate.Factory;
+import gate.Gate;
+import gate.Utils;
+import gate.creole.AbstractLanguageAnalyser;
+import gate.creole.ExecutionException;
+import gate.creole.Plugin;
+import gate.creole.SerialAnalyserController;
+import gate.creole.metadata.CreoleResource;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.MapDbCorpus;
+
+/**
+ * a controller run over a corpus with a progressJournal is resumed by
+ * reopening the corpus, which then contains only the documents not completed
+ */
+public class ProgressJournalTest extends GATEPluginTests {
+	private static final int SIZE = 10;
+
+	/**
+	 * records the processed documents and fails on the document named failOn
+	 */
+	@CreoleResource
+	public static class RecordingAnalyser extends AbstractLanguageAnalyser {
+		private static final long serialVersionUID = 1L;
+
+		static final List<String> processed = new ArrayList<>();
+		static String failOn;
+
+		@Override
+		public void execute() throws ExecutionException {
+			String documentName = document.getName();
+			if (documentName.equals(failOn)) {
+				throw new ExecutionException("failed on " + documentName);
+			}
+			processed.add(documentName);
+			document.getFeatures().put("processed", true);
+		}
+	}
+
+	private static Plugin plugin;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+	private File journalFile;
+
+	@BeforeClass
+	public static void registerAnalyser() throws Exception {
+		plugin = new Plugin.Component(RecordingAnalyser.class);
+		Gate.getCreoleRegister().registerPlugin(plugin);
+	}
+
+	@AfterClass
+	public static void unregisterAnalyser() {
+		Gate.getCreoleRegister().unregisterPlugin(plugin);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		file = new File(folder.getRoot(), "corpus.db");
+		journalFile = new File(folder.getRoot(), "progress.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+		RecordingAnalyser.processed.clear();
+		RecordingAnalyser.failOn = null;
+	}
+
+	private MapDbCorpus openCorpus() throws Exception {
+		return CorpusFixtures.openMapDbCorpus(file,
+				Utils.featureMap("progressJournal", journalFile.toURI().toURL()));
+	}
+
+	private void run(MapDbCorpus corpus) throws Exception {
+		SerialAnalyserController controller = (SerialAnalyserController) Factory
+				.createResource(SerialAnalyserController.class.getName());
+		try {
+			controller.add((AbstractLanguageAnalyser) Factory.createResource(RecordingAnalyser.class.getName()));
+			controller.setCorpus(corpus);
+			controller.execute();
+		} finally {
+			Factory.deleteResource(controller);
+		}
+	}
+
+	private static List<String> documentNames(int from, int to) {
+		List<String> documentNames = new ArrayList<>();
+		for (int i = from; i < to; i++) {
+			documentNames.add(CorpusFixtures.documentName(i));
+		}
+		return documentNames;
+	}
+
+	@Test
+	public void testControllerResumesInterruptedRun() throws Exception {
+		MapDbCorpus corpus = openCorpus();
+		try {
+			RecordingAnalyser.failOn = CorpusFixtures.documentName(4);
+			try {
+				run(corpus);
+				fail("controller did not fail");
+			} catch (ExecutionException e) {
+			}
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+		assertEquals(documentNames(0, 4), RecordingAnalyser.processed);
+
+		RecordingAnalyser.processed.clear();
+		RecordingAnalyser.failOn = null;
+		corpus = openCorpus();
+		try {
+			assertEquals(SIZE - 4, corpus.size());
+			for (int i = 0; i < SIZE - 4; i++) {
+				assertEquals(CorpusFixtures.documentName(i + 4), corpus.getDocumentName(i));
+			}
+			run(corpus);
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+		assertEquals(documentNames(4, SIZE), RecordingAnalyser.processed);
+
+		corpus = openCorpus();
+		try {
+			assertEquals(0, corpus.size());
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testResumedCorpusSavesToBackendDocuments() throws Exception {
+		MapDbCorpus corpus = openCorpus();
+		try {
+			corpus.unloadDocument(corpus.get(0));
+			corpus.unloadDocument(corpus.get(2));
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+
+		corpus = openCorpus();
+		try {
+			assertEquals(Arrays.asList(CorpusFixtures.documentName(1), CorpusFixtures.documentName(3)),
+					corpus.getDocumentNames().subList(0, 2));
+			run(corpus);
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+		List<String> expected = new ArrayList<>(Arrays.asList(CorpusFixtures.documentName(1)));
+		expected.addAll(documentNames(3, SIZE));
+		assertEquals(expected, RecordingAnalyser.processed);
+
+		corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap());
+		try {
+			for (int i = 0; i < SIZE; i++) {
+				assertEquals(CorpusFixtures.documentName(i), corpus.getDocumentName(i));
+				assertEquals(i != 0 && i != 2, corpus.get(i).getFeatures().containsKey("processed"));
+			}
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+}
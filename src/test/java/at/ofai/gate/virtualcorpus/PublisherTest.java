@@ -0,0 +1,210 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import gate.Document;
+import gate.Factory;
+import gate.Utils;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.MapDbCorpus;
+
+/**
+ * a publisher of a corpus loads no more documents ahead than requested by
+ * the subscriber (up to maxLoadAhead), delivers them in index order and
+ * releases each document when onNext returns
+ */
+public class PublisherTest extends GATEPluginTests {
+	private static final int SIZE = 6;
+	private static final int MAX_LOAD_AHEAD = 2;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Queue<Runnable> tasks = new ArrayDeque<>();
+	private MapDbCorpus corpus;
+
+	@Before
+	public void setUp() throws Exception {
+		File file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+		corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap("asyncLoadBatchSize", 1));
+		corpus.setAsyncLoadExecutor(tasks::add);
+	}
+
+	@After
+	public void tearDown() {
+		Factory.deleteResource(corpus);
+	}
+
+	private void runTasks() {
+		for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+			task.run();
+		}
+	}
+
+	private int loadedDocuments() {
+		int loaded = 0;
+		for (int i = 0; i < SIZE; i++) {
+			if (corpus.isDocumentLoaded(i)) {
+				loaded++;
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * records the names of the delivered documents and whether each was loaded
+	 * while delivered
+	 */
+	private class RecordingSubscriber implements Subscriber<Document> {
+		private Subscription subscription;
+		private List<String> names = new ArrayList<>();
+		private boolean completed = false;
+		private Throwable error;
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(Document document) {
+			assertTrue(corpus.isDocumentLoaded(names.size()));
+			names.add(document.getName());
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			this.error = error;
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+	}
+
+	@Test
+	public void testDemandBoundsLoading() throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		corpus.publisher(MAX_LOAD_AHEAD, true).subscribe(subscriber);
+		assertTrue(tasks.isEmpty());
+
+		subscriber.subscription.request(1);
+		assertEquals(1, tasks.size());
+		runTasks();
+		assertEquals(1, subscriber.names.size());
+		assertTrue(tasks.isEmpty());
+		assertEquals(0, loadedDocuments());
+
+		subscriber.subscription.request(Long.MAX_VALUE);
+		assertEquals(MAX_LOAD_AHEAD, tasks.size());
+		tasks.poll().run();
+		// the next document is loaded when one is delivered
+		assertEquals(2, subscriber.names.size());
+		assertEquals(MAX_LOAD_AHEAD, tasks.size());
+		runTasks();
+
+		assertTrue(subscriber.completed);
+		assertNull(subscriber.error);
+		assertEquals(SIZE, subscriber.names.size());
+		for (int i = 0; i < SIZE; i++) {
+			assertEquals(CorpusFixtures.documentName(i), subscriber.names.get(i));
+		}
+		assertEquals(0, loadedDocuments());
+		assertEquals(SIZE, CorpusFixtures.metrics(corpus).getLoadDocumentCount());
+	}
+
+	@Test
+	public void testChangesSavedOnRelease() throws Exception {
+		corpus.publisher(MAX_LOAD_AHEAD, true).subscribe(new RecordingSubscriber() {
+			@Override
+			public void onSubscribe(Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+
+			@Override
+			public void onNext(Document document) {
+				document.getFeatures().put("published", true);
+			}
+		});
+		runTasks();
+
+		assertEquals(0, loadedDocuments());
+		for (int i = 0; i < SIZE; i++) {
+			assertEquals(true, corpus.get(i).getFeatures().get("published"));
+		}
+	}
+
+	@Test
+	public void testDocumentsNotReleased() throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		corpus.publisher(MAX_LOAD_AHEAD, false).subscribe(subscriber);
+		subscriber.subscription.request(3);
+		runTasks();
+
+		assertEquals(3, subscriber.names.size());
+		assertEquals(3, loadedDocuments());
+		assertFalse(subscriber.completed);
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		corpus.publisher(MAX_LOAD_AHEAD, true).subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+		tasks.poll().run();
+		subscriber.subscription.cancel();
+		runTasks();
+
+		assertEquals(1, subscriber.names.size());
+		assertFalse(subscriber.completed);
+		assertNull(subscriber.error);
+		// documents loading when cancelled are released when loaded
+		assertEquals(0, loadedDocuments());
+	}
+
+	@Test
+	public void testInvalidRequest() throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		corpus.publisher(MAX_LOAD_AHEAD, true).subscribe(subscriber);
+		subscriber.subscription.request(0);
+
+		assertTrue(subscriber.error instanceof IllegalArgumentException);
+		assertTrue(tasks.isEmpty());
+		assertFalse(subscriber.completed);
+	}
+
+	@Test
+	public void testEmptyCorpusCompletes() throws Exception {
+		File file = new File(folder.getRoot(), "empty.db");
+		CorpusFixtures.createMapDbFile(file, 0);
+		MapDbCorpus empty = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap());
+		try {
+			RecordingSubscriber subscriber = new RecordingSubscriber();
+			empty.publisher().subscribe(subscriber);
+			assertTrue(subscriber.completed);
+			assertTrue(subscriber.names.isEmpty());
+		} finally {
+			Factory.deleteResource(empty);
+		}
+	}
+
+}
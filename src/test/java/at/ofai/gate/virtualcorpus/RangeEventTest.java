@@ -0,0 +1,147 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.Utils;
+import gate.event.CorpusEvent;
+import gate.event.CorpusListener;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.CorpusRangeEvent;
+import gate.virtualcorpus.MapDbCorpus;
+import gate.virtualcorpus.RangeCorpusListener;
+
+/**
+ * bulk operations fire one event per contiguous range to range listeners and
+ * an event per document to other listeners
+ */
+public class RangeEventTest extends GATEPluginTests {
+	private static final int SIZE = 10;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MapDbCorpus corpus;
+	private List<CorpusRangeEvent> rangeEvents = new ArrayList<>();
+	private List<CorpusEvent> documentEvents = new ArrayList<>();
+
+	@Before
+	public void setUp() throws Exception {
+		File file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+		corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap("immutableCorpus", false));
+		corpus.addCorpusListener(new RangeCorpusListener() {
+			@Override
+			public void documentsAdded(CorpusRangeEvent event) {
+				rangeEvents.add(event);
+			}
+
+			@Override
+			public void documentsRemoved(CorpusRangeEvent event) {
+				rangeEvents.add(event);
+			}
+		});
+		corpus.addCorpusListener(new CorpusListener() {
+			@Override
+			public void documentAdded(CorpusEvent event) {
+				documentEvents.add(event);
+			}
+
+			@Override
+			public void documentRemoved(CorpusEvent event) {
+				documentEvents.add(event);
+			}
+		});
+	}
+
+	@After
+	public void tearDown() {
+		Factory.deleteResource(corpus);
+	}
+
+	private static void assertRange(CorpusRangeEvent event, int type, int fromIndex, int toIndex) {
+		assertEquals(type, event.getType());
+		assertEquals(fromIndex, event.getFromIndex());
+		assertEquals(toIndex, event.getToIndex());
+		assertEquals(fromIndex, event.getDocumentIndex());
+	}
+
+	private void assertDocumentIndexes(int type, Integer... indexes) {
+		List<Integer> documentIndexes = new ArrayList<>();
+		for (CorpusEvent event : documentEvents) {
+			assertEquals(type, event.getType());
+			documentIndexes.add(event.getDocumentIndex());
+		}
+		assertEquals(Arrays.asList(indexes), documentIndexes);
+	}
+
+	@Test
+	public void testAddAll() throws Exception {
+		List<Document> documents = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			documents.add(Factory.newDocument("added " + i));
+		}
+		try {
+			corpus.addAll(2, documents);
+		} finally {
+			for (Document document : documents) {
+				Factory.deleteResource(document);
+			}
+		}
+		assertEquals(1, rangeEvents.size());
+		assertRange(rangeEvents.get(0), CorpusEvent.DOCUMENT_ADDED, 2, 5);
+		for (int i = 0; i < 3; i++) {
+			assertSame(documents.get(i), rangeEvents.get(0).getDocument(2 + i));
+		}
+		assertDocumentIndexes(CorpusEvent.DOCUMENT_ADDED, 2, 3, 4);
+	}
+
+	@Test
+	public void testRemoveAllFromLastRange() throws Exception {
+		List<Document> documents = Arrays.asList(corpus.get(1), corpus.get(7), corpus.get(2), corpus.get(3));
+		corpus.removeAll(documents);
+		assertEquals(SIZE - 4, corpus.size());
+		assertEquals(2, rangeEvents.size());
+		assertRange(rangeEvents.get(0), CorpusEvent.DOCUMENT_REMOVED, 7, 8);
+		assertSame(documents.get(1), rangeEvents.get(0).getDocument(7));
+		assertRange(rangeEvents.get(1), CorpusEvent.DOCUMENT_REMOVED, 1, 4);
+		assertSame(documents.get(0), rangeEvents.get(1).getDocument(1));
+		assertSame(documents.get(3), rangeEvents.get(1).getDocument(3));
+		assertDocumentIndexes(CorpusEvent.DOCUMENT_REMOVED, 7, 3, 2, 1);
+	}
+
+	@Test
+	public void testClear() throws Exception {
+		Document loaded = corpus.get(4);
+		corpus.clear();
+		assertEquals(1, rangeEvents.size());
+		assertRange(rangeEvents.get(0), CorpusEvent.DOCUMENT_REMOVED, 0, SIZE);
+		assertSame(loaded, rangeEvents.get(0).getDocument(4));
+		assertNull(rangeEvents.get(0).getDocument(5));
+		assertEquals(SIZE, documentEvents.size());
+		assertEquals(SIZE - 1, documentEvents.get(0).getDocumentIndex());
+	}
+
+	@Test
+	public void testSingleRemove() throws Exception {
+		corpus.remove(6);
+		assertEquals(1, rangeEvents.size());
+		assertRange(rangeEvents.get(0), CorpusEvent.DOCUMENT_REMOVED, 6, 7);
+		assertDocumentIndexes(CorpusEvent.DOCUMENT_REMOVED, 6);
+	}
+
+}
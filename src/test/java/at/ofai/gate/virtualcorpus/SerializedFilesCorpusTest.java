@@ -0,0 +1,115 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.Utils;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.SerializedFilesCorpus;
+
+/**
+ * files of a serialized files corpus are named by index until the first
+ * insert or remove persists the index mapping, opening a corpus never writes
+ * to its directory
+ */
+public class SerializedFilesCorpusTest extends GATEPluginTests {
+	private static final int SIZE = 5;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = folder.newFolder("documents");
+		SerializedFilesCorpus corpus = openCorpus(Utils.featureMap("immutableCorpus", false));
+		try {
+			for (int i = 0; i < SIZE; i++) {
+				Document document = Factory.newDocument(CorpusFixtures.documentContent(i));
+				document.setName(CorpusFixtures.documentName(i));
+				corpus.add(document);
+				Factory.deleteResource(document);
+			}
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+		// files named by index, like directories written before index mappings
+		Files.delete(directory.toPath().resolve(SerializedFilesCorpus.INDEX_MAPPING_FILENAME));
+	}
+
+	private SerializedFilesCorpus openCorpus(FeatureMap parameters) throws Exception {
+		FeatureMap corpusParameters = Utils.featureMap("directoryURL", directory.toURI().toURL(),
+				"readonlyDocuments", false);
+		corpusParameters.putAll(parameters);
+		return (SerializedFilesCorpus) Factory.createResource(SerializedFilesCorpus.class.getName(),
+				corpusParameters);
+	}
+
+	private Set<String> filenames() throws IOException {
+		try (Stream<Path> stream = Files.list(directory.toPath())) {
+			return stream.map(path -> path.getFileName().toString()).collect(Collectors.toSet());
+		}
+	}
+
+	private Path indexMappingPath() {
+		return directory.toPath().resolve(SerializedFilesCorpus.INDEX_MAPPING_FILENAME);
+	}
+
+	@Test
+	public void testOpeningDoesNotWriteIndexMapping() throws Exception {
+		Set<String> filenames = filenames();
+		SerializedFilesCorpus corpus = openCorpus(Utils.featureMap());
+		try {
+			assertEquals(SIZE, corpus.size());
+			for (int i = 0; i < SIZE; i++) {
+				assertEquals(CorpusFixtures.documentName(i), corpus.getDocumentName(i));
+				assertEquals(CorpusFixtures.documentContent(i), corpus.get(i).getContent().toString());
+			}
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+		assertEquals(filenames, filenames());
+	}
+
+	@Test
+	public void testFirstRemovePersistsIndexMapping() throws Exception {
+		SerializedFilesCorpus corpus = openCorpus(Utils.featureMap("immutableCorpus", false));
+		try {
+			assertFalse(Files.exists(indexMappingPath()));
+			corpus.remove(1);
+			assertTrue(Files.exists(indexMappingPath()));
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+
+		corpus = openCorpus(Utils.featureMap());
+		try {
+			assertEquals(SIZE - 1, corpus.size());
+			assertEquals(CorpusFixtures.documentName(0), corpus.getDocumentName(0));
+			for (int i = 1; i < SIZE - 1; i++) {
+				assertEquals(CorpusFixtures.documentName(i + 1), corpus.getDocumentName(i));
+			}
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+}
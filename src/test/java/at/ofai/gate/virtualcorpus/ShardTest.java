@@ -0,0 +1,94 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Factory;
+import gate.FeatureMap;
+import gate.Utils;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.VirtualCorpus;
+
+/**
+ * contiguous and strided shards see their own documents and document names
+ */
+public class ShardTest extends GATEPluginTests {
+	private static final int SIZE = 23;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static FeatureMap shardParameters(int shardIndex, boolean strided) {
+		return Utils.featureMap("shardCount", 3, "shardIndex", shardIndex, "shardStrided", strided,
+				"cacheDocumentNames", 0);
+	}
+
+	/**
+	 * @return the backend index of each document of the shard
+	 */
+	private static int[] shardIndexes(int shardIndex, boolean strided) {
+		if (strided) {
+			int[] indexes = new int[(SIZE - shardIndex + 2) / 3];
+			for (int i = 0; i < indexes.length; i++) {
+				indexes[i] = i * 3 + shardIndex;
+			}
+			return indexes;
+		}
+		int from = SIZE * shardIndex / 3;
+		int to = SIZE * (shardIndex + 1) / 3;
+		int[] indexes = new int[to - from];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = from + i;
+		}
+		return indexes;
+	}
+
+	private static void assertShard(VirtualCorpus corpus, int shardIndex, boolean strided) {
+		int[] indexes = shardIndexes(shardIndex, strided);
+		assertEquals(indexes.length, corpus.size());
+		for (int i = 0; i < indexes.length; i++) {
+			assertEquals(CorpusFixtures.documentName(indexes[i]), corpus.getDocumentNames().get(i));
+		}
+		for (int i = indexes.length - 1; i >= 0; i--) {
+			assertEquals(CorpusFixtures.documentName(indexes[i]), corpus.getDocumentName(i));
+			assertEquals(CorpusFixtures.documentContent(indexes[i]), corpus.get(i).getContent().toString());
+		}
+	}
+
+	@Test
+	public void testMapDbShards() throws Exception {
+		File file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+		for (boolean strided : new boolean[] { false, true }) {
+			for (int shardIndex = 0; shardIndex < 3; shardIndex++) {
+				VirtualCorpus corpus = CorpusFixtures.openMapDbCorpus(file, shardParameters(shardIndex, strided));
+				try {
+					assertShard(corpus, shardIndex, strided);
+				} finally {
+					Factory.deleteResource(corpus);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testJdbcShards() throws Exception {
+		FeatureMap table = CorpusFixtures.createH2Table(new File(folder.getRoot(), "h2"), SIZE);
+		for (boolean strided : new boolean[] { false, true }) {
+			for (int shardIndex = 0; shardIndex < 3; shardIndex++) {
+				VirtualCorpus corpus = CorpusFixtures.openJdbcCorpus(table, shardParameters(shardIndex, strided));
+				try {
+					assertShard(corpus, shardIndex, strided);
+				} finally {
+					Factory.deleteResource(corpus);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.Utils;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.MapDbCorpus;
+
+/**
+ * spliterators split corpora and sub lists by index ranges, parallel streams
+ * see every document once and in order
+ */
+public class SpliteratorTest extends GATEPluginTests {
+	private static final int SIZE = 50;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MapDbCorpus corpus;
+
+	@Before
+	public void setUp() throws Exception {
+		File file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+		corpus = CorpusFixtures.openMapDbCorpus(file,
+				Utils.featureMap("concurrent", true, "immutableCorpus", false));
+	}
+
+	@After
+	public void tearDown() {
+		Factory.deleteResource(corpus);
+	}
+
+	private String releasedName(Document document) {
+		String documentName = document.getName();
+		corpus.releaseDocument(document);
+		return documentName;
+	}
+
+	@Test
+	public void testSplitByRanges() {
+		Spliterator<Document> suffix = corpus.spliterator();
+		assertTrue(suffix.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+		assertEquals(SIZE, suffix.estimateSize());
+		Spliterator<Document> prefix = suffix.trySplit();
+		assertEquals(SIZE / 2, prefix.estimateSize());
+		assertEquals(SIZE - SIZE / 2, suffix.estimateSize());
+
+		prefix.tryAdvance(document -> assertEquals(CorpusFixtures.documentName(0), releasedName(document)));
+		suffix.tryAdvance(document -> assertEquals(CorpusFixtures.documentName(SIZE / 2), releasedName(document)));
+		assertEquals(SIZE / 2 - 1, prefix.estimateSize());
+
+		Spliterator<Document> single = corpus.subList(7, 8).spliterator();
+		assertEquals(1, single.estimateSize());
+		assertNull(single.trySplit());
+		single.forEachRemaining(document -> assertEquals(CorpusFixtures.documentName(7), releasedName(document)));
+		assertEquals(0, single.estimateSize());
+	}
+
+	@Test
+	public void testParallelStream() throws Exception {
+		List<String> documentNames = corpus.parallelStream().map(this::releasedName).collect(Collectors.toList());
+		assertEquals(SIZE, documentNames.size());
+		for (int i = 0; i < SIZE; i++) {
+			assertEquals(CorpusFixtures.documentName(i), documentNames.get(i));
+		}
+		for (int i = 0; i < SIZE; i++) {
+			assertFalse(corpus.isDocumentLoaded(i));
+		}
+
+		List<String> subListNames = corpus.subList(10, 20).parallelStream().map(this::releasedName)
+				.collect(Collectors.toList());
+		assertEquals(10, subListNames.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(CorpusFixtures.documentName(10 + i), subListNames.get(i));
+		}
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void testModificationFails() {
+		Spliterator<Document> spliterator = corpus.spliterator();
+		Spliterator<Document> prefix = spliterator.trySplit();
+		corpus.remove(SIZE - 1);
+		prefix.tryAdvance(document -> {
+		});
+	}
+
+}
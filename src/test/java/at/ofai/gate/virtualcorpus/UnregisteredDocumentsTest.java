@@ -0,0 +1,128 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.Gate;
+import gate.Resource;
+import gate.Utils;
+import gate.event.CreoleEvent;
+import gate.event.CreoleListener;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.VirtualCorpus;
+
+/**
+ * documents of a corpus with registerDocuments=false are neither registered
+ * nor announced to creole listeners, and are saved and unloaded when released
+ */
+public class UnregisteredDocumentsTest extends GATEPluginTests {
+	private static final int SIZE = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private List<Resource> loadedResources = new ArrayList<>();
+	private CreoleListener listener = new CreoleListener() {
+		@Override
+		public void resourceLoaded(CreoleEvent e) {
+			loadedResources.add(e.getResource());
+		}
+
+		@Override
+		public void resourceUnloaded(CreoleEvent e) {
+		}
+
+		@Override
+		public void resourceRenamed(Resource resource, String oldName, String newName) {
+		}
+
+		@Override
+		public void datastoreOpened(CreoleEvent e) {
+		}
+
+		@Override
+		public void datastoreCreated(CreoleEvent e) {
+		}
+
+		@Override
+		public void datastoreClosed(CreoleEvent e) {
+		}
+	};
+
+	@Before
+	public void setUp() {
+		Gate.getCreoleRegister().addCreoleListener(listener);
+	}
+
+	@After
+	public void tearDown() {
+		Gate.getCreoleRegister().removeCreoleListener(listener);
+	}
+
+	private boolean isRegistered(Document document) throws Exception {
+		return Gate.getCreoleRegister().getAllInstances(document.getClass().getName()).contains(document);
+	}
+
+	private void assertUnregistered(VirtualCorpus corpus) throws Exception {
+		Document document = corpus.get(1);
+		assertEquals(CorpusFixtures.documentName(1), document.getName());
+		assertEquals(CorpusFixtures.documentContent(1), document.getContent().toString());
+		assertFalse(isRegistered(document));
+		assertFalse(loadedResources.contains(document));
+		assertEquals(1, corpus.indexOf(document));
+		corpus.releaseDocument(document);
+		assertFalse(corpus.isDocumentLoaded(1));
+	}
+
+	@Test
+	public void testMapDbDocuments() throws Exception {
+		File file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+		VirtualCorpus corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap("registerDocuments", false));
+		try {
+			assertUnregistered(corpus);
+
+			Document document = corpus.get(0);
+			document.getFeatures().put("changed", true);
+			corpus.releaseDocument(document);
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+
+		corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap());
+		try {
+			Document document = corpus.get(0);
+			assertTrue(isRegistered(document));
+			assertTrue(loadedResources.contains(document));
+			assertEquals(true, document.getFeatures().get("changed"));
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testJdbcDocuments() throws Exception {
+		FeatureMap table = CorpusFixtures.createH2Table(new File(folder.getRoot(), "h2"), SIZE);
+		VirtualCorpus corpus = CorpusFixtures.openJdbcCorpus(table, Utils.featureMap("registerDocuments", false));
+		try {
+			assertUnregistered(corpus);
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package at.ofai.gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Annotation;
+import gate.AnnotationSet;
+import gate.Document;
+import gate.Factory;
+import gate.GateConstants;
+import gate.Utils;
+import gate.corpora.DocumentContentImpl;
+import gate.relations.Relation;
+import gate.test.GATEPluginTests;
+import gate.virtualcorpus.MapDbCorpus;
+
+/**
+ * documents saved in background by writeBehindQueue keep all annotation sets
+ * (also the original markups), relations and features
+ */
+public class WriteBehindTest extends GATEPluginTests {
+	private static final int SIZE = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = new File(folder.getRoot(), "corpus.db");
+		CorpusFixtures.createMapDbFile(file, SIZE);
+	}
+
+	private static void annotate(Document document) throws Exception {
+		document.getFeatures().put("feature", "value");
+		Utils.addAnn(document.getAnnotations(), 0, 7, "Token", Utils.featureMap("string", "content"));
+		Utils.addAnn(document.getAnnotations(GateConstants.ORIGINAL_MARKUPS_ANNOT_SET_NAME), 0, 7, "b",
+				Utils.featureMap());
+		AnnotationSet annotationSet = document.getAnnotations("Test");
+		int first = Utils.addAnn(annotationSet, 0, 7, "Word", Utils.featureMap("length", 7));
+		int second = Utils.addAnn(annotationSet, 8, 10, "Word", Utils.featureMap("length", 2));
+		annotationSet.getRelations().addRelation("follows", second, first);
+	}
+
+	/**
+	 * annotations of all sets by type, offsets and features
+	 */
+	private static TreeMap<String, String> annotationSets(Document document) {
+		TreeMap<String, String> annotationSets = new TreeMap<>();
+		annotationSets.put("", annotationSet(document.getAnnotations()));
+		for (String name : document.getAnnotationSetNames()) {
+			annotationSets.put(name, annotationSet(document.getAnnotations(name)));
+		}
+		return annotationSets;
+	}
+
+	private static String annotationSet(AnnotationSet annotationSet) {
+		StringBuilder builder = new StringBuilder();
+		for (Annotation annotation : annotationSet.inDocumentOrder()) {
+			builder.append(annotation.getId()).append(annotation.getType()).append(Utils.start(annotation))
+					.append('-').append(Utils.end(annotation)).append(annotation.getFeatures()).append(' ');
+		}
+		for (Relation relation : annotationSet.getRelations()) {
+			builder.append(relation.getType()).append(Arrays.toString(relation.getMembers())).append(' ');
+		}
+		return builder.toString();
+	}
+
+	private void assertSaved(Document document, String content, TreeMap<String, String> annotationSets) {
+		assertEquals(content, document.getContent().toString());
+		assertEquals("value", document.getFeatures().get("feature"));
+		assertEquals(new HashSet<>(Arrays.asList(GateConstants.ORIGINAL_MARKUPS_ANNOT_SET_NAME, "Test")),
+				document.getAnnotationSetNames());
+		assertEquals(annotationSets, annotationSets(document));
+	}
+
+	@Test
+	public void testDocumentSavedWithAllAnnotationSets() throws Exception {
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap("writeBehindQueue", 2));
+		Document document = corpus.get(1);
+		annotate(document);
+		String content = document.getContent().toString();
+		TreeMap<String, String> annotationSets = annotationSets(document);
+		corpus.unloadDocument(document);
+		Factory.deleteResource(corpus);
+
+		corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap());
+		try {
+			assertSaved(corpus.get(1), content, annotationSets);
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testDocumentWithChangedContentSavedWithAllAnnotationSets() throws Exception {
+		MapDbCorpus corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap("writeBehindQueue", 2));
+		Document document = corpus.get(1);
+		document.edit(0L, 0L, new DocumentContentImpl("changed "));
+		annotate(document);
+		String content = document.getContent().toString();
+		assertTrue(content.startsWith("changed "));
+		TreeMap<String, String> annotationSets = annotationSets(document);
+		corpus.unloadDocument(document);
+		Factory.deleteResource(corpus);
+
+		corpus = CorpusFixtures.openMapDbCorpus(file, Utils.featureMap());
+		try {
+			assertSaved(corpus.get(1), content, annotationSets);
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Factory;
+import gate.FeatureMap;
+import gate.test.GATEPluginTests;
+
+/**
+ * each store of the benchmark backends opens as corpus of the stored
+ * documents (the MongoDB backend needs the in-process server of the benchmark
+ * profile and is checked by running the benchmarks)
+ */
+public class BenchmarkBackendTest extends GATEPluginTests {
+	private static final int SIZE = 5;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path directory;
+	private List<String> contents;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = folder.getRoot().toPath();
+		contents = new ArrayList<>();
+		for (int i = 0; i < SIZE; i++) {
+			contents.add("content of benchmark document " + i);
+		}
+	}
+
+	/**
+	 * @param suffix of the document names
+	 */
+	private void assertStore(Class<? extends VirtualCorpus> corpusClass, FeatureMap parameters, String suffix)
+			throws Exception {
+		Map<String, String> expected = new TreeMap<>();
+		for (int i = 0; i < SIZE; i++) {
+			expected.put(BenchmarkStores.documentName(i) + suffix, contents.get(i));
+		}
+		VirtualCorpus corpus = (VirtualCorpus) Factory.createResource(corpusClass.getName(), parameters);
+		try {
+			// documents of a directory corpus are in the order of the file system
+			Map<String, String> documents = new TreeMap<>();
+			for (int i = 0; i < corpus.size(); i++) {
+				documents.put(corpus.getDocumentName(i), corpus.get(i).getContent().toString());
+			}
+			assertEquals(expected, documents);
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+	@Test
+	public void testMapDbStore() throws Exception {
+		assertStore(MapDbCorpus.class, BenchmarkStores.createMapDbStore(directory, contents, true), "");
+	}
+
+	@Test
+	public void testSerializedFilesStore() throws Exception {
+		assertStore(SerializedFilesCorpus.class, BenchmarkStores.createSerializedFilesStore(directory, contents, true),
+				"");
+	}
+
+	@Test
+	public void testDirectoryStore() throws Exception {
+		assertStore(DirectoryCorpus.class, BenchmarkStores.createDirectoryStore(directory, contents), ".txt");
+	}
+
+	@Test
+	public void testH2Store() throws Exception {
+		assertStore(JdbcCorpus.class, BenchmarkStores.createJdbcStore("org.h2.Driver",
+				"jdbc:h2:" + directory.resolve("h2").toAbsolutePath(), "VARBINARY", contents), "");
+	}
+
+	@Test
+	public void testSqliteStore() throws Exception {
+		assertStore(JdbcCorpus.class, BenchmarkStores.createJdbcStore("org.sqlite.JDBC",
+				"jdbc:sqlite:" + directory.resolve("sqlite.db").toAbsolutePath(), "BLOB", contents), "");
+	}
+
+}
@@ -0,0 +1,135 @@
+package gate.virtualcorpus;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+
+/**
+ * Embedded stores filled with documents for the benchmarks (src/jmh/java), in
+ * temporary files, directories, H2 and SQLite. The benchmark profile adds the
+ * benchmarks to the test sources, {@link BenchmarkBackendTest} checks the
+ * stores in the default build.
+ */
+final class BenchmarkStores {
+
+	private BenchmarkStores() {
+	}
+
+	static String documentName(int index) {
+		return String.format("document%08d", index);
+	}
+
+	/**
+	 * @return the init parameters of a {@link MapDbCorpus}
+	 */
+	static FeatureMap createMapDbStore(Path directory, List<String> contents, boolean compress) throws Exception {
+		FeatureMap parameters = Factory.newFeatureMap();
+		parameters.put("mapDbFile", directory.resolve("corpus.mapdb").toUri().toURL());
+		parameters.put("compressDocuments", compress);
+		fillCorpus(MapDbCorpus.class, parameters, contents);
+		return parameters;
+	}
+
+	/**
+	 * @return the init parameters of a {@link SerializedFilesCorpus}
+	 */
+	static FeatureMap createSerializedFilesStore(Path directory, List<String> contents, boolean compress)
+			throws Exception {
+		Path documents = Files.createDirectory(directory.resolve("documents"));
+		FeatureMap parameters = Factory.newFeatureMap();
+		parameters.put("directoryURL", documents.toUri().toURL());
+		parameters.put("compressFiles", compress);
+		fillCorpus(SerializedFilesCorpus.class, parameters, contents);
+		return parameters;
+	}
+
+	/**
+	 * text files named by document name and ".txt"
+	 *
+	 * @return the init parameters of a {@link DirectoryCorpus}
+	 */
+	static FeatureMap createDirectoryStore(Path directory, List<String> contents) throws Exception {
+		Path documents = Files.createDirectory(directory.resolve("documents"));
+		for (int i = 0; i < contents.size(); i++) {
+			Files.write(documents.resolve(documentName(i) + ".txt"), contents.get(i).getBytes(StandardCharsets.UTF_8));
+		}
+		FeatureMap parameters = textParameters();
+		parameters.put("directoryURL", documents.toUri().toURL());
+		return parameters;
+	}
+
+	/**
+	 * creates a table DOCUMENTS with UTF-8 encoded contents (upper case
+	 * identifiers, since H2 reports unquoted identifiers in upper case)
+	 *
+	 * @return the init parameters of a {@link JdbcCorpus}
+	 */
+	static FeatureMap createJdbcStore(String driver, String url, String contentType, List<String> contents)
+			throws Exception {
+		Class.forName(driver);
+		try (Connection connection = DriverManager.getConnection(url)) {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("CREATE TABLE DOCUMENTS (ID INTEGER PRIMARY KEY, NAME VARCHAR(255), CONTENT "
+						+ contentType + ")");
+			}
+			connection.setAutoCommit(false);
+			try (PreparedStatement statement = connection
+					.prepareStatement("INSERT INTO DOCUMENTS (ID, NAME, CONTENT) VALUES (?, ?, ?)")) {
+				for (int i = 0; i < contents.size(); i++) {
+					statement.setInt(1, i);
+					statement.setString(2, documentName(i));
+					statement.setBytes(3, contents.get(i).getBytes(StandardCharsets.UTF_8));
+					statement.addBatch();
+				}
+				statement.executeBatch();
+			}
+			connection.commit();
+		}
+		FeatureMap parameters = textParameters();
+		parameters.put("jdbcDriver", driver);
+		parameters.put("jdbcUrl", url);
+		parameters.put("tableName", "DOCUMENTS");
+		parameters.put("idColumn", "ID");
+		parameters.put("nameColumns", "NAME");
+		parameters.put("contentColumns", "CONTENT");
+		return parameters;
+	}
+
+	static FeatureMap textParameters() {
+		FeatureMap parameters = Factory.newFeatureMap();
+		parameters.put("encoding", "UTF-8");
+		parameters.put("mimeType", "text/plain");
+		return parameters;
+	}
+
+	private static void fillCorpus(Class<? extends VirtualCorpus> corpusClass, FeatureMap parameters,
+			List<String> contents) throws Exception {
+		FeatureMap fillParameters = Factory.newFeatureMap();
+		fillParameters.putAll(parameters);
+		fillParameters.put("immutableCorpus", false);
+		fillParameters.put("readonlyDocuments", false);
+		Corpus corpus = (Corpus) Factory.createResource(corpusClass.getName(), fillParameters);
+		try {
+			for (int i = 0; i < contents.size(); i++) {
+				Document document = Factory.newDocument(contents.get(i));
+				document.setName(documentName(i));
+				corpus.add(document);
+				corpus.unloadDocument(document);
+				Factory.deleteResource(document);
+			}
+		} finally {
+			Factory.deleteResource(corpus);
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+package gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * checks the open addressing table of {@link DocumentNameCache} against a map
+ * of all names put: every cached name is found (backward-shift deletion keeps
+ * probe sequences intact) and belongs to its key
+ */
+public class DocumentNameCacheTest {
+
+	@Test
+	public void testDisabledCache() {
+		DocumentNameCache cache = new DocumentNameCache(0);
+		cache.put(1, "a");
+		assertNull(cache.get(1));
+		assertTrue(cache.isEmpty());
+	}
+
+	@Test
+	public void testPutAndRemove() {
+		DocumentNameCache cache = new DocumentNameCache(4);
+		for (int key = 0; key < 4; key++) {
+			cache.put(key, "name" + key);
+		}
+		assertEquals(4, cache.size());
+		cache.remove(1);
+		assertFalse(cache.containsKey(1));
+		assertEquals("name0", cache.get(0));
+		assertEquals("name2", cache.get(2));
+		assertEquals("name3", cache.get(3));
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testShift() {
+		DocumentNameCache cache = new DocumentNameCache(8);
+		for (int key = 0; key < 4; key++) {
+			cache.put(key, "name" + key);
+		}
+		cache.shift(2, 3);
+		assertEquals("name1", cache.peek(1));
+		assertNull(cache.peek(2));
+		assertEquals("name2", cache.peek(5));
+		assertEquals("name3", cache.peek(6));
+
+		Set<Integer> removed = new HashSet<>();
+		removed.add(0);
+		removed.add(5);
+		cache.removeAndShift(removed);
+		assertEquals("name1", cache.peek(0));
+		assertEquals("name3", cache.peek(4));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testScanDoesNotFlushFrequentNames() {
+		DocumentNameCache cache = new DocumentNameCache(100);
+		for (int round = 0; round < 10; round++) {
+			for (int key = 0; key < 50; key++) {
+				if (cache.get(key) == null) {
+					cache.put(key, "hot" + key);
+				}
+			}
+		}
+		// shorter than the sample period of the frequency sketch (10 * capacity)
+		for (int key = 1000; key < 1400; key++) {
+			cache.put(key, "scan" + key);
+		}
+		int hits = 0;
+		for (int key = 0; key < 50; key++) {
+			if (cache.peek(key) != null) {
+				hits++;
+			}
+		}
+		assertTrue("frequently used names were evicted by a scan: " + hits, hits >= 45);
+	}
+
+	@Test
+	public void testRandomOperations() {
+		Random random = new Random(42);
+		DocumentNameCache cache = new DocumentNameCache(64);
+		Map<Integer, String> names = new HashMap<>();
+		int keyRange = 200;
+		for (int operation = 0; operation < 200000; operation++) {
+			int key = random.nextInt(keyRange);
+			int choice = random.nextInt(100);
+			if (choice < 60) {
+				String name = "name" + key + "." + operation;
+				names.put(key, name);
+				cache.put(key, name);
+			} else if (choice < 90) {
+				String name = cache.get(key);
+				if (name != null) {
+					assertEquals(names.get(key), name);
+				}
+			} else if (choice < 97) {
+				names.remove(key);
+				cache.remove(key);
+				assertFalse(cache.containsKey(key));
+			} else if (choice < 99) {
+				int shift = 1 + random.nextInt(3);
+				Map<Integer, String> shifted = new HashMap<>();
+				for (Map.Entry<Integer, String> entry : names.entrySet()) {
+					shifted.put(entry.getKey() >= key ? entry.getKey() + shift : entry.getKey(), entry.getValue());
+				}
+				names = shifted;
+				cache.shift(key, shift);
+				keyRange += shift;
+			} else {
+				Set<Integer> removed = new HashSet<>();
+				for (int i = 0; i < 3; i++) {
+					removed.add(random.nextInt(keyRange));
+				}
+				Map<Integer, String> shifted = new HashMap<>();
+				for (Map.Entry<Integer, String> entry : names.entrySet()) {
+					if (!removed.contains(entry.getKey())) {
+						int below = 0;
+						for (int removedKey : removed) {
+							if (removedKey < entry.getKey()) {
+								below++;
+							}
+						}
+						shifted.put(entry.getKey() - below, entry.getValue());
+					}
+				}
+				names = shifted;
+				cache.removeAndShift(removed);
+			}
+			if (operation % 100 == 0) {
+				assertConsistent(cache, names);
+			}
+		}
+		assertConsistent(cache, names);
+	}
+
+	/**
+	 * all cached entries are reachable and cached names belong to their keys
+	 */
+	private static void assertConsistent(DocumentNameCache cache, Map<Integer, String> names) {
+		int found = 0;
+		for (Map.Entry<Integer, String> entry : names.entrySet()) {
+			String name = cache.peek(entry.getKey());
+			if (name != null) {
+				assertEquals(entry.getValue(), name);
+				found++;
+			}
+		}
+		assertEquals("cached names not found", cache.size(), found);
+		assertTrue(cache.size() <= cache.capacity());
+	}
+
+}
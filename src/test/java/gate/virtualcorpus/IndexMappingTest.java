@@ -0,0 +1,200 @@
+package gate.virtualcorpus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * checks the treap of {@link IndexMapping} against a list of physical ids,
+ * and that a snapshot with the journaled operations after it restores the
+ * mapping
+ */
+public class IndexMappingTest {
+
+	private static int[] toArray(List<Integer> physicalIds) {
+		return physicalIds.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private static void assertMapping(List<Integer> expected, IndexMapping mapping) {
+		assertEquals(expected.size(), mapping.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals((int) expected.get(i), mapping.get(i));
+		}
+		assertArrayEquals(toArray(expected), mapping.toArray());
+	}
+
+	/**
+	 * inserts allocated ids at random indexes and removes random indexes, with
+	 * a clear from time to time
+	 */
+	private static void randomOperations(Random random, IndexMapping mapping, List<Integer> expected, int count)
+			throws Exception {
+		for (int i = 0; i < count; i++) {
+			int operation = random.nextInt(100);
+			if (operation < 55 || expected.isEmpty()) {
+				int[] physicalIds = mapping.allocate(1 + random.nextInt(5));
+				int index = random.nextInt(expected.size() + 1);
+				mapping.insert(index, physicalIds);
+				for (int j = 0; j < physicalIds.length; j++) {
+					expected.add(index + j, physicalIds[j]);
+				}
+			} else if (operation < 99) {
+				Set<Integer> indexes = new HashSet<>();
+				for (int j = 1 + random.nextInt(Math.min(5, expected.size())); j > 0; j--) {
+					indexes.add(random.nextInt(expected.size()));
+				}
+				int[] removed = mapping.remove(indexes);
+				int[] sortedIndexes = indexes.stream().mapToInt(Integer::intValue).sorted().toArray();
+				for (int j = sortedIndexes.length - 1; j >= 0; j--) {
+					assertEquals((int) expected.remove(sortedIndexes[j]), removed[j]);
+				}
+			} else {
+				mapping.clear();
+				expected.clear();
+			}
+		}
+	}
+
+	@Test
+	public void testRandomOperationsMatchList() throws Exception {
+		for (int seed = 0; seed < 20; seed++) {
+			Random random = new Random(seed);
+			List<Integer> expected = new ArrayList<>();
+			IndexMapping mapping = new IndexMapping();
+			randomOperations(random, mapping, expected, 2000);
+			assertMapping(expected, mapping);
+		}
+	}
+
+	@Test
+	public void testAllocatedIdsAreUnused() throws Exception {
+		Random random = new Random(42);
+		List<Integer> expected = new ArrayList<>();
+		IndexMapping mapping = IndexMapping.identity(100);
+		for (int i = 0; i < 100; i++) {
+			expected.add(i);
+		}
+		randomOperations(random, mapping, expected, 500);
+		assertEquals(expected.size(), new HashSet<>(expected).size());
+		for (int physicalId : mapping.allocate(10)) {
+			assertFalse(expected.contains(physicalId));
+		}
+	}
+
+	@Test
+	public void testAllocateAfterClear() throws Exception {
+		IndexMapping mapping = IndexMapping.identity(10);
+		mapping.clear();
+		assertEquals(0, mapping.size());
+		int[] physicalIds = mapping.allocate(3);
+		assertArrayEquals(new int[] { 10, 11, 12 }, physicalIds);
+		mapping.insert(0, physicalIds);
+		assertArrayEquals(physicalIds, mapping.toArray());
+	}
+
+	@Test
+	public void testIdentity() {
+		IndexMapping mapping = IndexMapping.identity(1000);
+		assertMapping(new ArrayList<>(), IndexMapping.identity(0));
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, mapping.get(i));
+		}
+		assertArrayEquals(new int[] { 1000 }, mapping.allocate(1));
+	}
+
+	@Test
+	public void testIdentityBuiltOnFirstModification() throws Exception {
+		IndexMapping mapping = IndexMapping.identity(10);
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			expected.add(i);
+		}
+		assertTrue(mapping.isIdentity());
+		assertMapping(expected, mapping);
+
+		mapping.insert(3, mapping.allocate(1));
+		expected.add(3, 10);
+		assertFalse(mapping.isIdentity());
+		assertMapping(expected, mapping);
+
+		IndexMapping cleared = IndexMapping.identity(10);
+		cleared.clear();
+		assertTrue(cleared.isIdentity());
+		assertMapping(new ArrayList<>(), cleared);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testInsertOutOfRange() throws Exception {
+		IndexMapping.identity(3).insert(4, new int[] { 7 });
+	}
+
+	@Test
+	public void testJournaledRemoveInDescendingOrder() throws Exception {
+		List<int[]> journal = new ArrayList<>();
+		IndexMapping mapping = IndexMapping.identity(10);
+		mapping.setJournal(journal::add);
+		int[] removed = mapping.remove(new HashSet<>(Arrays.asList(7, 2, 5)));
+		assertArrayEquals(new int[] { 2, 5, 7 }, removed);
+		assertEquals(1, journal.size());
+		assertArrayEquals(new int[] { IndexMapping.REMOVE, 7, 5, 2 }, journal.get(0));
+
+		IndexMapping replayed = IndexMapping.identity(10);
+		replayed.replay(journal.get(0));
+		assertArrayEquals(mapping.toArray(), replayed.toArray());
+	}
+
+	@Test
+	public void testSnapshotAndJournalReplay() throws Exception {
+		for (int seed = 0; seed < 10; seed++) {
+			Random random = new Random(seed);
+			List<Integer> expected = new ArrayList<>();
+			List<int[]> journal = new ArrayList<>();
+			IndexMapping mapping = new IndexMapping();
+			mapping.setJournal(journal::add);
+			randomOperations(random, mapping, expected, 300);
+
+			// a backend saves a snapshot and starts a new journal
+			int[] snapshot = mapping.toArray();
+			journal.clear();
+			randomOperations(random, mapping, expected, 300);
+
+			IndexMapping restored = new IndexMapping(snapshot);
+			for (int[] operation : journal) {
+				restored.replay(operation);
+			}
+			assertMapping(expected, restored);
+			// ids allocated by the restored mapping are not used
+			for (int physicalId : restored.allocate(5)) {
+				assertFalse(expected.contains(physicalId));
+			}
+		}
+	}
+
+	@Test
+	public void testReplayClear() throws Exception {
+		List<int[]> journal = new ArrayList<>();
+		IndexMapping mapping = IndexMapping.identity(5);
+		mapping.setJournal(journal::add);
+		mapping.clear();
+		int[] physicalIds = mapping.allocate(2);
+		mapping.insert(0, physicalIds);
+
+		IndexMapping restored = IndexMapping.identity(5);
+		for (int[] operation : journal) {
+			restored.replay(operation);
+		}
+		assertArrayEquals(physicalIds, restored.toArray());
+		assertEquals(IndexMapping.CLEAR, journal.get(0)[0]);
+	}
+
+}
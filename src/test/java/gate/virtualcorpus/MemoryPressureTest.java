@@ -0,0 +1,110 @@
+package gate.virtualcorpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.Utils;
+import gate.test.GATEPluginTests;
+
+/**
+ * a memory notification unloads the least recently used half of the loaded
+ * documents, but never documents in use by a thread or leased
+ */
+public class MemoryPressureTest extends GATEPluginTests {
+	private static final int SIZE = 10;
+	private static final MemoryUsage EXCEEDED_USAGE = new MemoryUsage(0, 95, 100, 100);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MapDbCorpus corpus;
+	private ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	@Before
+	public void setUp() throws Exception {
+		File file = new File(folder.getRoot(), "corpus.db");
+		MapDbCorpus writableCorpus = openCorpus(file, Utils.featureMap("immutableCorpus", false));
+		try {
+			for (int i = 0; i < SIZE; i++) {
+				Document document = Factory.newDocument("content of document " + i);
+				document.setName("document" + i);
+				writableCorpus.add(document);
+				Factory.deleteResource(document);
+			}
+		} finally {
+			Factory.deleteResource(writableCorpus);
+		}
+		corpus = openCorpus(file, Utils.featureMap("unloadMemoryThreshold", 0.9));
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+		Factory.deleteResource(corpus);
+	}
+
+	private static MapDbCorpus openCorpus(File file, FeatureMap parameters) throws Exception {
+		FeatureMap corpusParameters = Utils.featureMap("readonlyDocuments", false, "mapDbFile",
+				file.toURI().toURL());
+		corpusParameters.putAll(parameters);
+		return (MapDbCorpus) Factory.createResource(MapDbCorpus.class.getName(), corpusParameters);
+	}
+
+	private int loadedDocumentCount() {
+		int count = 0;
+		for (int i = 0; i < corpus.size(); i++) {
+			if (corpus.isDocumentLoaded(i)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void testDocumentsInUseNotUnloaded() throws Exception {
+		// the least recently used document is the current document of another thread
+		Document heldDocument = executor.submit(() -> corpus.get(0)).get();
+		try (DocumentLease lease = corpus.lease(1)) {
+			for (int i = 2; i < SIZE; i++) {
+				corpus.get(i);
+			}
+			MemoryPressureMonitor.thresholdExceeded("test pool", EXCEEDED_USAGE);
+
+			assertTrue(corpus.contains(heldDocument));
+			assertTrue(corpus.contains(lease.getDocument()));
+			assertTrue(corpus.isDocumentLoaded(SIZE - 1));
+			// half (rounded up) of the 9 least recently used documents, lease excluded
+			assertEquals(SIZE - 5, loadedDocumentCount());
+			for (int i = 2; i < 7; i++) {
+				assertFalse(corpus.isDocumentLoaded(i));
+			}
+		}
+	}
+
+	@Test
+	public void testChangedDocumentsSavedBeforeUnloading() throws Exception {
+		for (int i = 0; i < SIZE; i++) {
+			corpus.get(i).getFeatures().put("changed", i);
+		}
+		MemoryPressureMonitor.thresholdExceeded("test pool", EXCEEDED_USAGE);
+
+		assertFalse(corpus.isDocumentLoaded(0));
+		assertEquals(0, corpus.get(0).getFeatures().get("changed"));
+	}
+
+}